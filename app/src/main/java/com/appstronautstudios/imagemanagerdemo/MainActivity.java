@@ -222,7 +222,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onClick(View v) {
                 Bitmap bmp = ImageManager.getInstance().getBitmapFromImageView(imageView);
-                ImageManager.getInstance().saveToGallery(MainActivity.this, bmp, IMAGE_FOLDER, "forest_" + System.currentTimeMillis(), new SuccessFailListener() {
+                ImageManager.getInstance().saveToGalleryAsync(MainActivity.this, bmp, IMAGE_FOLDER, "forest_" + System.currentTimeMillis(), new SuccessFailListener() {
                     @Override
                     public void success(Object object) {
                         Toast.makeText(MainActivity.this, "Image saved successfully", Toast.LENGTH_SHORT).show();
@@ -0,0 +1,114 @@
+package com.appstronautstudios.imagemanager.benchmark;
+
+import com.appstronautstudios.imagemanager.exif.ExifData;
+import com.appstronautstudios.imagemanager.exif.ExifOutputStream;
+import com.appstronautstudios.imagemanager.exif.ExifReader;
+import com.appstronautstudios.imagemanager.exif.ExifTags;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Sample images for the benchmarks. The checked in app photos are the corpus, resized copies at
+ * several resolutions are derived once per trial and keep the source EXIF.
+ */
+final class Corpus {
+
+    /**
+     * photo with the richest EXIF block of the corpus
+     */
+    static final String SOURCE = "forest_6.jpg";
+
+    private static BufferedImage source;
+    private static ExifData sourceExif;
+
+    private Corpus() {
+    }
+
+    static File directory() {
+        String path = System.getProperty("corpus.dir", "app/src/main/res/drawable");
+        File dir = new File(path);
+        if (!dir.isDirectory()) throw new IllegalStateException("Corpus not found at " + dir.getAbsolutePath());
+        return dir;
+    }
+
+    static synchronized BufferedImage source() throws IOException {
+        if (source == null) {
+            File file = new File(directory(), SOURCE);
+            source = ImageIO.read(file);
+            sourceExif = ExifReader.read(file, ExifTags.ALL);
+        }
+        return source;
+    }
+
+    static synchronized ExifData sourceExif() throws IOException {
+        source();
+        return sourceExif;
+    }
+
+    /**
+     * @param longEdge size of the longer side
+     * @return the source photo scaled to longEdge, RGB
+     */
+    static BufferedImage image(int longEdge) throws IOException {
+        BufferedImage src = source();
+        float scale = (float) longEdge / Math.max(src.getWidth(), src.getHeight());
+        int width = Math.max(1, Math.round(src.getWidth() * scale));
+        int height = Math.max(1, Math.round(src.getHeight() * scale));
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(src, 0, 0, width, height, null);
+        g.dispose();
+        return out;
+    }
+
+    /**
+     * @param longEdge size of the longer side
+     * @return JPEG bytes of the scaled photo with the source EXIF block
+     */
+    static byte[] jpeg(int longEdge) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeJpeg(image(longEdge), 0.9f, new ExifOutputStream(bytes, sourceExif()));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return ARGB pixels of the image, packed rows
+     */
+    static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /**
+     * stand in for Bitmap.compress, the platform encoder is libjpeg on both
+     */
+    static void writeJpeg(BufferedImage image, float quality, OutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        ImageWriter writer = writers.next();
+        ImageOutputStream stream = ImageIO.createImageOutputStream(out);
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            stream.close();
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,54 @@
+package com.appstronautstudios.imagemanager.benchmark;
+
+import com.appstronautstudios.imagemanager.exif.ExifData;
+import com.appstronautstudios.imagemanager.exif.ExifOutputStream;
+import com.appstronautstudios.imagemanager.exif.ExifWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * JPEG encoding at the quality levels the library uses. ImageIO stands in for Bitmap.compress,
+ * the EXIF variant adds the segment insertion done by ImageEncoder.
+ */
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+    @Param({"640", "1600", "4000"})
+    public int size;
+
+    @Param({"50", "75", "90"})
+    public int quality;
+
+    private BufferedImage image;
+    private byte[] segment;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() throws IOException {
+        image = Corpus.image(size);
+        ExifData data = Corpus.sourceExif();
+        segment = ExifWriter.buildSegment(data);
+    }
+
+    @Benchmark
+    public int jpeg() throws IOException {
+        out.reset();
+        Corpus.writeJpeg(image, quality / 100f, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int jpegWithExif() throws IOException {
+        out.reset();
+        Corpus.writeJpeg(image, quality / 100f, new ExifOutputStream(out, segment));
+        return out.size();
+    }
+}
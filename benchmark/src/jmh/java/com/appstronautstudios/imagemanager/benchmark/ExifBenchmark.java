@@ -0,0 +1,66 @@
+package com.appstronautstudios.imagemanager.benchmark;
+
+import com.appstronautstudios.imagemanager.exif.ExifData;
+import com.appstronautstudios.imagemanager.exif.ExifReader;
+import com.appstronautstudios.imagemanager.exif.ExifScrubber;
+import com.appstronautstudios.imagemanager.exif.ExifTags;
+import com.appstronautstudios.imagemanager.exif.ExifWriter;
+import com.appstronautstudios.imagemanager.exif.ScrubPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * EXIF extraction, scrubbing and segment building. Reading only touches the header, so image
+ * size should barely matter, a size dependent score means pixel data is being scanned.
+ */
+@State(Scope.Thread)
+public class ExifBenchmark {
+
+    @Param({"640", "1600", "4000"})
+    public int size;
+
+    private byte[] jpeg;
+    private ExifData data;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() throws IOException {
+        jpeg = Corpus.jpeg(size);
+        data = Corpus.sourceExif();
+        out.reset();
+        out.write(jpeg); // grow the buffer once so the scrub measures copying, not resizing
+    }
+
+    /**
+     * equivalent of the old getAllExifData
+     */
+    @Benchmark
+    public ExifData readAll() throws IOException {
+        return ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.ALL);
+    }
+
+    @Benchmark
+    public ExifData readGps() throws IOException {
+        return ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.GPS);
+    }
+
+    @Benchmark
+    public int scrubSensitive() throws IOException {
+        out.reset();
+        ExifScrubber.scrub(new ByteArrayInputStream(jpeg), out, ScrubPolicy.SENSITIVE);
+        return out.size();
+    }
+
+    @Benchmark
+    public byte[] buildSegment() {
+        return ExifWriter.buildSegment(data);
+    }
+}
@@ -0,0 +1,49 @@
+package com.appstronautstudios.imagemanager.benchmark;
+
+import com.appstronautstudios.imagemanager.utils.PngStreamWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Streaming PNG encode used by long view captures, fed in tiles like ViewTileRenderer does
+ */
+@State(Scope.Thread)
+public class PngEncodeBenchmark {
+
+    private static final int TILE_ROWS = 256;
+
+    @Param({"640", "1600", "4000"})
+    public int size;
+
+    private int[] pixels;
+    private int width;
+    private int height;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() throws IOException {
+        BufferedImage image = Corpus.image(size);
+        width = image.getWidth();
+        height = image.getHeight();
+        pixels = Corpus.pixels(image);
+    }
+
+    @Benchmark
+    public int png() throws IOException {
+        out.reset();
+        PngStreamWriter writer = new PngStreamWriter(out, width, height, false);
+        for (int row = 0; row < height; row += TILE_ROWS) {
+            writer.writeRows(pixels, row * width, width, Math.min(TILE_ROWS, height - row));
+        }
+        writer.finish();
+        return out.size();
+    }
+}
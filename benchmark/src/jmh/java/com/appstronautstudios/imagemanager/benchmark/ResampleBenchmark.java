@@ -0,0 +1,53 @@
+package com.appstronautstudios.imagemanager.benchmark;
+
+import com.appstronautstudios.imagemanager.resample.ResampleMode;
+import com.appstronautstudios.imagemanager.resample.Resampler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Thumbnail generation from large decodes with each resampling mode
+ */
+@State(Scope.Thread)
+public class ResampleBenchmark {
+
+    private static final int THUMBNAIL = 256;
+
+    @Param({"1600", "4000"})
+    public int size;
+
+    @Param({"BILINEAR", "PROGRESSIVE", "AREA_AVERAGE", "LANCZOS3"})
+    public ResampleMode mode;
+
+    private int[] src;
+    private int srcWidth;
+    private int srcHeight;
+    private int[] dst;
+    private int dstWidth;
+    private int dstHeight;
+
+    @Setup
+    public void setup() throws IOException {
+        BufferedImage image = Corpus.image(size);
+        srcWidth = image.getWidth();
+        srcHeight = image.getHeight();
+        src = Corpus.pixels(image);
+        float scale = (float) THUMBNAIL / Math.max(srcWidth, srcHeight);
+        dstWidth = Math.max(1, Math.round(srcWidth * scale));
+        dstHeight = Math.max(1, Math.round(srcHeight * scale));
+        dst = new int[dstWidth * dstHeight];
+    }
+
+    @Benchmark
+    public int[] thumbnail() {
+        Resampler.resample(src, 0, srcWidth, srcWidth, srcHeight, dst, dstWidth, dstHeight, mode);
+        return dst;
+    }
+}
@@ -0,0 +1,69 @@
+package com.appstronautstudios.imagemanager.benchmark;
+
+import com.appstronautstudios.imagemanager.geometry.IntRect;
+import com.appstronautstudios.imagemanager.geometry.Orientation;
+import com.appstronautstudios.imagemanager.geometry.ScalingLogic;
+import com.appstronautstudios.imagemanager.geometry.ScalingMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Sample size and rectangle calculation run for every decode. The int[] variants should report
+ * no allocation at all, the IntRect ones one object per call.
+ */
+@State(Scope.Thread)
+public class ScalingMathBenchmark {
+
+    private static final int[][] SOURCES = {{4000, 3000}, {3000, 4000}, {1920, 1080}, {640, 640}, {4032, 1816}};
+
+    @Param({"CROP", "FIT"})
+    public ScalingLogic logic;
+
+    @Param({"1", "6"})
+    public int orientation;
+
+    private final int[] rect = new int[4];
+    private int next;
+
+    @Setup
+    public void setup() {
+        next = 0;
+    }
+
+    private int[] source() {
+        int[] source = SOURCES[next];
+        next = (next + 1) % SOURCES.length;
+        return source;
+    }
+
+    @Benchmark
+    public int sampleSize() {
+        int[] source = source();
+        return ScalingMath.calculatePowerOfTwoSampleSize(Orientation.orientedWidth(source[0], source[1], orientation),
+                Orientation.orientedHeight(source[0], source[1], orientation), 320, 240, logic);
+    }
+
+    @Benchmark
+    public int[] srcRectInto() {
+        int[] source = source();
+        ScalingMath.calculateSrcRect(source[0], source[1], 320, 240, logic, orientation, rect);
+        return rect;
+    }
+
+    @Benchmark
+    public int[] dstRectInto() {
+        int[] source = source();
+        ScalingMath.calculateDstRect(source[0], source[1], 320, 240, logic, orientation, rect);
+        return rect;
+    }
+
+    @Benchmark
+    public IntRect srcRect() {
+        int[] source = source();
+        return ScalingMath.calculateSrcRect(source[0], source[1], 320, 240, logic, orientation);
+    }
+}
@@ -0,0 +1,277 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable set of EXIF tag values read by {@link ExifReader}. Values keep their raw TIFF
+ * encoding and are only converted when an accessor asks for them.
+ */
+public final class ExifData {
+
+    static final int TYPE_BYTE = 1;
+    static final int TYPE_ASCII = 2;
+    static final int TYPE_SHORT = 3;
+    static final int TYPE_LONG = 4;
+    static final int TYPE_RATIONAL = 5;
+    static final int TYPE_SBYTE = 6;
+    static final int TYPE_UNDEFINED = 7;
+    static final int TYPE_SSHORT = 8;
+    static final int TYPE_SLONG = 9;
+    static final int TYPE_SRATIONAL = 10;
+    static final int TYPE_FLOAT = 11;
+    static final int TYPE_DOUBLE = 12;
+
+    private static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8};
+    private static final String DATE_FORMAT = "yyyy:MM:dd HH:mm:ss";
+
+    /**
+     * empty result, for images without EXIF data
+     */
+    public static final ExifData EMPTY = new ExifData(ByteOrder.BIG_ENDIAN, new HashMap<String, Entry>());
+
+    private final ByteOrder order;
+    private final Map<String, Entry> entries;
+
+    ExifData(ByteOrder order, Map<String, Entry> entries) {
+        this.order = order;
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    static int typeSize(int type) {
+        return type > 0 && type < TYPE_SIZES.length ? TYPE_SIZES[type] : 0;
+    }
+
+    /**
+     * @return names of the tags present
+     */
+    public Set<String> getTags() {
+        return entries.keySet();
+    }
+
+    public boolean has(String tag) {
+        return entries.containsKey(tag);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param tag tag name
+     * @return ASCII value, or any other value formatted the way {@code ExifInterface} formats it.
+     * Null if the tag is missing
+     */
+    public String getString(String tag) {
+        Entry entry = entries.get(tag);
+        if (entry == null) return null;
+        switch (entry.type) {
+            case TYPE_ASCII:
+            case TYPE_UNDEFINED:
+                return ascii(entry.value);
+            case TYPE_RATIONAL:
+            case TYPE_SRATIONAL: {
+                StringBuilder builder = new StringBuilder();
+                ByteBuffer buffer = buffer(entry);
+                for (int i = 0; i < entry.count; i++) {
+                    if (i > 0) builder.append(',');
+                    long numerator = entry.type == TYPE_RATIONAL ? buffer.getInt() & 0xFFFFFFFFL : buffer.getInt();
+                    long denominator = entry.type == TYPE_RATIONAL ? buffer.getInt() & 0xFFFFFFFFL : buffer.getInt();
+                    builder.append(numerator).append('/').append(denominator);
+                }
+                return builder.toString();
+            }
+            default: {
+                StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < entry.count; i++) {
+                    if (i > 0) builder.append(',');
+                    double value = number(entry, i);
+                    if (value == Math.rint(value)) {
+                        builder.append((long) value);
+                    } else {
+                        builder.append(value);
+                    }
+                }
+                return builder.toString();
+            }
+        }
+    }
+
+    /**
+     * @param tag          tag name
+     * @param defaultValue returned when the tag is missing or not numeric
+     * @return first value of an integer or rational tag, truncated
+     */
+    public int getInt(String tag, int defaultValue) {
+        Entry entry = entries.get(tag);
+        if (entry == null || entry.count == 0 || !isNumeric(entry.type)) return defaultValue;
+        return (int) number(entry, 0);
+    }
+
+    /**
+     * @param tag          tag name
+     * @param defaultValue returned when the tag is missing or not numeric
+     * @return first value of a rational, integer or floating point tag
+     */
+    public double getDouble(String tag, double defaultValue) {
+        Entry entry = entries.get(tag);
+        if (entry == null || entry.count == 0 || !isNumeric(entry.type)) return defaultValue;
+        return number(entry, 0);
+    }
+
+    /**
+     * @param tag tag name
+     * @return all values of a numeric tag, such as the degrees, minutes and seconds of
+     * GPSLatitude. Null if the tag is missing or not numeric
+     */
+    public double[] getDoubles(String tag) {
+        Entry entry = entries.get(tag);
+        if (entry == null || !isNumeric(entry.type)) return null;
+        double[] values = new double[entry.count];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = number(entry, i);
+        }
+        return values;
+    }
+
+    /**
+     * @param tag a date time tag such as DateTimeOriginal, interpreted in the device time zone
+     * @return parsed date or null if missing or malformed
+     */
+    public Date getDate(String tag) {
+        String value = getString(tag);
+        if (value == null) return null;
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+            format.setLenient(false);
+            return format.parse(value.trim());
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return latitude and longitude in signed decimal degrees or null if the GPS position is
+     * missing
+     */
+    public double[] getLatLong() {
+        double[] latitude = getDoubles("GPSLatitude");
+        double[] longitude = getDoubles("GPSLongitude");
+        if (latitude == null || longitude == null || latitude.length < 3 || longitude.length < 3) {
+            return null;
+        }
+        double lat = latitude[0] + latitude[1] / 60 + latitude[2] / 3600;
+        double lon = longitude[0] + longitude[1] / 60 + longitude[2] / 3600;
+        if ("S".equals(getString("GPSLatitudeRef"))) lat = -lat;
+        if ("W".equals(getString("GPSLongitudeRef"))) lon = -lon;
+        return new double[]{lat, lon};
+    }
+
+    /**
+     * @return values of all tags as strings, same format as {@code ImageManager.getAllExifData}
+     */
+    public HashMap<String, String> toMap() {
+        HashMap<String, String> map = new HashMap<>();
+        for (String tag : entries.keySet()) {
+            String value = getString(tag);
+            if (value != null && !value.isEmpty()) map.put(tag, value);
+        }
+        return map;
+    }
+
+    /**
+     * @param tags tags to keep
+     * @return copy containing only the given tags
+     */
+    public ExifData filter(Set<String> tags) {
+        Map<String, Entry> filtered = new HashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (tags.contains(entry.getKey())) filtered.put(entry.getKey(), entry.getValue());
+        }
+        return new ExifData(order, filtered);
+    }
+
+    ByteOrder getOrder() {
+        return order;
+    }
+
+    Entry getEntry(String tag) {
+        return entries.get(tag);
+    }
+
+    @Override
+    public String toString() {
+        return "ExifData" + toMap();
+    }
+
+    private static boolean isNumeric(int type) {
+        return type != TYPE_ASCII && type != TYPE_UNDEFINED && typeSize(type) > 0;
+    }
+
+    private ByteBuffer buffer(Entry entry) {
+        return ByteBuffer.wrap(entry.value).order(order);
+    }
+
+    private double number(Entry entry, int index) {
+        ByteBuffer buffer = buffer(entry);
+        int offset = index * typeSize(entry.type);
+        switch (entry.type) {
+            case TYPE_BYTE:
+                return buffer.get(offset) & 0xFF;
+            case TYPE_SBYTE:
+                return buffer.get(offset);
+            case TYPE_SHORT:
+                return buffer.getShort(offset) & 0xFFFF;
+            case TYPE_SSHORT:
+                return buffer.getShort(offset);
+            case TYPE_LONG:
+                return buffer.getInt(offset) & 0xFFFFFFFFL;
+            case TYPE_SLONG:
+                return buffer.getInt(offset);
+            case TYPE_RATIONAL: {
+                long denominator = buffer.getInt(offset + 4) & 0xFFFFFFFFL;
+                return denominator == 0 ? 0 : (buffer.getInt(offset) & 0xFFFFFFFFL) / (double) denominator;
+            }
+            case TYPE_SRATIONAL: {
+                int denominator = buffer.getInt(offset + 4);
+                return denominator == 0 ? 0 : buffer.getInt(offset) / (double) denominator;
+            }
+            case TYPE_FLOAT:
+                return buffer.getFloat(offset);
+            case TYPE_DOUBLE:
+                return buffer.getDouble(offset);
+            default:
+                return 0;
+        }
+    }
+
+    private static String ascii(byte[] value) {
+        int end = value.length;
+        while (end > 0 && (value[end - 1] == 0 || value[end - 1] == ' ')) end--;
+        return new String(value, 0, end, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * raw value of a single tag
+     */
+    static final class Entry {
+        final int type;
+        final int count;
+        final byte[] value;
+
+        Entry(int type, int count, byte[] value) {
+            this.type = type;
+            this.count = count;
+            this.value = value;
+        }
+    }
+}
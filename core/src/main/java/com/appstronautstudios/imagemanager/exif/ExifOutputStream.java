@@ -0,0 +1,63 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Inserts an APP1 EXIF segment right after the start of image marker of a JPEG written through
+ * it, so encoder output gets its metadata in the same pass. Streams that don't start with a JPEG
+ * marker are passed through unchanged.
+ */
+public class ExifOutputStream extends FilterOutputStream {
+
+    private final byte[] segment;
+    private int written;
+
+    /**
+     * @param out     destination
+     * @param segment APP1 segment from {@link ExifWriter#buildSegment(ExifData)}
+     */
+    public ExifOutputStream(OutputStream out, byte[] segment) {
+        super(out);
+        this.segment = segment;
+    }
+
+    /**
+     * @param out  destination
+     * @param data tags to write
+     */
+    public ExifOutputStream(OutputStream out, ExifData data) {
+        this(out, ExifWriter.buildSegment(data));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        afterWrite(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (written >= 2 || len == 0) {
+            out.write(b, off, len);
+            return;
+        }
+        // only the first two bytes need inspecting
+        int head = Math.min(2 - written, len);
+        for (int i = 0; i < head; i++) {
+            write(b[off + i]);
+        }
+        if (len > head) out.write(b, off + head, len - head);
+    }
+
+    private void afterWrite(int b) throws IOException {
+        if (written >= 2) return;
+        if (written == 0 && (b & 0xFF) != 0xFF) {
+            written = 2; // not a JPEG, pass through
+            return;
+        }
+        written++;
+        if (written == 2 && (b & 0xFF) == ExifReader.MARKER_SOI) out.write(segment);
+    }
+}
@@ -0,0 +1,246 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads selected EXIF tags from JPEG files. Only the marker headers and the APP1 EXIF segment are
+ * read, pixel data is never touched, and only the directories holding requested tags are
+ * walked.
+ */
+public final class ExifReader {
+
+    static final int MARKER_SOI = 0xD8;
+    static final int MARKER_EOI = 0xD9;
+    static final int MARKER_SOS = 0xDA;
+    static final int MARKER_APP1 = 0xE1;
+    static final int EXIF_HEADER_LENGTH = 6;
+
+    private static final int TIFF_MAGIC = 42;
+    private static final int IFD_ENTRY_SIZE = 12;
+
+    private ExifReader() {
+    }
+
+    /**
+     * @param file JPEG file
+     * @param tags tag names to read, see {@link ExifTags} for groups
+     * @return requested tags that are present
+     * @throws IOException if the file can't be read or is not a JPEG
+     */
+    public static ExifData read(File file, Set<String> tags) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(4);
+            readFully(channel, header, 0, 2);
+            if ((header.get(0) & 0xFF) != 0xFF || (header.get(1) & 0xFF) != MARKER_SOI) {
+                throw new IOException("Not a JPEG file: " + file);
+            }
+            long position = 2;
+            while (true) {
+                readFully(channel, header, position, 2);
+                if ((header.get(0) & 0xFF) != 0xFF) throw new IOException("Corrupt JPEG marker in " + file);
+                int marker = header.get(1) & 0xFF;
+                if (marker == 0xFF) {
+                    position++; // fill byte
+                    continue;
+                }
+                if (marker == MARKER_SOS || marker == MARKER_EOI) return ExifData.EMPTY;
+                if (isStandalone(marker)) {
+                    position += 2;
+                    continue;
+                }
+                readFully(channel, header, position + 2, 2);
+                int length = ((header.get(0) & 0xFF) << 8) | (header.get(1) & 0xFF);
+                if (length < 2) throw new IOException("Corrupt JPEG segment in " + file);
+                if (marker == MARKER_APP1 && length - 2 > EXIF_HEADER_LENGTH) {
+                    ByteBuffer segment = ByteBuffer.allocate(length - 2);
+                    readFully(channel, segment, position + 4, length - 2);
+                    if (isExifSegment(segment.array(), 0)) {
+                        return parseTiff(segment.array(), EXIF_HEADER_LENGTH, length - 2 - EXIF_HEADER_LENGTH, tags);
+                    }
+                }
+                position += 2 + length;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * reads up to and including the EXIF segment. A stream that supports mark, e.g. a
+     * BufferedInputStream, is read directly and left just past the EXIF segment, or past the start
+     * of scan marker if there is none. Other streams are buffered internally, so their position
+     * afterwards is undefined. The stream is not closed.
+     *
+     * @param inputStream JPEG stream
+     * @param tags        tag names to read, see {@link ExifTags} for groups
+     * @return requested tags that are present
+     * @throws IOException if the stream can't be read or is not a JPEG
+     */
+    public static ExifData read(InputStream inputStream, Set<String> tags) throws IOException {
+        // already buffered streams are read as is so callers know where they stand
+        DataInputStream in = new DataInputStream(inputStream.markSupported() ? inputStream
+                : new BufferedInputStream(inputStream, 8192));
+        if (in.readUnsignedByte() != 0xFF || in.readUnsignedByte() != MARKER_SOI) {
+            throw new IOException("Not a JPEG stream");
+        }
+        while (true) {
+            if (in.readUnsignedByte() != 0xFF) throw new IOException("Corrupt JPEG marker");
+            int marker = in.readUnsignedByte();
+            while (marker == 0xFF) marker = in.readUnsignedByte(); // fill bytes
+            if (marker == MARKER_SOS || marker == MARKER_EOI) return ExifData.EMPTY;
+            if (isStandalone(marker)) continue;
+            int length = in.readUnsignedShort();
+            if (length < 2) throw new IOException("Corrupt JPEG segment");
+            if (marker == MARKER_APP1 && length - 2 > EXIF_HEADER_LENGTH) {
+                byte[] segment = new byte[length - 2];
+                in.readFully(segment);
+                if (isExifSegment(segment, 0)) {
+                    return parseTiff(segment, EXIF_HEADER_LENGTH, segment.length - EXIF_HEADER_LENGTH, tags);
+                }
+            } else {
+                skipFully(in, length - 2);
+            }
+        }
+    }
+
+    static boolean isStandalone(int marker) {
+        return marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7);
+    }
+
+    /**
+     * @return true if the bytes at offset are the "Exif\0\0" APP1 identifier
+     */
+    static boolean isExifSegment(byte[] data, int offset) {
+        return data.length - offset >= EXIF_HEADER_LENGTH && data[offset] == 'E'
+                && data[offset + 1] == 'x' && data[offset + 2] == 'i' && data[offset + 3] == 'f'
+                && data[offset + 4] == 0 && data[offset + 5] == 0;
+    }
+
+    /**
+     * @param data   buffer holding a TIFF structure
+     * @param offset start of the TIFF header in the buffer
+     * @param length length of the TIFF structure
+     * @return byte order aware view of the TIFF structure, positioned at 0
+     * @throws IOException if the header is invalid
+     */
+    static ByteBuffer tiffBuffer(byte[] data, int offset, int length) throws IOException {
+        if (length < 8) throw new IOException("Truncated TIFF header");
+        ByteBuffer tiff = ByteBuffer.wrap(data, offset, length).slice();
+        if (data[offset] == 'I' && data[offset + 1] == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (data[offset] == 'M' && data[offset + 1] == 'M') {
+            tiff.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            throw new IOException("Invalid TIFF byte order");
+        }
+        if ((tiff.getShort(2) & 0xFFFF) != TIFF_MAGIC) throw new IOException("Invalid TIFF header");
+        return tiff;
+    }
+
+    static ExifData parseTiff(byte[] data, int offset, int length, Set<String> tags) throws IOException {
+        ByteBuffer tiff = tiffBuffer(data, offset, length);
+        // directory -> tag id -> names, several names can share an id
+        Map<Integer, Map<Integer, String[]>> wanted = new HashMap<>();
+        for (String name : tags) {
+            if (!ExifTags.isKnown(name)) continue;
+            Map<Integer, String[]> ids = wanted.get(ExifTags.directory(name));
+            if (ids == null) {
+                ids = new HashMap<>();
+                wanted.put(ExifTags.directory(name), ids);
+            }
+            String[] previous = ids.get(ExifTags.id(name));
+            String[] names = previous == null ? new String[1] : Arrays.copyOf(previous, previous.length + 1);
+            names[names.length - 1] = name;
+            ids.put(ExifTags.id(name), names);
+        }
+        Map<String, ExifData.Entry> entries = new HashMap<>();
+        if (!wanted.isEmpty()) {
+            readDirectory(tiff, tiff.getInt(4), ExifTags.IFD_PRIMARY, wanted, entries, new HashSet<Integer>());
+        }
+        return new ExifData(tiff.order(), entries);
+    }
+
+    private static void readDirectory(ByteBuffer tiff, int offset, int directory,
+                                      Map<Integer, Map<Integer, String[]>> wanted,
+                                      Map<String, ExifData.Entry> entries, Set<Integer> visited) {
+        // compared without adding to offset, which is read from the file and may overflow
+        if (offset < 8 || offset > tiff.limit() - 2 || !visited.add(offset)) return;
+        int count = tiff.getShort(offset) & 0xFFFF;
+        Map<Integer, String[]> ids = wanted.get(directory);
+        for (int i = 0; i < count; i++) {
+            int entry = offset + 2 + i * IFD_ENTRY_SIZE;
+            if (entry + IFD_ENTRY_SIZE > tiff.limit()) return;
+            int tag = tiff.getShort(entry) & 0xFFFF;
+            int type = tiff.getShort(entry + 2) & 0xFFFF;
+            long valueCount = tiff.getInt(entry + 4) & 0xFFFFFFFFL;
+            int subDirectory = subDirectory(directory, tag);
+            if (subDirectory >= 0) {
+                if (wanted.containsKey(subDirectory)
+                        || (subDirectory == ExifTags.IFD_EXIF && wanted.containsKey(ExifTags.IFD_INTEROP))) {
+                    readDirectory(tiff, tiff.getInt(entry + 8), subDirectory, wanted, entries, visited);
+                }
+                continue;
+            }
+            String[] names = ids != null ? ids.get(tag) : null;
+            if (names == null) continue;
+            int typeSize = ExifData.typeSize(type);
+            long size = valueCount * typeSize;
+            if (typeSize == 0 || size > tiff.limit()) continue;
+            int valueOffset = size <= 4 ? entry + 8 : tiff.getInt(entry + 8);
+            if (valueOffset < 0 || valueOffset + size > tiff.limit()) continue;
+            byte[] value = new byte[(int) size];
+            for (int b = 0; b < value.length; b++) {
+                value[b] = tiff.get(valueOffset + b);
+            }
+            ExifData.Entry parsed = new ExifData.Entry(type, (int) valueCount, value);
+            for (String name : names) {
+                entries.put(name, parsed);
+            }
+        }
+    }
+
+    /**
+     * @return directory a pointer tag leads to, or -1 if the tag is not a pointer
+     */
+    static int subDirectory(int directory, int tag) {
+        if (directory == ExifTags.IFD_PRIMARY && tag == ExifTags.POINTER_EXIF) return ExifTags.IFD_EXIF;
+        if (directory == ExifTags.IFD_PRIMARY && tag == ExifTags.POINTER_GPS) return ExifTags.IFD_GPS;
+        if (directory == ExifTags.IFD_EXIF && tag == ExifTags.POINTER_INTEROP) return ExifTags.IFD_INTEROP;
+        return -1;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+    }
+
+    static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new EOFException();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
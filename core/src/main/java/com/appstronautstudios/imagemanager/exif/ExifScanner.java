@@ -0,0 +1,267 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import com.appstronautstudios.imagemanager.utils.IoExecutor;
+import com.appstronautstudios.imagemanager.utils.TaskScope;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads EXIF tags from many images in parallel and reports each result as soon as it is ready.
+ * Sources are enumerated lazily so the first results arrive before the directory walk finishes,
+ * and only a bounded number of reads is queued at any time.
+ */
+public class ExifScanner {
+
+    /**
+     * Receives scan results. Called from scanner worker threads, possibly concurrently.
+     */
+    public interface Listener {
+        void result(Source source, ExifData data);
+
+        void error(Source source, Exception e);
+
+        /**
+         * called once after every source has been reported, unless the scan was cancelled
+         *
+         * @param scanned number of sources read successfully
+         * @param failed  number of sources that failed
+         */
+        void complete(int scanned, int failed);
+    }
+
+    /**
+     * An image to scan
+     */
+    public interface Source {
+        /**
+         * @return path, uri or other identifier of the image
+         */
+        String getName();
+
+        InputStream open() throws IOException;
+    }
+
+    private final int parallelism;
+    private final IoExecutor executor;
+    private final Set<String> tags;
+
+    /**
+     * @param parallelism number of concurrent reads. Each scan gets its own executor, on virtual
+     *                    threads where the runtime has them
+     * @param tags        tag names to read, see {@link ExifTags} for groups
+     */
+    public ExifScanner(int parallelism, Set<String> tags) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
+        this.parallelism = parallelism;
+        this.executor = null;
+        this.tags = Collections.unmodifiableSet(tags);
+    }
+
+    /**
+     * @param executor executor shared by every scan, its concurrency is the number of concurrent
+     *                 reads. Not shut down by the scanner
+     * @param tags     tag names to read, see {@link ExifTags} for groups
+     */
+    public ExifScanner(IoExecutor executor, Set<String> tags) {
+        this.parallelism = executor.getConcurrency();
+        this.executor = executor;
+        this.tags = Collections.unmodifiableSet(tags);
+    }
+
+    /**
+     * scan every JPEG in a directory tree
+     *
+     * @param root     directory to walk
+     * @param listener result listener
+     * @return handle to cancel the scan or wait for the number of sources scanned
+     */
+    public Future<Integer> scanDirectory(File root, Listener listener) {
+        return scan(directorySources(root), listener);
+    }
+
+    /**
+     * scan the given sources. The iterable is consumed on the scan's own thread. If its iterator
+     * is {@link Closeable} it is closed when the scan ends, also when cancelled or failing.
+     *
+     * @param sources  sources to read
+     * @param listener result listener
+     * @return handle to cancel the scan or wait for the number of sources scanned
+     */
+    public Future<Integer> scan(final Iterable<? extends Source> sources, final Listener listener) {
+        FutureTask<Integer> task = new FutureTask<>(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return run(sources, listener);
+            }
+        });
+        Thread thread = new Thread(task, "ExifScanner");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    private int run(Iterable<? extends Source> sources, final Listener listener) throws InterruptedException {
+        final AtomicInteger scanned = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        IoExecutor workers = executor != null ? executor : IoExecutor.create(parallelism, "ExifScanner");
+        TaskScope<Void> scope = workers.openScope(false);
+        Iterator<? extends Source> iterator = sources.iterator();
+        try {
+            while (iterator.hasNext()) {
+                final Source source = iterator.next();
+                // blocks while the concurrency limit is reached, don't enumerate far ahead of the readers
+                scope.fork(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        try {
+                            ExifData data;
+                            if (source instanceof FileSource) {
+                                // positional reads, skips straight past non EXIF segments
+                                data = ExifReader.read(((FileSource) source).file, tags);
+                            } else {
+                                InputStream in = source.open();
+                                try {
+                                    data = ExifReader.read(in, tags);
+                                } finally {
+                                    in.close();
+                                }
+                            }
+                            scanned.incrementAndGet();
+                            listener.result(source, data);
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            listener.error(source, e);
+                        }
+                        return null;
+                    }
+                });
+            }
+            scope.join();
+        } finally {
+            scope.close();
+            if (workers != executor) workers.shutdown();
+            if (iterator instanceof Closeable) {
+                try {
+                    ((Closeable) iterator).close();
+                } catch (IOException e) {
+                    // nothing left to read from it
+                }
+            }
+        }
+        listener.complete(scanned.get(), failed.get());
+        return scanned.get();
+    }
+
+    /**
+     * @param root directory to walk
+     * @return lazily walked JPEG files under the directory
+     */
+    public static Iterable<Source> directorySources(File root) {
+        return new DirectoryWalk(root);
+    }
+
+    /**
+     * @param file file to scan
+     * @return source reading the file
+     */
+    public static Source fileSource(File file) {
+        return new FileSource(file);
+    }
+
+    private static class FileSource implements Source {
+        final File file;
+
+        FileSource(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public String getName() {
+            return file.getAbsolutePath();
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return new FileInputStream(file);
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+    }
+
+    static boolean isJpeg(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
+    /**
+     * lazy depth first walk returning JPEG files
+     */
+    private static class DirectoryWalk implements Iterable<Source> {
+        private final File root;
+
+        DirectoryWalk(File root) {
+            this.root = root;
+        }
+
+        @Override
+        public Iterator<Source> iterator() {
+            final ArrayDeque<File> pending = new ArrayDeque<>();
+            pending.push(root);
+            return new Iterator<Source>() {
+                private File next = advance();
+
+                private File advance() {
+                    while (!pending.isEmpty()) {
+                        File file = pending.pop();
+                        if (file.isDirectory()) {
+                            File[] children = file.listFiles();
+                            if (children != null) {
+                                for (File child : children) {
+                                    pending.push(child);
+                                }
+                            }
+                        } else if (isJpeg(file.getName())) {
+                            return file;
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Source next() {
+                    if (next == null) throw new NoSuchElementException();
+                    File file = next;
+                    next = advance();
+                    return fileSource(file);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import com.appstronautstudios.imagemanager.utils.IoExecutor;
+import com.appstronautstudios.imagemanager.utils.TaskScope;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Removes metadata from JPEGs in a single streaming pass. Segments are copied one at a time and
+ * the compressed image data is copied byte for byte, so pixels are never re-encoded and the file
+ * is never held in memory. Removed EXIF entries are dropped from their directory and their values
+ * are zeroed, the rest of the EXIF segment keeps its layout.
+ */
+public final class ExifScrubber {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int IFD_ENTRY_SIZE = 12;
+    private static final byte[] XMP_HEADER = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] XMP_EXTENSION_HEADER = "http://ns.adobe.com/xmp/extension/\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    private ExifScrubber() {
+    }
+
+    /**
+     * copy a JPEG stream, removing metadata. Streams are not closed.
+     *
+     * @param inputStream  JPEG source
+     * @param outputStream destination
+     * @param policy       metadata to remove
+     * @throws IOException if reading or writing fails or the source is not a JPEG
+     */
+    public static void scrub(InputStream inputStream, OutputStream outputStream, ScrubPolicy policy) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream instanceof BufferedInputStream
+                ? inputStream : new BufferedInputStream(inputStream, BUFFER_SIZE));
+        OutputStream out = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        if (in.readUnsignedByte() != 0xFF || in.readUnsignedByte() != ExifReader.MARKER_SOI) {
+            throw new IOException("Not a JPEG stream");
+        }
+        out.write(0xFF);
+        out.write(ExifReader.MARKER_SOI);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (true) {
+            if (in.readUnsignedByte() != 0xFF) throw new IOException("Corrupt JPEG marker");
+            int marker = in.readUnsignedByte();
+            while (marker == 0xFF) marker = in.readUnsignedByte();
+            if (marker == ExifReader.MARKER_EOI) {
+                writeMarker(out, marker);
+                break;
+            }
+            if (ExifReader.isStandalone(marker)) {
+                writeMarker(out, marker);
+                continue;
+            }
+            int length = in.readUnsignedShort();
+            if (length < 2) throw new IOException("Corrupt JPEG segment");
+            if (marker == ExifReader.MARKER_APP1) {
+                byte[] segment = new byte[length - 2];
+                in.readFully(segment);
+                if (ExifReader.isExifSegment(segment, 0)) {
+                    if (policy.isRemoveExif()) continue;
+                    scrubExif(segment, policy);
+                } else if (policy.isRemoveXmp() && (startsWith(segment, XMP_HEADER) || startsWith(segment, XMP_EXTENSION_HEADER))) {
+                    continue;
+                }
+                writeMarker(out, marker);
+                out.write(length >> 8);
+                out.write(length);
+                out.write(segment);
+            } else {
+                writeMarker(out, marker);
+                out.write(length >> 8);
+                out.write(length);
+                copy(in, out, length - 2, buffer);
+                if (marker == ExifReader.MARKER_SOS) {
+                    // entropy coded data and everything after it is copied verbatim
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, read);
+                    }
+                    break;
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * @param source      JPEG file
+     * @param destination output file, replaced if it exists
+     * @param policy      metadata to remove
+     * @throws IOException if reading or writing fails or the source is not a JPEG
+     */
+    public static void scrub(File source, File destination, ScrubPolicy policy) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(destination);
+            try {
+                scrub(in, out, policy);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * scrub a file in place. The result is written next to it and renamed over the original, so
+     * the original is left untouched if anything fails.
+     *
+     * @param file   JPEG file
+     * @param policy metadata to remove
+     * @throws IOException if reading or writing fails or the file is not a JPEG
+     */
+    public static void scrub(File file, ScrubPolicy policy) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            scrub(file, temp, policy);
+            // renameTo can't replace an existing file on Windows. Android has no java.nio.file before
+            // 8 but its rename always replaces, so Files is only reached on plain JVMs
+            if (!temp.renameTo(file)) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * scrub many files in place in parallel
+     *
+     * @param files       JPEG files
+     * @param policy      metadata to remove
+     * @param parallelism number of files processed at once, on virtual threads where the runtime has them
+     * @return files that failed with their error, empty if all succeeded
+     * @throws InterruptedException if interrupted while waiting, remaining files are skipped
+     */
+    public static Map<File, Exception> scrubAll(Collection<File> files, ScrubPolicy policy, int parallelism) throws InterruptedException {
+        IoExecutor executor = IoExecutor.create(Math.max(1, parallelism), "ExifScrubber");
+        try {
+            return scrubAll(files, policy, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * scrub many files in place in parallel
+     *
+     * @param files    JPEG files
+     * @param policy   metadata to remove
+     * @param executor executor to run on, not shut down
+     * @return files that failed with their error, empty if all succeeded
+     * @throws InterruptedException if interrupted while waiting, remaining files are skipped
+     */
+    public static Map<File, Exception> scrubAll(Collection<File> files, final ScrubPolicy policy, IoExecutor executor) throws InterruptedException {
+        TaskScope<Void> scope = executor.openScope(false);
+        Map<File, Future<Void>> futures = new LinkedHashMap<>();
+        try {
+            for (final File file : files) {
+                futures.put(file, scope.fork(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        scrub(file, policy);
+                        return null;
+                    }
+                }));
+            }
+            scope.join();
+        } finally {
+            scope.close();
+        }
+        Map<File, Exception> failures = new LinkedHashMap<>();
+        for (Map.Entry<File, Future<Void>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (ExecutionException e) {
+                failures.put(entry.getKey(), e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @param file file to check
+     * @return true if the file starts with a JPEG start of image marker
+     */
+    public static boolean isJpeg(File file) {
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                return in.read() == 0xFF && in.read() == ExifReader.MARKER_SOI;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * remove entries from the EXIF segment in place. The segment keeps its length and offsets so
+     * no other part of it has to move.
+     */
+    private static void scrubExif(byte[] segment, ScrubPolicy policy) throws IOException {
+        int offset = ExifReader.EXIF_HEADER_LENGTH;
+        ByteBuffer tiff = ExifReader.tiffBuffer(segment, offset, segment.length - offset);
+        scrubDirectory(tiff, tiff.getInt(4), ExifTags.IFD_PRIMARY, policy, new HashSet<Integer>());
+    }
+
+    /**
+     * @return number of entries left in the directory
+     */
+    private static int scrubDirectory(ByteBuffer tiff, int offset, int directory, ScrubPolicy policy, Set<Integer> visited) {
+        // compared without adding to offset, which is read from the file and may overflow
+        if (offset < 8 || offset > tiff.limit() - 2 || !visited.add(offset)) return -1;
+        int count = tiff.getShort(offset) & 0xFFFF;
+        int entriesEnd = offset + 2 + count * IFD_ENTRY_SIZE;
+        if (entriesEnd + 4 > tiff.limit()) return -1;
+        List<byte[]> kept = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int entry = offset + 2 + i * IFD_ENTRY_SIZE;
+            int tag = tiff.getShort(entry) & 0xFFFF;
+            int subDirectory = ExifReader.subDirectory(directory, tag);
+            boolean remove;
+            if (subDirectory >= 0) {
+                int remaining = scrubDirectory(tiff, tiff.getInt(entry + 8), subDirectory, policy, visited);
+                // drop pointers to directories that ended up empty
+                remove = remaining == 0;
+            } else {
+                remove = policy.removes(directory, tag);
+                if (remove) zeroValue(tiff, entry);
+            }
+            if (!remove) {
+                byte[] copy = new byte[IFD_ENTRY_SIZE];
+                for (int b = 0; b < IFD_ENTRY_SIZE; b++) {
+                    copy[b] = tiff.get(entry + b);
+                }
+                kept.add(copy);
+            }
+        }
+        if (kept.size() == count) return count;
+        // rewrite the compacted entry list followed by the next directory pointer
+        int nextDirectory = tiff.getInt(entriesEnd);
+        tiff.putShort(offset, (short) kept.size());
+        int position = offset + 2;
+        for (byte[] entry : kept) {
+            for (byte b : entry) {
+                tiff.put(position++, b);
+            }
+        }
+        tiff.putInt(position, nextDirectory);
+        position += 4;
+        while (position < entriesEnd + 4) {
+            tiff.put(position++, (byte) 0);
+        }
+        return kept.size();
+    }
+
+    private static void zeroValue(ByteBuffer tiff, int entry) {
+        int type = tiff.getShort(entry + 2) & 0xFFFF;
+        long size = (tiff.getInt(entry + 4) & 0xFFFFFFFFL) * ExifData.typeSize(type);
+        if (size <= 4) return; // inline values vanish with the entry
+        int valueOffset = tiff.getInt(entry + 8);
+        if (valueOffset < 8 || valueOffset + size > tiff.limit()) return;
+        for (int i = 0; i < size; i++) {
+            tiff.put(valueOffset + i, (byte) 0);
+        }
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static void writeMarker(OutputStream out, int marker) throws IOException {
+        out.write(0xFF);
+        out.write(marker);
+    }
+
+    private static void copy(InputStream in, OutputStream out, int count, byte[] buffer) throws IOException {
+        while (count > 0) {
+            int read = in.read(buffer, 0, Math.min(count, buffer.length));
+            if (read < 0) throw new IOException("Truncated JPEG segment");
+            out.write(buffer, 0, read);
+            count -= read;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Names, IDs and directories of the EXIF tags understood by {@link ExifReader}. Names match the
+ * ones used by {@code android.media.ExifInterface}.
+ */
+public final class ExifTags {
+
+    public static final int IFD_PRIMARY = 0;
+    public static final int IFD_EXIF = 1;
+    public static final int IFD_GPS = 2;
+    public static final int IFD_INTEROP = 3;
+
+    static final int POINTER_EXIF = 0x8769;
+    static final int POINTER_GPS = 0x8825;
+    static final int POINTER_INTEROP = 0xA005;
+
+    /**
+     * all GPS position, time and direction tags
+     */
+    public static final Set<String> GPS;
+    /**
+     * camera, lens and exposure settings
+     */
+    public static final Set<String> CAMERA = group("Make", "Model", "Software", "LensMake",
+            "LensModel", "LensSpecification", "BodySerialNumber", "LensSerialNumber",
+            "CameraOwnerName", "ExposureTime", "FNumber", "ExposureProgram", "ISOSpeedRatings",
+            "PhotographicSensitivity", "ShutterSpeedValue", "ApertureValue", "ExposureBiasValue",
+            "MaxApertureValue", "MeteringMode", "LightSource", "Flash", "FocalLength",
+            "FocalLengthIn35mmFilm", "WhiteBalance", "ExposureMode", "SceneCaptureType");
+    /**
+     * capture and modification times including sub second and offset tags
+     */
+    public static final Set<String> TIMESTAMPS = group("DateTime", "DateTimeOriginal",
+            "DateTimeDigitized", "SubSecTime", "SubSecTimeOriginal", "SubSecTimeDigitized",
+            "OffsetTime", "OffsetTimeOriginal", "OffsetTimeDigitized", "GPSDateStamp",
+            "GPSTimeStamp");
+    /**
+     * orientation and pixel dimensions, enough to lay out an image before decoding it
+     */
+    public static final Set<String> LAYOUT = group("Orientation", "ImageWidth", "ImageLength",
+            "PixelXDimension", "PixelYDimension");
+    /**
+     * every tag in this table
+     */
+    public static final Set<String> ALL;
+
+    private static final Map<String, Integer> IDS = new HashMap<>();
+    private static final Map<String, Integer> DIRECTORIES = new HashMap<>();
+    private static final Set<String> GPS_NAMES = new HashSet<>();
+
+    static {
+        add(IFD_PRIMARY, 0x0100, "ImageWidth");
+        add(IFD_PRIMARY, 0x0101, "ImageLength");
+        add(IFD_PRIMARY, 0x0102, "BitsPerSample");
+        add(IFD_PRIMARY, 0x0103, "Compression");
+        add(IFD_PRIMARY, 0x0106, "PhotometricInterpretation");
+        add(IFD_PRIMARY, 0x010E, "ImageDescription");
+        add(IFD_PRIMARY, 0x010F, "Make");
+        add(IFD_PRIMARY, 0x0110, "Model");
+        add(IFD_PRIMARY, 0x0111, "StripOffsets");
+        add(IFD_PRIMARY, 0x0112, "Orientation");
+        add(IFD_PRIMARY, 0x0115, "SamplesPerPixel");
+        add(IFD_PRIMARY, 0x0116, "RowsPerStrip");
+        add(IFD_PRIMARY, 0x0117, "StripByteCounts");
+        add(IFD_PRIMARY, 0x011A, "XResolution");
+        add(IFD_PRIMARY, 0x011B, "YResolution");
+        add(IFD_PRIMARY, 0x011C, "PlanarConfiguration");
+        add(IFD_PRIMARY, 0x0128, "ResolutionUnit");
+        add(IFD_PRIMARY, 0x012D, "TransferFunction");
+        add(IFD_PRIMARY, 0x0131, "Software");
+        add(IFD_PRIMARY, 0x0132, "DateTime");
+        add(IFD_PRIMARY, 0x013B, "Artist");
+        add(IFD_PRIMARY, 0x013E, "WhitePoint");
+        add(IFD_PRIMARY, 0x013F, "PrimaryChromaticities");
+        add(IFD_PRIMARY, 0x0201, "JPEGInterchangeFormat");
+        add(IFD_PRIMARY, 0x0202, "JPEGInterchangeFormatLength");
+        add(IFD_PRIMARY, 0x0211, "YCbCrCoefficients");
+        add(IFD_PRIMARY, 0x0212, "YCbCrSubSampling");
+        add(IFD_PRIMARY, 0x0213, "YCbCrPositioning");
+        add(IFD_PRIMARY, 0x0214, "ReferenceBlackWhite");
+        add(IFD_PRIMARY, 0x02BC, "Xmp");
+        add(IFD_PRIMARY, 0x8298, "Copyright");
+        add(IFD_EXIF, 0x829A, "ExposureTime");
+        add(IFD_EXIF, 0x829D, "FNumber");
+        add(IFD_EXIF, 0x8822, "ExposureProgram");
+        add(IFD_EXIF, 0x8824, "SpectralSensitivity");
+        add(IFD_EXIF, 0x8827, "ISOSpeedRatings");
+        add(IFD_EXIF, 0x8827, "PhotographicSensitivity");
+        add(IFD_EXIF, 0x8828, "OECF");
+        add(IFD_EXIF, 0x8830, "SensitivityType");
+        add(IFD_EXIF, 0x8831, "StandardOutputSensitivity");
+        add(IFD_EXIF, 0x8832, "RecommendedExposureIndex");
+        add(IFD_EXIF, 0x8833, "ISOSpeed");
+        add(IFD_EXIF, 0x8834, "ISOSpeedLatitudeyyy");
+        add(IFD_EXIF, 0x8835, "ISOSpeedLatitudezzz");
+        add(IFD_EXIF, 0x9000, "ExifVersion");
+        add(IFD_EXIF, 0x9003, "DateTimeOriginal");
+        add(IFD_EXIF, 0x9004, "DateTimeDigitized");
+        add(IFD_EXIF, 0x9010, "OffsetTime");
+        add(IFD_EXIF, 0x9011, "OffsetTimeOriginal");
+        add(IFD_EXIF, 0x9012, "OffsetTimeDigitized");
+        add(IFD_EXIF, 0x9101, "ComponentsConfiguration");
+        add(IFD_EXIF, 0x9102, "CompressedBitsPerPixel");
+        add(IFD_EXIF, 0x9201, "ShutterSpeedValue");
+        add(IFD_EXIF, 0x9202, "ApertureValue");
+        add(IFD_EXIF, 0x9203, "BrightnessValue");
+        add(IFD_EXIF, 0x9204, "ExposureBiasValue");
+        add(IFD_EXIF, 0x9205, "MaxApertureValue");
+        add(IFD_EXIF, 0x9206, "SubjectDistance");
+        add(IFD_EXIF, 0x9207, "MeteringMode");
+        add(IFD_EXIF, 0x9208, "LightSource");
+        add(IFD_EXIF, 0x9209, "Flash");
+        add(IFD_EXIF, 0x920A, "FocalLength");
+        add(IFD_EXIF, 0x9214, "SubjectArea");
+        add(IFD_EXIF, 0x927C, "MakerNote");
+        add(IFD_EXIF, 0x9286, "UserComment");
+        add(IFD_EXIF, 0x9290, "SubSecTime");
+        add(IFD_EXIF, 0x9291, "SubSecTimeOriginal");
+        add(IFD_EXIF, 0x9292, "SubSecTimeDigitized");
+        add(IFD_EXIF, 0xA000, "FlashpixVersion");
+        add(IFD_EXIF, 0xA001, "ColorSpace");
+        add(IFD_EXIF, 0xA002, "PixelXDimension");
+        add(IFD_EXIF, 0xA003, "PixelYDimension");
+        add(IFD_EXIF, 0xA004, "RelatedSoundFile");
+        add(IFD_EXIF, 0xA20B, "FlashEnergy");
+        add(IFD_EXIF, 0xA20C, "SpatialFrequencyResponse");
+        add(IFD_EXIF, 0xA20E, "FocalPlaneXResolution");
+        add(IFD_EXIF, 0xA20F, "FocalPlaneYResolution");
+        add(IFD_EXIF, 0xA210, "FocalPlaneResolutionUnit");
+        add(IFD_EXIF, 0xA214, "SubjectLocation");
+        add(IFD_EXIF, 0xA215, "ExposureIndex");
+        add(IFD_EXIF, 0xA217, "SensingMethod");
+        add(IFD_EXIF, 0xA300, "FileSource");
+        add(IFD_EXIF, 0xA301, "SceneType");
+        add(IFD_EXIF, 0xA302, "CFAPattern");
+        add(IFD_EXIF, 0xA401, "CustomRendered");
+        add(IFD_EXIF, 0xA402, "ExposureMode");
+        add(IFD_EXIF, 0xA403, "WhiteBalance");
+        add(IFD_EXIF, 0xA404, "DigitalZoomRatio");
+        add(IFD_EXIF, 0xA405, "FocalLengthIn35mmFilm");
+        add(IFD_EXIF, 0xA406, "SceneCaptureType");
+        add(IFD_EXIF, 0xA407, "GainControl");
+        add(IFD_EXIF, 0xA408, "Contrast");
+        add(IFD_EXIF, 0xA409, "Saturation");
+        add(IFD_EXIF, 0xA40A, "Sharpness");
+        add(IFD_EXIF, 0xA40B, "DeviceSettingDescription");
+        add(IFD_EXIF, 0xA40C, "SubjectDistanceRange");
+        add(IFD_EXIF, 0xA420, "ImageUniqueID");
+        add(IFD_EXIF, 0xA430, "CameraOwnerName");
+        add(IFD_EXIF, 0xA431, "BodySerialNumber");
+        add(IFD_EXIF, 0xA432, "LensSpecification");
+        add(IFD_EXIF, 0xA433, "LensMake");
+        add(IFD_EXIF, 0xA434, "LensModel");
+        add(IFD_EXIF, 0xA435, "LensSerialNumber");
+        add(IFD_EXIF, 0xA500, "Gamma");
+        add(IFD_GPS, 0x0000, "GPSVersionID");
+        add(IFD_GPS, 0x0001, "GPSLatitudeRef");
+        add(IFD_GPS, 0x0002, "GPSLatitude");
+        add(IFD_GPS, 0x0003, "GPSLongitudeRef");
+        add(IFD_GPS, 0x0004, "GPSLongitude");
+        add(IFD_GPS, 0x0005, "GPSAltitudeRef");
+        add(IFD_GPS, 0x0006, "GPSAltitude");
+        add(IFD_GPS, 0x0007, "GPSTimeStamp");
+        add(IFD_GPS, 0x0008, "GPSSatellites");
+        add(IFD_GPS, 0x0009, "GPSStatus");
+        add(IFD_GPS, 0x000A, "GPSMeasureMode");
+        add(IFD_GPS, 0x000B, "GPSDOP");
+        add(IFD_GPS, 0x000C, "GPSSpeedRef");
+        add(IFD_GPS, 0x000D, "GPSSpeed");
+        add(IFD_GPS, 0x000E, "GPSTrackRef");
+        add(IFD_GPS, 0x000F, "GPSTrack");
+        add(IFD_GPS, 0x0010, "GPSImgDirectionRef");
+        add(IFD_GPS, 0x0011, "GPSImgDirection");
+        add(IFD_GPS, 0x0012, "GPSMapDatum");
+        add(IFD_GPS, 0x0013, "GPSDestLatitudeRef");
+        add(IFD_GPS, 0x0014, "GPSDestLatitude");
+        add(IFD_GPS, 0x0015, "GPSDestLongitudeRef");
+        add(IFD_GPS, 0x0016, "GPSDestLongitude");
+        add(IFD_GPS, 0x0017, "GPSDestBearingRef");
+        add(IFD_GPS, 0x0018, "GPSDestBearing");
+        add(IFD_GPS, 0x0019, "GPSDestDistanceRef");
+        add(IFD_GPS, 0x001A, "GPSDestDistance");
+        add(IFD_GPS, 0x001B, "GPSProcessingMethod");
+        add(IFD_GPS, 0x001C, "GPSAreaInformation");
+        add(IFD_GPS, 0x001D, "GPSDateStamp");
+        add(IFD_GPS, 0x001E, "GPSDifferential");
+        add(IFD_GPS, 0x001F, "GPSHPositioningError");
+        add(IFD_INTEROP, 0x0001, "InteroperabilityIndex");
+        GPS = Collections.unmodifiableSet(GPS_NAMES);
+        ALL = Collections.unmodifiableSet(new HashSet<>(IDS.keySet()));
+    }
+
+    private ExifTags() {
+    }
+
+    private static void add(int directory, int id, String name) {
+        IDS.put(name, id);
+        DIRECTORIES.put(name, directory);
+        if (directory == IFD_GPS) GPS_NAMES.add(name);
+    }
+
+    /**
+     * @param names tag names
+     * @return immutable set of the names, for use as a tag group
+     */
+    public static Set<String> group(String... names) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+    }
+
+    /**
+     * @param name tag name
+     * @return true if the tag is in this table
+     */
+    public static boolean isKnown(String name) {
+        return IDS.containsKey(name);
+    }
+
+    /**
+     * @param name tag name
+     * @return numeric tag ID
+     * @throws IllegalArgumentException if the tag is unknown
+     */
+    public static int id(String name) {
+        Integer id = IDS.get(name);
+        if (id == null) throw new IllegalArgumentException("Unknown tag " + name);
+        return id;
+    }
+
+    /**
+     * @param name tag name
+     * @return directory the tag lives in, one of the {@code IFD_} constants
+     * @throws IllegalArgumentException if the tag is unknown
+     */
+    public static int directory(String name) {
+        Integer directory = DIRECTORIES.get(name);
+        if (directory == null) throw new IllegalArgumentException("Unknown tag " + name);
+        return directory;
+    }
+}
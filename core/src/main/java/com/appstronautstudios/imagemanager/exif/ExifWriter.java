@@ -0,0 +1,190 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds a JPEG APP1 EXIF segment from an {@link ExifData}. Used to write a controlled set of
+ * tags while encoding instead of editing the file afterwards.
+ */
+public final class ExifWriter {
+
+    private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+    private static final int IFD_ENTRY_SIZE = 12;
+    private static final int DIRECTORY_COUNT = 4;
+    /**
+     * tags whose values are offsets into the source file, or are only meaningful next to such
+     * offsets. Copied as is they would point into the wrong file
+     */
+    private static final Set<String> OFFSET_TAGS = new HashSet<>(Arrays.asList("StripOffsets",
+            "StripByteCounts", "JPEGInterchangeFormat", "JPEGInterchangeFormatLength", "MakerNote"));
+
+    private ExifWriter() {
+    }
+
+    /**
+     * @param data tags to write. Strip and thumbnail offsets and MakerNote are skipped since
+     *             their values only make sense in the file they were read from
+     * @return complete APP1 segment including marker and length, or an empty array if there are
+     * no tags to write
+     * @throws IllegalArgumentException if the tags don't fit in a single segment
+     */
+    public static byte[] buildSegment(ExifData data) {
+        // group entries by directory, skipping duplicate names for the same tag id
+        List<List<Tag>> directories = new ArrayList<>();
+        for (int i = 0; i < DIRECTORY_COUNT; i++) {
+            directories.add(new ArrayList<Tag>());
+        }
+        Set<Integer> written = new HashSet<>();
+        for (String name : data.getTags()) {
+            if (!ExifTags.isKnown(name) || OFFSET_TAGS.contains(name)) continue;
+            int directory = ExifTags.directory(name);
+            int id = ExifTags.id(name);
+            if (!written.add(directory << 16 | id)) continue;
+            directories.get(directory).add(new Tag(id, data.getEntry(name), data.getOrder()));
+        }
+        List<Tag> primary = directories.get(ExifTags.IFD_PRIMARY);
+        List<Tag> exif = directories.get(ExifTags.IFD_EXIF);
+        List<Tag> gps = directories.get(ExifTags.IFD_GPS);
+        List<Tag> interop = directories.get(ExifTags.IFD_INTEROP);
+        if (primary.isEmpty() && exif.isEmpty() && gps.isEmpty() && interop.isEmpty()) return new byte[0];
+
+        // pointer entries get their values once the directory offsets are known
+        Tag exifPointer = null;
+        Tag gpsPointer = null;
+        Tag interopPointer = null;
+        if (!interop.isEmpty()) {
+            interopPointer = Tag.pointer(ExifTags.POINTER_INTEROP);
+            exif.add(interopPointer);
+        }
+        if (!exif.isEmpty()) {
+            exifPointer = Tag.pointer(ExifTags.POINTER_EXIF);
+            primary.add(exifPointer);
+        }
+        if (!gps.isEmpty()) {
+            gpsPointer = Tag.pointer(ExifTags.POINTER_GPS);
+            primary.add(gpsPointer);
+        }
+
+        // layout: header, directories, then out of line values
+        int offset = 8;
+        int[] directoryOffsets = new int[DIRECTORY_COUNT];
+        int[] order = {ExifTags.IFD_PRIMARY, ExifTags.IFD_EXIF, ExifTags.IFD_GPS, ExifTags.IFD_INTEROP};
+        for (int directory : order) {
+            List<Tag> tags = directories.get(directory);
+            if (tags.isEmpty()) continue;
+            Collections.sort(tags, new Comparator<Tag>() {
+                @Override
+                public int compare(Tag a, Tag b) {
+                    return Integer.compare(a.id, b.id);
+                }
+            });
+            directoryOffsets[directory] = offset;
+            offset += 2 + tags.size() * IFD_ENTRY_SIZE + 4;
+        }
+        for (int directory : order) {
+            for (Tag tag : directories.get(directory)) {
+                if (tag.value.length > 4) {
+                    tag.valueOffset = offset;
+                    offset += tag.value.length + (tag.value.length & 1); // word aligned
+                }
+            }
+        }
+        int tiffLength = offset;
+        int segmentLength = 2 + ExifReader.EXIF_HEADER_LENGTH + tiffLength;
+        if (segmentLength > MAX_SEGMENT_LENGTH) {
+            throw new IllegalArgumentException("EXIF data too large for a single segment: " + segmentLength);
+        }
+        if (exifPointer != null) exifPointer.setPointer(directoryOffsets[ExifTags.IFD_EXIF]);
+        if (gpsPointer != null) gpsPointer.setPointer(directoryOffsets[ExifTags.IFD_GPS]);
+        if (interopPointer != null) interopPointer.setPointer(directoryOffsets[ExifTags.IFD_INTEROP]);
+
+        ByteBuffer segment = ByteBuffer.allocate(2 + segmentLength).order(ByteOrder.BIG_ENDIAN);
+        segment.put((byte) 0xFF).put((byte) ExifReader.MARKER_APP1).putShort((short) segmentLength);
+        segment.put(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        ByteBuffer tiff = segment.slice().order(ByteOrder.BIG_ENDIAN);
+        tiff.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8);
+        for (int directory : order) {
+            List<Tag> tags = directories.get(directory);
+            if (tags.isEmpty()) continue;
+            tiff.position(directoryOffsets[directory]);
+            tiff.putShort((short) tags.size());
+            for (Tag tag : tags) {
+                tiff.putShort((short) tag.id).putShort((short) tag.type).putInt(tag.count);
+                if (tag.value.length > 4) {
+                    tiff.putInt(tag.valueOffset);
+                } else {
+                    byte[] inline = new byte[4];
+                    System.arraycopy(tag.value, 0, inline, 0, tag.value.length);
+                    tiff.put(inline);
+                }
+            }
+            tiff.putInt(0); // no next directory, thumbnails are not written
+            for (Tag tag : tags) {
+                if (tag.value.length > 4) {
+                    tiff.position(tag.valueOffset);
+                    tiff.put(tag.value);
+                }
+            }
+        }
+        return segment.array();
+    }
+
+    /**
+     * one directory entry with its value converted to big endian
+     */
+    private static class Tag {
+        final int id;
+        int type;
+        int count;
+        byte[] value;
+        int valueOffset;
+
+        Tag(int id, ExifData.Entry entry, ByteOrder order) {
+            this.id = id;
+            this.type = entry.type;
+            this.count = entry.count;
+            this.value = toBigEndian(entry, order);
+        }
+
+        private Tag(int id) {
+            this.id = id;
+        }
+
+        static Tag pointer(int id) {
+            Tag tag = new Tag(id);
+            tag.type = ExifData.TYPE_LONG;
+            tag.count = 1;
+            tag.value = new byte[4];
+            return tag;
+        }
+
+        void setPointer(int offset) {
+            value = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN).putInt(offset).array();
+        }
+
+        private static byte[] toBigEndian(ExifData.Entry entry, ByteOrder order) {
+            byte[] value = entry.value.clone();
+            if (order == ByteOrder.BIG_ENDIAN) return value;
+            int unit = ExifData.typeSize(entry.type);
+            // rationals are two 32 bit integers
+            if (entry.type == ExifData.TYPE_RATIONAL || entry.type == ExifData.TYPE_SRATIONAL) unit = 4;
+            if (unit <= 1) return value;
+            for (int start = 0; start + unit <= value.length; start += unit) {
+                for (int i = 0; i < unit / 2; i++) {
+                    byte swap = value[start + i];
+                    value[start + i] = value[start + unit - 1 - i];
+                    value[start + unit - 1 - i] = swap;
+                }
+            }
+            return value;
+        }
+    }
+}
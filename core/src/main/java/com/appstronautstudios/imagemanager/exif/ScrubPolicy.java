@@ -0,0 +1,70 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Describes which metadata {@link ExifScrubber} removes. Immutable.
+ */
+public final class ScrubPolicy {
+
+    /**
+     * location, author, device identifiers and maker notes. Keeps orientation, capture time and
+     * exposure settings
+     */
+    public static final ScrubPolicy SENSITIVE;
+    /**
+     * every EXIF and XMP segment
+     */
+    public static final ScrubPolicy ALL = new ScrubPolicy(Collections.<String>emptySet(), true, true);
+
+    static {
+        Set<String> sensitive = new HashSet<>(ExifTags.GPS);
+        Collections.addAll(sensitive, "Artist", "Copyright", "Make", "Model", "MakerNote",
+                "CameraOwnerName", "BodySerialNumber", "LensSerialNumber", "ImageUniqueID",
+                "UserComment", "Software");
+        SENSITIVE = new ScrubPolicy(sensitive, false, true);
+    }
+
+    private final Set<String> removedTags;
+    private final boolean removeExif;
+    private final boolean removeXmp;
+    private final Set<Integer> removedIds = new HashSet<>(); // directory << 16 | tag id
+
+    /**
+     * @param removedTags tag names to remove from the EXIF segment
+     * @param removeXmp   true to drop XMP segments, which often duplicate EXIF fields
+     */
+    public ScrubPolicy(Set<String> removedTags, boolean removeXmp) {
+        this(removedTags, false, removeXmp);
+    }
+
+    private ScrubPolicy(Set<String> removedTags, boolean removeExif, boolean removeXmp) {
+        this.removedTags = Collections.unmodifiableSet(new HashSet<>(removedTags));
+        this.removeExif = removeExif;
+        this.removeXmp = removeXmp;
+        for (String name : this.removedTags) {
+            if (ExifTags.isKnown(name)) removedIds.add(ExifTags.directory(name) << 16 | ExifTags.id(name));
+        }
+    }
+
+    public Set<String> getRemovedTags() {
+        return removedTags;
+    }
+
+    /**
+     * @return true if the whole EXIF segment is dropped
+     */
+    public boolean isRemoveExif() {
+        return removeExif;
+    }
+
+    public boolean isRemoveXmp() {
+        return removeXmp;
+    }
+
+    boolean removes(int directory, int id) {
+        return removeExif || removedIds.contains(directory << 16 | id);
+    }
+}
@@ -0,0 +1,67 @@
+package com.appstronautstudios.imagemanager.geometry;
+
+/**
+ * Immutable integer rectangle, right and bottom exclusive like {@code android.graphics.Rect}
+ */
+public final class IntRect {
+
+    private final int left;
+    private final int top;
+    private final int right;
+    private final int bottom;
+
+    public IntRect(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * @param rect left, top, right and bottom in its first four elements
+     */
+    public static IntRect of(int[] rect) {
+        return new IntRect(rect[0], rect[1], rect[2], rect[3]);
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getWidth() {
+        return right - left;
+    }
+
+    public int getHeight() {
+        return bottom - top;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof IntRect)) return false;
+        IntRect other = (IntRect) o;
+        return left == other.left && top == other.top && right == other.right && bottom == other.bottom;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((left * 31 + top) * 31 + right) * 31 + bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "IntRect(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+    }
+}
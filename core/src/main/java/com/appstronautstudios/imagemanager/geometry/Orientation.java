@@ -0,0 +1,119 @@
+package com.appstronautstudios.imagemanager.geometry;
+
+/**
+ * EXIF orientation values and the mapping between stored and displayed image coordinates
+ */
+public final class Orientation {
+
+    public static final int UNDEFINED = 0;
+    public static final int NORMAL = 1;
+    public static final int FLIP_HORIZONTAL = 2;
+    public static final int ROTATE_180 = 3;
+    public static final int FLIP_VERTICAL = 4;
+    public static final int TRANSPOSE = 5;
+    public static final int ROTATE_90 = 6;
+    public static final int TRANSVERSE = 7;
+    public static final int ROTATE_270 = 8;
+
+    private Orientation() {
+    }
+
+    /**
+     * @return true if the orientation swaps width and height
+     */
+    public static boolean isTransposed(int orientation) {
+        return orientation == TRANSPOSE || orientation == ROTATE_90
+                || orientation == TRANSVERSE || orientation == ROTATE_270;
+    }
+
+    /**
+     * @return displayed width of an image stored at width x height
+     */
+    public static int orientedWidth(int width, int height, int orientation) {
+        return isTransposed(orientation) ? height : width;
+    }
+
+    /**
+     * @return displayed height of an image stored at width x height
+     */
+    public static int orientedHeight(int width, int height, int orientation) {
+        return isTransposed(orientation) ? width : height;
+    }
+
+    /**
+     * affine transform from stored to displayed coordinates, in the order of
+     * {@code android.graphics.Matrix}: scaleX, skewX, translateX, skewY, scaleY, translateY
+     *
+     * @param orientation EXIF orientation
+     * @param width       stored width
+     * @param height      stored height
+     * @return the six transform values, null for normal or unknown orientations
+     */
+    public static float[] transform(int orientation, int width, int height) {
+        switch (orientation) {
+            case FLIP_HORIZONTAL:
+                return new float[]{-1, 0, width, 0, 1, 0};
+            case ROTATE_180:
+                return new float[]{-1, 0, width, 0, -1, height};
+            case FLIP_VERTICAL:
+                return new float[]{1, 0, 0, 0, -1, height};
+            case TRANSPOSE:
+                return new float[]{0, 1, 0, 1, 0, 0};
+            case ROTATE_90:
+                return new float[]{0, -1, height, 1, 0, 0};
+            case TRANSVERSE:
+                return new float[]{0, -1, height, -1, 0, width};
+            case ROTATE_270:
+                return new float[]{0, 1, 0, -1, 0, width};
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * map a rectangle in displayed coordinates back to stored coordinates, in place
+     *
+     * @param orientation EXIF orientation
+     * @param width       stored width
+     * @param height      stored height
+     * @param rect        left, top, right and bottom, replaced by the stored rectangle
+     */
+    public static void toStored(int orientation, int width, int height, int[] rect) {
+        int left = rect[0];
+        int top = rect[1];
+        int right = rect[2];
+        int bottom = rect[3];
+        switch (orientation) {
+            case FLIP_HORIZONTAL:
+                set(rect, width - right, top, width - left, bottom);
+                break;
+            case ROTATE_180:
+                set(rect, width - right, height - bottom, width - left, height - top);
+                break;
+            case FLIP_VERTICAL:
+                set(rect, left, height - bottom, right, height - top);
+                break;
+            case TRANSPOSE:
+                set(rect, top, left, bottom, right);
+                break;
+            case ROTATE_90:
+                set(rect, top, height - right, bottom, height - left);
+                break;
+            case TRANSVERSE:
+                set(rect, width - bottom, height - right, width - top, height - left);
+                break;
+            case ROTATE_270:
+                set(rect, width - bottom, left, width - top, right);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void set(int[] rect, int left, int top, int right, int bottom) {
+        rect[0] = left;
+        rect[1] = top;
+        rect[2] = right;
+        rect[3] = bottom;
+    }
+}
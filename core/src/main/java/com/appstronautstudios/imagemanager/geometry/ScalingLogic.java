@@ -0,0 +1,17 @@
+package com.appstronautstudios.imagemanager.geometry;
+
+/**
+ * ScalingLogic defines how scaling should be carried out if source and destination image has
+ * different aspect ratio.
+ *
+ * CROP: Scales the image the minimum amount while making sure that at least one of the two
+ * dimensions fit inside the requested destination area. Parts of the source image will be
+ * cropped to realize this.
+ *
+ * FIT: Scales the image the minimum amount while making sure both dimensions fit inside the
+ * requested destination area. The resulting destination dimensions might be adjusted to a
+ * smaller size than requested.
+ */
+public enum ScalingLogic {
+    CROP, FIT
+}
@@ -0,0 +1,175 @@
+package com.appstronautstudios.imagemanager.geometry;
+
+/**
+ * Sample sizes and source and destination rectangles for scaling an image with a
+ * {@link ScalingLogic}. Shared by the Android library and JVM backends so both produce the same
+ * crops and sizes. The int[] variants write left, top, right and bottom into the first four
+ * elements of a caller supplied array and never allocate.
+ */
+public final class ScalingMath {
+
+    private ScalingMath() {
+    }
+
+    /**
+     * Calculate optimal down-sampling factor given the dimensions of a source
+     * image, the dimensions of a destination area and a scaling logic.
+     *
+     * @param srcWidth Width of source image
+     * @param srcHeight Height of source image
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return Optimal down scaling sample size for decoding
+     */
+    public static int calculateSampleSize(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                          ScalingLogic scalingLogic) {
+        final float srcAspect = (float) srcWidth / (float) srcHeight;
+        final float dstAspect = (float) dstWidth / (float) dstHeight;
+        if (scalingLogic == ScalingLogic.FIT) {
+            return srcAspect > dstAspect ? srcWidth / dstWidth : srcHeight / dstHeight;
+        } else {
+            return srcAspect > dstAspect ? srcHeight / dstHeight : srcWidth / dstWidth;
+        }
+    }
+
+    /**
+     * Calculate the largest power of two down-sampling factor that still decodes an image at
+     * least as large as the destination area. Powers of two are what the JPEG decoder can
+     * sub-sample natively.
+     *
+     * @param srcWidth Width of source image
+     * @param srcHeight Height of source image
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return Power of two sample size for decoding
+     */
+    public static int calculatePowerOfTwoSampleSize(int srcWidth, int srcHeight, int dstWidth,
+                                                    int dstHeight, ScalingLogic scalingLogic) {
+        final int sampleSize = calculateSampleSize(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic);
+        return sampleSize <= 1 ? 1 : Integer.highestOneBit(sampleSize);
+    }
+
+    /**
+     * Calculates source rectangle for scaling an image
+     *
+     * @param srcWidth Width of source image
+     * @param srcHeight Height of source image
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param rect Receives the optimal source rectangle
+     */
+    public static void calculateSrcRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                        ScalingLogic scalingLogic, int[] rect) {
+        if (scalingLogic == ScalingLogic.CROP) {
+            final float srcAspect = (float) srcWidth / (float) srcHeight;
+            final float dstAspect = (float) dstWidth / (float) dstHeight;
+
+            if (srcAspect > dstAspect) {
+                final int srcRectWidth = (int) (srcHeight * dstAspect);
+                final int srcRectLeft = (srcWidth - srcRectWidth) / 2;
+                set(rect, srcRectLeft, 0, srcRectLeft + srcRectWidth, srcHeight);
+            } else {
+                final int srcRectHeight = (int) (srcWidth / dstAspect);
+                final int srcRectTop = (srcHeight - srcRectHeight) / 2;
+                set(rect, 0, srcRectTop, srcWidth, srcRectTop + srcRectHeight);
+            }
+        } else {
+            set(rect, 0, 0, srcWidth, srcHeight);
+        }
+    }
+
+    /**
+     * Calculates destination rectangle for scaling an image
+     *
+     * @param srcWidth Width of source image
+     * @param srcHeight Height of source image
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param rect Receives the optimal destination rectangle
+     */
+    public static void calculateDstRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                        ScalingLogic scalingLogic, int[] rect) {
+        if (scalingLogic == ScalingLogic.FIT) {
+            final float srcAspect = (float) srcWidth / (float) srcHeight;
+            final float dstAspect = (float) dstWidth / (float) dstHeight;
+
+            if (srcAspect > dstAspect) {
+                set(rect, 0, 0, dstWidth, (int) (dstWidth / srcAspect));
+            } else {
+                set(rect, 0, 0, (int) (dstHeight * srcAspect), dstHeight);
+            }
+        } else {
+            set(rect, 0, 0, dstWidth, dstHeight);
+        }
+    }
+
+    /**
+     * Calculates source rectangle for scaling an oriented image. The crop is chosen on the image
+     * as displayed and returned in the coordinates of the image as stored.
+     *
+     * @param srcWidth Width of source image as stored
+     * @param srcHeight Height of source image as stored
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param orientation EXIF orientation of the source, see {@link Orientation}
+     * @param rect Receives the optimal source rectangle in stored coordinates
+     */
+    public static void calculateSrcRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                        ScalingLogic scalingLogic, int orientation, int[] rect) {
+        calculateSrcRect(Orientation.orientedWidth(srcWidth, srcHeight, orientation),
+                Orientation.orientedHeight(srcWidth, srcHeight, orientation), dstWidth, dstHeight,
+                scalingLogic, rect);
+        Orientation.toStored(orientation, srcWidth, srcHeight, rect);
+    }
+
+    /**
+     * Calculates destination rectangle for scaling an oriented image, whose displayed width and
+     * height are swapped for 90 and 270 degree rotations
+     *
+     * @param srcWidth Width of source image as stored
+     * @param srcHeight Height of source image as stored
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param orientation EXIF orientation of the source, see {@link Orientation}
+     * @param rect Receives the optimal destination rectangle
+     */
+    public static void calculateDstRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                        ScalingLogic scalingLogic, int orientation, int[] rect) {
+        calculateDstRect(Orientation.orientedWidth(srcWidth, srcHeight, orientation),
+                Orientation.orientedHeight(srcWidth, srcHeight, orientation), dstWidth, dstHeight,
+                scalingLogic, rect);
+    }
+
+    /**
+     * @return source rectangle, see {@link #calculateSrcRect(int, int, int, int, ScalingLogic, int, int[])}
+     */
+    public static IntRect calculateSrcRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                           ScalingLogic scalingLogic, int orientation) {
+        int[] rect = new int[4];
+        calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic, orientation, rect);
+        return IntRect.of(rect);
+    }
+
+    /**
+     * @return destination rectangle, see {@link #calculateDstRect(int, int, int, int, ScalingLogic, int, int[])}
+     */
+    public static IntRect calculateDstRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                           ScalingLogic scalingLogic, int orientation) {
+        int[] rect = new int[4];
+        calculateDstRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic, orientation, rect);
+        return IntRect.of(rect);
+    }
+
+    private static void set(int[] rect, int left, int top, int right, int bottom) {
+        rect[0] = left;
+        rect[1] = top;
+        rect[2] = right;
+        rect[3] = bottom;
+    }
+}
@@ -0,0 +1,19 @@
+package com.appstronautstudios.imagemanager.resample;
+
+/**
+ * Resampling algorithm used when scaling images.
+ *
+ * BILINEAR: Fastest. Samples at most 2x2 source pixels per output pixel so reductions beyond 2x
+ * alias.
+ *
+ * PROGRESSIVE: Halves the image with a 2x2 box filter until it is within 2x of the destination,
+ * then finishes bilinear. Close to AREA_AVERAGE quality at a fraction of the cost.
+ *
+ * AREA_AVERAGE: Each output pixel is the coverage weighted average of the source pixels under it.
+ * No aliasing, slightly soft.
+ *
+ * LANCZOS3: Windowed sinc over 3 lobes. Sharpest result, most expensive.
+ */
+public enum ResampleMode {
+    BILINEAR, PROGRESSIVE, AREA_AVERAGE, LANCZOS3
+}
@@ -0,0 +1,429 @@
+package com.appstronautstudios.imagemanager.resample;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scales ARGB pixels with separable filter kernels. Pixels are filtered premultiplied so
+ * transparent areas don't bleed colour. Kernel weights are computed once per axis in fixed point
+ * and nothing is allocated per pixel. The destination is produced in stripes of rows, each reading
+ * only the source rows under it plus the kernel overlap, so the source never has to be held in
+ * memory as a whole. Stripes can be spread across the threads of a caller supplied executor.
+ */
+public final class Resampler {
+
+    private static final int WEIGHT_BITS = 14;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+    private static final int WEIGHT_ROUND = 1 << (WEIGHT_BITS - 1);
+    private static final int STRIPE_ROWS = 32;
+    // source rows a stripe covers before kernel overlap, bounds stripe memory on large reductions
+    private static final int STRIPE_SOURCE_ROWS = 256;
+    private static final int MIN_PARALLEL_PIXELS = 64 * 1024;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private Resampler() {
+    }
+
+    /**
+     * Scale a block of non-premultiplied ARGB pixels on the calling thread
+     *
+     * @param src       source pixels
+     * @param srcOffset index of the first source pixel
+     * @param srcStride source pixels per row
+     * @param srcWidth  source width
+     * @param srcHeight source height
+     * @param dst       destination pixels, packed rows of dstWidth
+     * @param dstWidth  destination width
+     * @param dstHeight destination height
+     * @param mode      resampling algorithm
+     */
+    public static void resample(int[] src, int srcOffset, int srcStride, int srcWidth, int srcHeight,
+                                int[] dst, int dstWidth, int dstHeight, ResampleMode mode) {
+        resample(src, srcOffset, srcStride, srcWidth, srcHeight, dst, dstWidth, dstHeight, mode, null);
+    }
+
+    /**
+     * Scale a block of non-premultiplied ARGB pixels
+     *
+     * @param executor runs helper stripes alongside the calling thread, null to stay on the
+     *                 calling thread. Rejected helpers are skipped, the caller finishes their work
+     * @see #resample(int[], int, int, int, int, int[], int, int, ResampleMode)
+     */
+    public static void resample(int[] src, int srcOffset, int srcStride, int srcWidth, int srcHeight,
+                                int[] dst, int dstWidth, int dstHeight, ResampleMode mode, Executor executor) {
+        resample(new ArraySource(src, srcOffset, srcStride, srcWidth), srcWidth, srcHeight,
+                dst, dstWidth, dstHeight, mode, executor);
+    }
+
+    /**
+     * Scale an image whose rows are read on demand
+     *
+     * @param source    source rows
+     * @param srcWidth  source width
+     * @param srcHeight source height
+     * @param dst       destination pixels, packed rows of dstWidth
+     * @param dstWidth  destination width
+     * @param dstHeight destination height
+     * @param mode      resampling algorithm
+     * @param executor  runs helper stripes alongside the calling thread, null to stay on the
+     *                  calling thread
+     */
+    public static void resample(RowSource source, int srcWidth, int srcHeight,
+                                int[] dst, int dstWidth, int dstHeight, ResampleMode mode, Executor executor) {
+        if (srcWidth <= 0 || srcHeight <= 0 || dstWidth <= 0 || dstHeight <= 0) {
+            throw new IllegalArgumentException("Sizes must be positive");
+        }
+        if (dst.length < dstWidth * dstHeight) throw new IllegalArgumentException("Destination too small");
+        if (mode == ResampleMode.PROGRESSIVE) {
+            // halve with a box filter while at least 2x larger than the destination, one source row
+            // pair at a time as the stripes ask for them
+            while (srcWidth >= dstWidth * 2 && srcHeight >= dstHeight * 2) {
+                source = new HalvingSource(source, srcWidth);
+                srcWidth /= 2;
+                srcHeight /= 2;
+            }
+            mode = ResampleMode.BILINEAR;
+        }
+        Kernel horizontal = new Kernel(srcWidth, dstWidth, mode);
+        Kernel vertical = new Kernel(srcHeight, dstHeight, mode);
+        int stripeRows = Math.max(1, Math.min(STRIPE_ROWS, STRIPE_SOURCE_ROWS * dstHeight / srcHeight));
+        run(new StripePass(source, srcWidth, horizontal, vertical, dst, dstWidth), dstHeight, stripeRows,
+                (long) srcWidth * srcHeight, executor);
+    }
+
+    /**
+     * run a pass in stripes of destination rows. Stripes are claimed from a shared counter by the
+     * caller and by helpers, so the caller never waits on a stripe that hasn't started.
+     */
+    private static void run(final StripePass pass, final int rows, final int stripeRows, long work,
+                            Executor executor) {
+        final int stripes = (rows + stripeRows - 1) / stripeRows;
+        if (executor == null || THREADS < 2 || work < MIN_PARALLEL_PIXELS || stripes < 2) {
+            for (int from = 0; from < rows; from += stripeRows) {
+                pass.rows(from, Math.min(rows, from + stripeRows));
+            }
+            return;
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(stripes);
+        final RuntimeException[] failure = new RuntimeException[1];
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int stripe;
+                while ((stripe = next.getAndIncrement()) < stripes) {
+                    try {
+                        int from = stripe * stripeRows;
+                        pass.rows(from, Math.min(rows, from + stripeRows));
+                    } catch (RuntimeException e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        int helpers = Math.min(THREADS, stripes) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                break; // busy or shut down, the caller picks up the stripes
+            }
+        }
+        worker.run();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        synchronized (failure) {
+            if (failure[0] != null) throw failure[0];
+        }
+    }
+
+    /**
+     * Produces destination rows: reads the source rows a stripe needs, filters them horizontally
+     * into premultiplied rows of destination width, then vertically into the destination
+     */
+    private static class StripePass {
+        private final RowSource source;
+        private final int srcWidth;
+        private final Kernel horizontal;
+        private final Kernel vertical;
+        private final int[] dst;
+        private final int dstWidth;
+
+        StripePass(RowSource source, int srcWidth, Kernel horizontal, Kernel vertical, int[] dst, int dstWidth) {
+            this.source = source;
+            this.srcWidth = srcWidth;
+            this.horizontal = horizontal;
+            this.vertical = vertical;
+            this.dst = dst;
+            this.dstWidth = dstWidth;
+        }
+
+        void rows(int from, int to) {
+            // source rows under the stripe, including the kernel overlap with its neighbours
+            int firstRow = vertical.starts[from];
+            int lastRow = firstRow;
+            for (int y = from; y < to; y++) {
+                lastRow = Math.max(lastRow, vertical.starts[y] + vertical.counts[y]);
+            }
+            int rowCount = lastRow - firstRow;
+            int[] src = new int[srcWidth * rowCount];
+            source.readRows(firstRow, rowCount, src, 0);
+            int[] temp = new int[dstWidth * rowCount];
+            filterRows(src, rowCount, temp);
+            filterColumns(temp, firstRow, from, to);
+        }
+
+        private void filterRows(int[] src, int rowCount, int[] temp) {
+            final int[] row = new int[srcWidth];
+            final int[] starts = horizontal.starts;
+            final int[] counts = horizontal.counts;
+            final int[] weights = horizontal.weights;
+            final int stride = horizontal.maxCount;
+            for (int y = 0; y < rowCount; y++) {
+                int in = y * srcWidth;
+                for (int x = 0; x < srcWidth; x++) {
+                    row[x] = premultiply(src[in + x]);
+                }
+                int out = y * dstWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    int a = WEIGHT_ROUND, r = WEIGHT_ROUND, g = WEIGHT_ROUND, b = WEIGHT_ROUND;
+                    int start = starts[x];
+                    int w = x * stride;
+                    for (int i = 0, n = counts[x]; i < n; i++, w++) {
+                        int pixel = row[start + i];
+                        int weight = weights[w];
+                        a += (pixel >>> 24) * weight;
+                        r += ((pixel >> 16) & 0xFF) * weight;
+                        g += ((pixel >> 8) & 0xFF) * weight;
+                        b += (pixel & 0xFF) * weight;
+                    }
+                    temp[out + x] = pack(a >> WEIGHT_BITS, r >> WEIGHT_BITS, g >> WEIGHT_BITS, b >> WEIGHT_BITS);
+                }
+            }
+        }
+
+        private void filterColumns(int[] temp, int firstRow, int from, int to) {
+            final int[] starts = vertical.starts;
+            final int[] counts = vertical.counts;
+            final int[] weights = vertical.weights;
+            final int stride = vertical.maxCount;
+            for (int y = from; y < to; y++) {
+                int start = (starts[y] - firstRow) * dstWidth;
+                int n = counts[y];
+                int w0 = y * stride;
+                int out = y * dstWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    int a = WEIGHT_ROUND, r = WEIGHT_ROUND, g = WEIGHT_ROUND, b = WEIGHT_ROUND;
+                    int in = start + x;
+                    for (int i = 0, w = w0; i < n; i++, w++, in += dstWidth) {
+                        int pixel = temp[in];
+                        int weight = weights[w];
+                        a += (pixel >>> 24) * weight;
+                        r += ((pixel >> 16) & 0xFF) * weight;
+                        g += ((pixel >> 8) & 0xFF) * weight;
+                        b += (pixel & 0xFF) * weight;
+                    }
+                    dst[out + x] = unpremultiply(a >> WEIGHT_BITS, r >> WEIGHT_BITS, g >> WEIGHT_BITS, b >> WEIGHT_BITS);
+                }
+            }
+        }
+    }
+
+    /**
+     * rows of a pixel array
+     */
+    private static class ArraySource implements RowSource {
+        private final int[] src;
+        private final int srcOffset;
+        private final int srcStride;
+        private final int srcWidth;
+
+        ArraySource(int[] src, int srcOffset, int srcStride, int srcWidth) {
+            this.src = src;
+            this.srcOffset = srcOffset;
+            this.srcStride = srcStride;
+            this.srcWidth = srcWidth;
+        }
+
+        @Override
+        public void readRows(int y, int count, int[] dst, int offset) {
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(src, srcOffset + (y + i) * srcStride, dst, offset + i * srcWidth, srcWidth);
+            }
+        }
+    }
+
+    /**
+     * another source at half size, 2x2 box filtered premultiplied. An odd last row or column is
+     * dropped.
+     */
+    private static class HalvingSource implements RowSource {
+        private final RowSource source;
+        private final int srcWidth;
+
+        HalvingSource(RowSource source, int srcWidth) {
+            this.source = source;
+            this.srcWidth = srcWidth;
+        }
+
+        @Override
+        public void readRows(int y, int count, int[] dst, int offset) {
+            int[] src = new int[srcWidth * count * 2];
+            source.readRows(y * 2, count * 2, src, 0);
+            int dstWidth = srcWidth / 2;
+            for (int row = 0; row < count; row++) {
+                int top = row * 2 * srcWidth;
+                int bottom = top + srcWidth;
+                int out = offset + row * dstWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    int p0 = premultiply(src[top + x * 2]);
+                    int p1 = premultiply(src[top + x * 2 + 1]);
+                    int p2 = premultiply(src[bottom + x * 2]);
+                    int p3 = premultiply(src[bottom + x * 2 + 1]);
+                    int a = ((p0 >>> 24) + (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + 2) >> 2;
+                    int r = (((p0 >> 16) & 0xFF) + ((p1 >> 16) & 0xFF) + ((p2 >> 16) & 0xFF) + ((p3 >> 16) & 0xFF) + 2) >> 2;
+                    int g = (((p0 >> 8) & 0xFF) + ((p1 >> 8) & 0xFF) + ((p2 >> 8) & 0xFF) + ((p3 >> 8) & 0xFF) + 2) >> 2;
+                    int b = ((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + 2) >> 2;
+                    dst[out + x] = unpremultiply(a, r, g, b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixed point filter weights for one axis. Output index i reads counts[i] source pixels
+     * starting at starts[i], weights for it are at i * maxCount.
+     */
+    private static class Kernel {
+        final int[] starts;
+        final int[] counts;
+        final int[] weights;
+        final int maxCount;
+
+        Kernel(int srcLength, int dstLength, ResampleMode mode) {
+            final double scale = (double) srcLength / dstLength;
+            final double stretch = Math.max(scale, 1); // widen the filter when reducing
+            final double radius;
+            switch (mode) {
+                case LANCZOS3:
+                    radius = 3 * stretch;
+                    break;
+                case AREA_AVERAGE:
+                    radius = scale / 2 + 1;
+                    break;
+                default:
+                    radius = 1;
+                    break;
+            }
+            maxCount = Math.min(srcLength, (int) Math.ceil(radius * 2) + 2);
+            starts = new int[dstLength];
+            counts = new int[dstLength];
+            weights = new int[dstLength * maxCount];
+            final double[] raw = new double[maxCount];
+            for (int i = 0; i < dstLength; i++) {
+                final double center = (i + 0.5) * scale;
+                int start = Math.max(0, (int) Math.floor(center - radius));
+                int end = Math.min(srcLength, (int) Math.ceil(center + radius));
+                int count = Math.min(end - start, maxCount);
+                double total = 0;
+                for (int j = 0; j < count; j++) {
+                    double value;
+                    int pixel = start + j;
+                    if (mode == ResampleMode.AREA_AVERAGE) {
+                        // overlap of the source pixel with the destination pixel's footprint
+                        double left = Math.max(pixel, i * scale);
+                        double right = Math.min(pixel + 1, (i + 1) * scale);
+                        value = Math.max(0, right - left);
+                    } else if (mode == ResampleMode.LANCZOS3) {
+                        value = lanczos3((pixel + 0.5 - center) / stretch);
+                    } else {
+                        value = Math.max(0, 1 - Math.abs(pixel + 0.5 - center));
+                    }
+                    raw[j] = value;
+                    total += value;
+                }
+                // trim zero weights at the edges to keep the inner loops short
+                int first = 0;
+                while (first < count - 1 && raw[first] == 0) first++;
+                int last = count - 1;
+                while (last > first && raw[last] == 0) last--;
+                if (total == 0) {
+                    // only possible for degenerate sizes, fall back to nearest
+                    first = last = Math.min(count - 1, Math.max(0, (int) center - start));
+                    raw[first] = total = 1;
+                }
+                starts[i] = start + first;
+                counts[i] = last - first + 1;
+                // normalise in fixed point, putting the rounding error on the largest weight
+                int sum = 0;
+                int largest = 0;
+                int base = i * maxCount;
+                for (int j = first; j <= last; j++) {
+                    int weight = (int) Math.round(raw[j] / total * WEIGHT_ONE);
+                    weights[base + j - first] = weight;
+                    sum += weight;
+                    if (Math.abs(weight) > Math.abs(weights[base + largest])) largest = j - first;
+                }
+                weights[base + largest] += WEIGHT_ONE - sum;
+            }
+        }
+
+        private static double lanczos3(double x) {
+            if (x == 0) return 1;
+            if (x <= -3 || x >= 3) return 0;
+            double px = Math.PI * x;
+            return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+        }
+    }
+
+    private static int premultiply(int pixel) {
+        int a = pixel >>> 24;
+        if (a == 0xFF) return pixel;
+        if (a == 0) return 0;
+        int r = (((pixel >> 16) & 0xFF) * a + 127) / 255;
+        int g = (((pixel >> 8) & 0xFF) * a + 127) / 255;
+        int b = ((pixel & 0xFF) * a + 127) / 255;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * clamp premultiplied channels, including kernel overshoot, and convert back
+     */
+    private static int unpremultiply(int a, int r, int g, int b) {
+        a = clamp(a);
+        if (a == 0) return 0;
+        r = Math.min(clamp(r), a);
+        g = Math.min(clamp(g), a);
+        b = Math.min(clamp(b), a);
+        if (a != 0xFF) {
+            int half = a >> 1;
+            r = (r * 255 + half) / a;
+            g = (g * 255 + half) / a;
+            b = (b * 255 + half) / a;
+        }
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int pack(int a, int r, int g, int b) {
+        a = clamp(a);
+        return (a << 24) | (Math.min(clamp(r), a) << 16) | (Math.min(clamp(g), a) << 8) | Math.min(clamp(b), a);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 0xFF ? 0xFF : value);
+    }
+}
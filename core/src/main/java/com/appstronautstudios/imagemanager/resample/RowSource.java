@@ -0,0 +1,17 @@
+package com.appstronautstudios.imagemanager.resample;
+
+/**
+ * Supplies source rows to {@link Resampler} on demand, so a large image never has to be copied
+ * into one array. Called from several threads at once when the resampler is given an executor,
+ * each call for a different range of rows.
+ */
+public interface RowSource {
+
+    /**
+     * @param y      first row to read
+     * @param count  number of rows
+     * @param dst    receives count packed rows of non-premultiplied ARGB pixels
+     * @param offset index in dst of the first pixel
+     */
+    void readRows(int y, int count, int[] dst, int offset);
+}
@@ -0,0 +1,125 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking I/O work for bulk operations such as scanning or scrubbing thousands of files.
+ * On Java 21 and later every task gets its own virtual thread, so throughput follows the allowed
+ * I/O concurrency rather than a thread count. Elsewhere, including Android, tasks run on a bounded
+ * pool of platform threads. Work is submitted through a {@link TaskScope}, which bounds how many
+ * tasks are in flight and does not let them outlive it.
+ * <p>
+ * Set the system property {@code imagemanager.virtualThreads} to {@code false} to always use
+ * platform threads.
+ */
+public final class IoExecutor {
+
+    private static final String VIRTUAL_THREADS_PROPERTY = "imagemanager.virtualThreads";
+    private static final int MAX_PLATFORM_THREADS = 64;
+    private static final int QUEUED_PER_THREAD = 2;
+
+    private final ExecutorService executor;
+    private final int concurrency;
+    private final boolean virtual;
+
+    private IoExecutor(ExecutorService executor, int concurrency, boolean virtual) {
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.virtual = virtual;
+    }
+
+    /**
+     * @param concurrency number of tasks allowed to run at once. With virtual threads this is the
+     *                    I/O concurrency, on platform threads it is capped at {@value #MAX_PLATFORM_THREADS} threads
+     * @param name        prefix used for thread names
+     * @return executor using virtual threads when the runtime has them, otherwise platform threads
+     */
+    public static IoExecutor create(int concurrency, String name) {
+        if (concurrency < 1) throw new IllegalArgumentException("concurrency must be positive");
+        if (!"false".equals(System.getProperty(VIRTUAL_THREADS_PROPERTY))) {
+            ExecutorService executor = newVirtualThreadExecutor(name);
+            if (executor != null) return new IoExecutor(executor, concurrency, true);
+        }
+        return platform(Math.min(concurrency, MAX_PLATFORM_THREADS), name);
+    }
+
+    /**
+     * @param threads number of platform threads
+     * @param name    prefix used for thread names
+     * @return executor using a fixed pool of daemon platform threads
+     */
+    public static IoExecutor platform(int threads, final String name) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive");
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // keep a few tasks queued per thread so workers never wait on the submitter
+        return new IoExecutor(executor, threads * QUEUED_PER_THREAD, false);
+    }
+
+    /**
+     * Thread.ofVirtual is Java 21 API and the library compiles against 17, so look it up reflectively
+     *
+     * @return thread per task executor of named virtual threads, null if the runtime has none
+     */
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return maximum number of tasks in flight per scope
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Open a scope for fanning tasks out and joining them. Scopes must be closed by the thread
+     * that opened them, which cancels and waits for anything still running.
+     *
+     * @param shutdownOnFailure true to cancel the remaining tasks as soon as one fails
+     * @return new scope
+     */
+    public <T> TaskScope<T> openScope(boolean shutdownOnFailure) {
+        if (executor.isShutdown()) throw new IllegalStateException("Executor shut down");
+        return new TaskScope<>(executor, concurrency, shutdownOnFailure);
+    }
+
+    /**
+     * stop accepting scopes. Tasks already forked keep running.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "IoExecutor{" + (virtual ? "virtual" : "platform") + ", concurrency=" + concurrency + "}";
+    }
+}
@@ -0,0 +1,186 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a PNG row by row, so images far larger than any single buffer can be encoded with
+ * memory bounded by the rows passed in at once. Pixels are ARGB ints as used by
+ * {@code Bitmap.getPixels}.
+ */
+public class PngStreamWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] deflated = new byte[CHUNK_SIZE];
+    private final byte[] filterType = new byte[1];
+    private byte[] current;
+    private byte[] previous;
+    private final byte[] sub;
+    private final byte[] up;
+    private int rowsWritten;
+
+    /**
+     * writes the PNG header
+     *
+     * @param out    destination, not closed
+     * @param width  image width
+     * @param height total number of rows that will be written
+     * @param alpha  true to keep the alpha channel, false for an opaque RGB image
+     * @throws IOException if writing fails
+     */
+    public PngStreamWriter(OutputStream out, int width, int height, boolean alpha) throws IOException {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("width and height must be positive");
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.channels = alpha ? 4 : 3;
+        int rowBytes = width * channels;
+        current = new byte[rowBytes];
+        previous = new byte[rowBytes];
+        sub = new byte[rowBytes];
+        up = new byte[rowBytes];
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bits per channel
+        header[9] = (byte) (alpha ? 6 : 2); // RGBA or RGB
+        writeChunk("IHDR", header, header.length);
+        // created last so a failed header write leaves no native state behind
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param pixels ARGB pixels
+     * @param offset index of the first pixel
+     * @param stride pixels per row in the array
+     * @param rows   number of rows to write
+     * @throws IOException if writing fails
+     */
+    public void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        if (rowsWritten + rows > height) throw new IllegalStateException("More rows than the image height");
+        for (int row = 0; row < rows; row++) {
+            int in = offset + row * stride;
+            int index = 0;
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[in + x];
+                current[index++] = (byte) (pixel >> 16);
+                current[index++] = (byte) (pixel >> 8);
+                current[index++] = (byte) pixel;
+                if (channels == 4) current[index++] = (byte) (pixel >>> 24);
+            }
+            writeFiltered();
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+            rowsWritten++;
+        }
+    }
+
+    /**
+     * writes the remaining compressed data and the end of the image
+     *
+     * @throws IOException if writing fails or fewer rows than the height were written
+     */
+    public void finish() throws IOException {
+        if (rowsWritten != height) throw new IOException("Expected " + height + " rows but got " + rowsWritten);
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(deflated);
+                if (length > 0) writeChunk("IDAT", deflated, length);
+            }
+            writeChunk("IEND", deflated, 0);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * free the compressor's native memory without finishing the image. Call it when writing is
+     * abandoned part way, {@link #finish()} already does it. Safe to call more than once.
+     */
+    public void release() {
+        deflater.end();
+    }
+
+    /**
+     * pick the filter with the smallest sum of absolute residuals for this row, the usual PNG
+     * heuristic. Flat screenshot areas become runs of zeros.
+     */
+    private void writeFiltered() throws IOException {
+        long subCost = 0;
+        long upCost = 0;
+        long noneCost = 0;
+        final boolean first = rowsWritten == 0;
+        for (int i = 0; i < current.length; i++) {
+            int value = current[i] & 0xFF;
+            int left = i >= channels ? current[i - channels] & 0xFF : 0;
+            int above = first ? 0 : previous[i] & 0xFF;
+            sub[i] = (byte) (value - left);
+            up[i] = (byte) (value - above);
+            subCost += Math.abs(sub[i]);
+            upCost += Math.abs(up[i]);
+            noneCost += Math.abs(current[i]);
+        }
+        if (noneCost <= subCost && noneCost <= upCost) {
+            deflate(FILTER_NONE, current);
+        } else if (subCost <= upCost) {
+            deflate(FILTER_SUB, sub);
+        } else {
+            deflate(FILTER_UP, up);
+        }
+    }
+
+    private void deflate(int filter, byte[] row) throws IOException {
+        filterType[0] = (byte) filter;
+        deflater.setInput(filterType);
+        drain();
+        deflater.setInput(row);
+        drain();
+    }
+
+    private void drain() throws IOException {
+        while (!deflater.needsInput()) {
+            int length = deflater.deflate(deflated);
+            if (length > 0) writeChunk("IDAT", deflated, length);
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) type.charAt(i);
+        }
+        crc.reset();
+        crc.update(header, 4, 4);
+        crc.update(data, 0, length);
+        out.write(header);
+        out.write(data, 0, length);
+        byte[] checksum = new byte[4];
+        putInt(checksum, 0, (int) crc.getValue());
+        out.write(checksum);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,159 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Structured fan-out and fan-in over an {@link IoExecutor}, in the style of Java 21's
+ * StructuredTaskScope (still a preview API there, so it is not used directly). Tasks forked in a
+ * scope never outlive it: {@link #close()} cancels whatever is still running and waits for it.
+ * {@link #fork(Callable)} blocks while the executor's concurrency limit is reached, so a producer
+ * walking thousands of files never gets far ahead of the workers.
+ * <pre>
+ * TaskScope&lt;ExifData&gt; scope = executor.openScope(false);
+ * try {
+ *     for (File file : files) scope.fork(readTask(file));
+ *     scope.join();
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ */
+public final class TaskScope<T> {
+
+    private final Executor executor;
+    private final int limit;
+    private final boolean shutdownOnFailure;
+    private final Thread owner;
+    private final Semaphore permits;
+    private final Set<Future<T>> running = Collections.newSetFromMap(new ConcurrentHashMap<Future<T>, Boolean>());
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean shutdown;
+    private boolean closed;
+
+    TaskScope(Executor executor, int limit, boolean shutdownOnFailure) {
+        this.executor = executor;
+        this.limit = limit;
+        this.shutdownOnFailure = shutdownOnFailure;
+        this.owner = Thread.currentThread();
+        this.permits = new Semaphore(limit);
+    }
+
+    /**
+     * start a task, waiting for a free slot if the concurrency limit is reached. After a shutdown
+     * the task is not run and the returned future is already cancelled.
+     *
+     * @param task task to run
+     * @return handle to the task's result
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+    public Future<T> fork(Callable<? extends T> task) throws InterruptedException {
+        checkOwner();
+        if (closed) throw new IllegalStateException("Scope closed");
+        final FutureTask<T> future = new FutureTask<T>(adapt(task)) {
+            @Override
+            protected void setException(Throwable t) {
+                super.setException(t);
+                if (isCancelled()) return; // interrupted by a cancel, not a failure
+                failure.compareAndSet(null, t);
+                if (shutdownOnFailure) shutdown();
+            }
+        };
+        if (shutdown) {
+            future.cancel(false);
+            return future;
+        }
+        permits.acquire();
+        running.add(future);
+        if (shutdown) future.cancel(false); // raced with a shutdown, still run below to release the slot
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.run();
+                    } finally {
+                        running.remove(future);
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            running.remove(future);
+            permits.release();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * wait for every forked task to finish or be cancelled
+     *
+     * @throws InterruptedException if interrupted while waiting, tasks keep running
+     */
+    public void join() throws InterruptedException {
+        checkOwner();
+        // every running task holds a slot until it is done
+        permits.acquire(limit);
+        permits.release(limit);
+    }
+
+    /**
+     * @throws ExecutionException with the first failure of any task, if one failed
+     */
+    public void throwIfFailed() throws ExecutionException {
+        Throwable t = failure.get();
+        if (t != null) throw new ExecutionException(t);
+    }
+
+    /**
+     * cancel running tasks and stop new ones from starting. May be called from any thread.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Future<T> future : running) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * @return true after {@link #shutdown()}, or after a failure in a shutdown on failure scope
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * shut the scope down and wait for every task to stop. Running tasks are interrupted; blocking
+     * file reads finish their current call first.
+     */
+    public void close() {
+        checkOwner();
+        if (closed) return;
+        closed = true;
+        shutdown();
+        permits.acquireUninterruptibly(limit);
+        permits.release(limit);
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) throw new IllegalStateException("Scope used outside its owner thread");
+    }
+
+    private static <T> Callable<T> adapt(final Callable<? extends T> task) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return task.call();
+            }
+        };
+    }
+}
@@ -0,0 +1,267 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Builds JPEG test images with a known EXIF segment. The TIFF structure is laid out by hand,
+ * independently of {@link ExifWriter}, so reader and writer are checked against each other.
+ */
+final class ExifFixtures {
+
+    static final String MAKE = "Canon";
+    static final String MODEL = "EOS 5D Mark IV";
+    static final String SOFTWARE = "Firmware Version 1.0.4";
+    static final String DATE_TIME = "2024:05:17 10:30:00";
+    static final String DATE_TIME_ORIGINAL = "2024:05:17 10:29:58";
+    static final int ORIENTATION = 6;
+    static final int ISO = 200;
+    static final double LATITUDE = 48 + 51 / 60.0 + 24 / 3600.0;
+    static final double LONGITUDE = -(2 + 21 / 60.0 + 3 / 3600.0);
+    static final int WIDTH = 24;
+    static final int HEIGHT = 16;
+
+    /**
+     * offset of the TIFF header in {@link #jpeg(byte[]...)} output when the EXIF segment comes first
+     */
+    static final int TIFF_START = 2 + 4 + ExifReader.EXIF_HEADER_LENGTH;
+
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_SHORT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_RATIONAL = 5;
+
+    private ExifFixtures() {
+    }
+
+    /**
+     * @return TIFF structure with IFD0, Exif and GPS directories
+     */
+    static byte[] tiff(ByteOrder order) {
+        return tiff(order, -1, -1);
+    }
+
+    /**
+     * @param exifPointer value of the Exif IFD pointer, -1 for the real offset
+     * @param gpsPointer  value of the GPS IFD pointer, -1 for the real offset
+     */
+    static byte[] tiff(ByteOrder order, int exifPointer, int gpsPointer) {
+        List<Field> primary = new ArrayList<>();
+        primary.add(Field.ascii(0x010F, MAKE));
+        primary.add(Field.ascii(0x0110, MODEL));
+        primary.add(Field.numbers(0x0112, TYPE_SHORT, ORIENTATION));
+        primary.add(Field.ascii(0x0131, SOFTWARE));
+        primary.add(Field.ascii(0x0132, DATE_TIME));
+        Field exifField = Field.numbers(ExifTags.POINTER_EXIF, TYPE_LONG, 0);
+        primary.add(exifField);
+        Field gpsField = Field.numbers(ExifTags.POINTER_GPS, TYPE_LONG, 0);
+        primary.add(gpsField);
+
+        List<Field> exif = new ArrayList<>();
+        exif.add(Field.numbers(0x829A, TYPE_RATIONAL, 1, 250));
+        exif.add(Field.numbers(0x8827, TYPE_SHORT, ISO));
+        exif.add(Field.ascii(0x9003, DATE_TIME_ORIGINAL));
+
+        List<Field> gps = new ArrayList<>();
+        gps.add(Field.ascii(0x0001, "N"));
+        gps.add(Field.numbers(0x0002, TYPE_RATIONAL, 48, 1, 51, 1, 2400, 100));
+        gps.add(Field.ascii(0x0003, "W"));
+        gps.add(Field.numbers(0x0004, TYPE_RATIONAL, 2, 1, 21, 1, 300, 100));
+
+        int exifOffset = 8 + directorySize(primary);
+        int gpsOffset = exifOffset + directorySize(exif);
+        int dataOffset = gpsOffset + directorySize(gps);
+        exifField.values[0] = exifPointer == -1 ? exifOffset : exifPointer;
+        gpsField.values[0] = gpsPointer == -1 ? gpsOffset : gpsPointer;
+
+        int dataSize = dataSize(primary) + dataSize(exif) + dataSize(gps);
+        ByteBuffer tiff = ByteBuffer.allocate(dataOffset + dataSize).order(order);
+        tiff.put(order == ByteOrder.BIG_ENDIAN ? (byte) 'M' : (byte) 'I');
+        tiff.put(tiff.get(0));
+        tiff.putShort((short) 42);
+        tiff.putInt(8);
+        dataOffset = writeDirectory(tiff, primary, dataOffset);
+        dataOffset = writeDirectory(tiff, exif, dataOffset);
+        writeDirectory(tiff, gps, dataOffset);
+        return tiff.array();
+    }
+
+    /**
+     * @return complete APP1 segment, marker and length included
+     */
+    static byte[] exifSegment(byte[] tiff) {
+        return segment(0xE1, concat("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1), tiff));
+    }
+
+    /**
+     * @return APP1 XMP segment
+     */
+    static byte[] xmpSegment() {
+        return segment(0xE1, ("http://ns.adobe.com/xap/1.0/\0<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">"
+                + "<exif:GPSLatitude>48,51.4N</exif:GPSLatitude></x:xmpmeta>").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * @param segments segments inserted after the start of image marker, ahead of the encoder's
+     *                 own JFIF header
+     * @return a small gradient JPEG encoded by ImageIO
+     */
+    static byte[] jpeg(byte[]... segments) throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, (x * 255 / WIDTH) << 16 | (y * 255 / HEIGHT) << 8 | 0x40);
+            }
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "jpg", encoded)) throw new IOException("No JPEG writer");
+        byte[] plain = encoded.toByteArray();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(plain, 0, 2);
+        for (byte[] segment : segments) {
+            out.write(segment);
+        }
+        out.write(plain, 2, plain.length - 2);
+        return out.toByteArray();
+    }
+
+    static File write(File file, byte[] data) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    static boolean contains(byte[] data, byte[] part) {
+        outer:
+        for (int i = 0; i + part.length <= data.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (data[i + j] != part[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        byte[] segment = new byte[4 + payload.length];
+        segment[0] = (byte) 0xFF;
+        segment[1] = (byte) marker;
+        segment[2] = (byte) ((payload.length + 2) >> 8);
+        segment[3] = (byte) (payload.length + 2);
+        System.arraycopy(payload, 0, segment, 4, payload.length);
+        return segment;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static int directorySize(List<Field> fields) {
+        return 2 + fields.size() * 12 + 4;
+    }
+
+    private static int dataSize(List<Field> fields) {
+        int size = 0;
+        for (Field field : fields) {
+            if (field.size() > 4) size += field.size() + (field.size() & 1);
+        }
+        return size;
+    }
+
+    /**
+     * write a directory at the buffer position and its out of line values at dataOffset
+     *
+     * @return offset following the values
+     */
+    private static int writeDirectory(ByteBuffer tiff, List<Field> fields, int dataOffset) {
+        tiff.putShort((short) fields.size());
+        for (Field field : fields) {
+            tiff.putShort((short) field.tag);
+            tiff.putShort((short) field.type);
+            tiff.putInt(field.count());
+            int valueOffset = tiff.position();
+            tiff.putInt(0);
+            if (field.size() > 4) {
+                tiff.putInt(valueOffset, dataOffset);
+                valueOffset = dataOffset;
+                dataOffset += field.size() + (field.size() & 1);
+            }
+            field.writeValue(tiff, valueOffset);
+        }
+        tiff.putInt(0); // no next directory
+        return dataOffset;
+    }
+
+    private static final class Field {
+        final int tag;
+        final int type;
+        final String ascii;
+        final long[] values;
+
+        private Field(int tag, int type, String ascii, long[] values) {
+            this.tag = tag;
+            this.type = type;
+            this.ascii = ascii;
+            this.values = values;
+        }
+
+        static Field ascii(int tag, String value) {
+            return new Field(tag, TYPE_ASCII, value, null);
+        }
+
+        /**
+         * @param values one value per SHORT or LONG, numerator and denominator per RATIONAL
+         */
+        static Field numbers(int tag, int type, long... values) {
+            return new Field(tag, type, null, values);
+        }
+
+        int count() {
+            if (type == TYPE_ASCII) return ascii.length() + 1;
+            return type == TYPE_RATIONAL ? values.length / 2 : values.length;
+        }
+
+        int size() {
+            if (type == TYPE_ASCII) return count();
+            return values.length * (type == TYPE_SHORT ? 2 : 4);
+        }
+
+        void writeValue(ByteBuffer tiff, int offset) {
+            if (type == TYPE_ASCII) {
+                byte[] bytes = ascii.getBytes(StandardCharsets.US_ASCII);
+                for (int i = 0; i < bytes.length; i++) {
+                    tiff.put(offset + i, bytes[i]);
+                }
+                tiff.put(offset + bytes.length, (byte) 0);
+                return;
+            }
+            for (long value : values) {
+                if (type == TYPE_SHORT) {
+                    tiff.putShort(offset, (short) value);
+                    offset += 2;
+                } else {
+                    tiff.putInt(offset, (int) value);
+                    offset += 4;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExifReaderTest {
+
+    private static final ByteOrder[] ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsKnownTagsFromFile() throws Exception {
+        for (ByteOrder order : ORDERS) {
+            File file = ExifFixtures.write(folder.newFile(),
+                    ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(order))));
+            assertFixtureTags(order, ExifReader.read(file, ExifTags.ALL));
+        }
+    }
+
+    @Test
+    public void readsKnownTagsFromStream() throws Exception {
+        for (ByteOrder order : ORDERS) {
+            byte[] jpeg = ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(order)));
+            assertFixtureTags(order, ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.ALL));
+            assertFixtureTags(order, ExifReader.read(new UnmarkableStream(jpeg), ExifTags.ALL));
+        }
+    }
+
+    @Test
+    public void findsExifAfterOtherSegments() throws Exception {
+        byte[] jpeg = ExifFixtures.jpeg(ExifFixtures.xmpSegment(),
+                ExifFixtures.exifSegment(ExifFixtures.tiff(ByteOrder.BIG_ENDIAN)));
+        assertFixtureTags(ByteOrder.BIG_ENDIAN, ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.ALL));
+    }
+
+    @Test
+    public void readsOnlyRequestedTags() throws Exception {
+        byte[] jpeg = ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(ByteOrder.BIG_ENDIAN)));
+        ExifData orientation = ExifReader.read(new ByteArrayInputStream(jpeg), Collections.singleton("Orientation"));
+        assertEquals(Collections.singleton("Orientation"), orientation.getTags());
+
+        ExifData gps = ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.GPS);
+        assertEquals(4, gps.size());
+        assertFalse(gps.has("Make"));
+        assertNotNull(gps.getLatLong());
+
+        ExifData unknown = ExifReader.read(new ByteArrayInputStream(jpeg), Collections.singleton("NoSuchTag"));
+        assertEquals(0, unknown.size());
+    }
+
+    @Test
+    public void jpegWithoutExifIsEmpty() throws Exception {
+        byte[] jpeg = ExifFixtures.jpeg();
+        assertEquals(0, ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.ALL).size());
+        assertEquals(0, ExifReader.read(ExifFixtures.write(folder.newFile(), jpeg), ExifTags.ALL).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonJpegStream() throws Exception {
+        ExifReader.read(new ByteArrayInputStream(new byte[]{(byte) 0x89, 'P', 'N', 'G'}), ExifTags.ALL);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonJpegFile() throws Exception {
+        ExifReader.read(ExifFixtures.write(folder.newFile(), new byte[]{(byte) 0x89, 'P', 'N', 'G'}), ExifTags.ALL);
+    }
+
+    @Test
+    public void leavesMarkableStreamAfterSegment() throws Exception {
+        byte[] segment = ExifFixtures.exifSegment(ExifFixtures.tiff(ByteOrder.BIG_ENDIAN));
+        byte[] jpeg = ExifFixtures.jpeg(segment);
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(jpeg), 16);
+        ExifReader.read(in, ExifTags.ALL);
+        // the encoder's JFIF header follows the inserted EXIF segment
+        assertEquals(0xFF, in.read());
+        assertEquals(0xE0, in.read());
+    }
+
+    @Test
+    public void truncatedStreamsThrowIOException() throws Exception {
+        for (ByteOrder order : ORDERS) {
+            byte[] jpeg = ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(order)));
+            for (int length = 0; length < 600; length++) {
+                byte[] truncated = Arrays.copyOf(jpeg, length);
+                readOrFail(truncated);
+                readOrFail(ExifFixtures.write(folder.newFile(), truncated));
+            }
+        }
+    }
+
+    @Test
+    public void truncatedTiffReadsWhatIsThere() throws Exception {
+        for (ByteOrder order : ORDERS) {
+            byte[] tiff = ExifFixtures.tiff(order);
+            int complete = ExifReader.read(new ByteArrayInputStream(
+                    ExifFixtures.jpeg(ExifFixtures.exifSegment(tiff))), ExifTags.ALL).size();
+            for (int length = 0; length < tiff.length; length++) {
+                byte[] jpeg = ExifFixtures.jpeg(ExifFixtures.exifSegment(Arrays.copyOf(tiff, length)));
+                try {
+                    ExifData data = ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.ALL);
+                    // an empty TIFF isn't recognised as EXIF at all
+                    assertTrue("length " + length, length >= 8 ? data.size() <= complete : data.size() == 0);
+                } catch (IOException e) {
+                    assertTrue("length " + length + ": " + e, length < 8);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void loopingAndOutOfRangeDirectoriesAreSkipped() throws Exception {
+        int[] pointers = {0, 4, 7, 8, 0xFFFF, Integer.MAX_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE};
+        for (ByteOrder order : ORDERS) {
+            for (int pointer : pointers) {
+                // a pointer back at IFD0 would loop forever without the visited check
+                byte[] tiff = ExifFixtures.tiff(order, pointer, pointer);
+                ExifData data = ExifReader.read(new ByteArrayInputStream(
+                        ExifFixtures.jpeg(ExifFixtures.exifSegment(tiff))), ExifTags.ALL);
+                assertEquals(ExifFixtures.MAKE, data.getString("Make"));
+                assertFalse("pointer " + pointer, data.has("GPSLatitude"));
+            }
+        }
+    }
+
+    @Test
+    public void corruptSegmentsThrowOnlyIOException() throws Exception {
+        Random random = new Random(7);
+        for (ByteOrder order : ORDERS) {
+            byte[] jpeg = ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(order)));
+            int tiffLength = ExifFixtures.tiff(order).length;
+            for (int i = 0; i < 5000; i++) {
+                byte[] corrupt = jpeg.clone();
+                for (int flips = 1 + random.nextInt(4); flips > 0; flips--) {
+                    corrupt[ExifFixtures.TIFF_START + random.nextInt(tiffLength)] = (byte) random.nextInt();
+                }
+                readOrFail(corrupt);
+            }
+        }
+    }
+
+    private static void readOrFail(byte[] jpeg) {
+        try {
+            ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.ALL);
+        } catch (IOException expected) {
+            // malformed input must surface as IOException, anything unchecked fails the test
+        }
+    }
+
+    private static void readOrFail(File file) {
+        try {
+            ExifReader.read(file, ExifTags.ALL);
+        } catch (IOException expected) {
+            // see above
+        }
+    }
+
+    static void assertFixtureTags(ByteOrder order, ExifData data) throws Exception {
+        assertEquals(order, data.getOrder());
+        assertEquals(ExifFixtures.MAKE, data.getString("Make"));
+        assertEquals(ExifFixtures.MODEL, data.getString("Model"));
+        assertEquals(ExifFixtures.SOFTWARE, data.getString("Software"));
+        assertEquals(ExifFixtures.ORIENTATION, data.getInt("Orientation", 0));
+        assertEquals(ExifFixtures.DATE_TIME, data.getString("DateTime"));
+        assertEquals(new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.US).parse(ExifFixtures.DATE_TIME_ORIGINAL),
+                data.getDate("DateTimeOriginal"));
+        assertEquals("1/250", data.getString("ExposureTime"));
+        assertEquals(0.004, data.getDouble("ExposureTime", 0), 1e-9);
+        assertEquals(ExifFixtures.ISO, data.getInt("ISOSpeedRatings", 0));
+        assertEquals("N", data.getString("GPSLatitudeRef"));
+        assertEquals("48/1,51/1,2400/100", data.getString("GPSLatitude"));
+        double[] latLong = data.getLatLong();
+        assertEquals(ExifFixtures.LATITUDE, latLong[0], 1e-9);
+        assertEquals(ExifFixtures.LONGITUDE, latLong[1], 1e-9);
+    }
+
+    /**
+     * stream without mark support, read through ExifReader's own buffer
+     */
+    private static final class UnmarkableStream extends ByteArrayInputStream {
+        UnmarkableStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
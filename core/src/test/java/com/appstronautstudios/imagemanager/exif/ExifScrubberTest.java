@@ -0,0 +1,188 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class ExifScrubberTest {
+
+    private static final ByteOrder[] ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+    private static final byte[] XMP_HEADER = "http://ns.adobe.com/xap/1.0/".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sensitivePolicyRemovesLocationAndDevice() throws Exception {
+        for (ByteOrder order : ORDERS) {
+            byte[] source = fixture(order);
+            byte[] scrubbed = scrub(source, ScrubPolicy.SENSITIVE);
+
+            ExifData data = ExifReader.read(new ByteArrayInputStream(scrubbed), ExifTags.ALL);
+            assertNull(data.getLatLong());
+            for (String tag : ExifTags.GPS) {
+                assertFalse(tag, data.has(tag));
+            }
+            assertFalse(data.has("Make"));
+            assertFalse(data.has("Model"));
+            assertFalse(data.has("Software"));
+            assertEquals(ExifFixtures.ORIENTATION, data.getInt("Orientation", 0));
+            assertEquals(ExifFixtures.DATE_TIME_ORIGINAL, data.getString("DateTimeOriginal"));
+            assertEquals("1/250", data.getString("ExposureTime"));
+
+            // removed values are zeroed too, not just unlinked from their directory
+            assertFalse(ExifFixtures.contains(scrubbed, ExifFixtures.MODEL.getBytes(StandardCharsets.US_ASCII)));
+            assertFalse(ExifFixtures.contains(scrubbed, XMP_HEADER));
+            assertSamePixels(source, scrubbed);
+        }
+    }
+
+    @Test
+    public void allPolicyRemovesWholeSegment() throws Exception {
+        byte[] source = fixture(ByteOrder.BIG_ENDIAN);
+        byte[] scrubbed = scrub(source, ScrubPolicy.ALL);
+        assertEquals(0, ExifReader.read(new ByteArrayInputStream(scrubbed), ExifTags.ALL).size());
+        assertFalse(ExifFixtures.contains(scrubbed, EXIF_HEADER));
+        assertFalse(ExifFixtures.contains(scrubbed, XMP_HEADER));
+        assertSamePixels(source, scrubbed);
+    }
+
+    @Test
+    public void customPolicyRemovesOnlyItsTags() throws Exception {
+        byte[] source = fixture(ByteOrder.LITTLE_ENDIAN);
+        byte[] scrubbed = scrub(source, new ScrubPolicy(Collections.singleton("Orientation"), false));
+        ExifData data = ExifReader.read(new ByteArrayInputStream(scrubbed), ExifTags.ALL);
+        assertFalse(data.has("Orientation"));
+        assertEquals(ExifFixtures.MAKE, data.getString("Make"));
+        assertNotNull(data.getLatLong());
+        assertTrue(ExifFixtures.contains(scrubbed, XMP_HEADER));
+        assertEquals(source.length, scrubbed.length);
+        assertSamePixels(source, scrubbed);
+    }
+
+    @Test
+    public void emptyDirectoriesAreUnlinked() throws Exception {
+        byte[] scrubbed = scrub(fixture(ByteOrder.BIG_ENDIAN), new ScrubPolicy(ExifTags.GPS, false));
+        ExifData data = ExifReader.read(new ByteArrayInputStream(scrubbed), ExifTags.ALL);
+        assertFalse(data.has("GPSLatitude"));
+        assertEquals(ExifFixtures.ISO, data.getInt("ISOSpeedRatings", 0));
+    }
+
+    @Test
+    public void scrubsFileInPlace() throws Exception {
+        File file = ExifFixtures.write(folder.newFile("photo.jpg"), fixture(ByteOrder.BIG_ENDIAN));
+        ExifScrubber.scrub(file, ScrubPolicy.SENSITIVE);
+        assertNull(ExifReader.read(file, ExifTags.ALL).getLatLong());
+        assertEquals(ExifFixtures.WIDTH, ImageIO.read(file).getWidth());
+        assertArrayEquals(new String[]{"photo.jpg"}, folder.getRoot().list());
+    }
+
+    @Test
+    public void failedScrubLeavesOriginal() throws Exception {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n'};
+        File file = ExifFixtures.write(folder.newFile("photo.jpg"), png);
+        try {
+            ExifScrubber.scrub(file, ScrubPolicy.SENSITIVE);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertArrayEquals(png, Files.readAllBytes(file.toPath()));
+        assertArrayEquals(new String[]{"photo.jpg"}, folder.getRoot().list());
+    }
+
+    @Test
+    public void scrubAllReportsFailuresPerFile() throws Exception {
+        File first = ExifFixtures.write(folder.newFile("first.jpg"), fixture(ByteOrder.BIG_ENDIAN));
+        File broken = ExifFixtures.write(folder.newFile("broken.jpg"), new byte[]{1, 2, 3});
+        File second = ExifFixtures.write(folder.newFile("second.jpg"), fixture(ByteOrder.LITTLE_ENDIAN));
+        Map<File, Exception> failures = ExifScrubber.scrubAll(Arrays.asList(first, broken, second), ScrubPolicy.SENSITIVE, 2);
+        assertEquals(Collections.singleton(broken), failures.keySet());
+        assertTrue(failures.get(broken) instanceof IOException);
+        assertNull(ExifReader.read(first, ExifTags.ALL).getLatLong());
+        assertNull(ExifReader.read(second, ExifTags.ALL).getLatLong());
+    }
+
+    @Test
+    public void detectsJpegFiles() throws Exception {
+        assertTrue(ExifScrubber.isJpeg(ExifFixtures.write(folder.newFile(), ExifFixtures.jpeg())));
+        assertFalse(ExifScrubber.isJpeg(ExifFixtures.write(folder.newFile(), new byte[]{(byte) 0xFF})));
+        assertFalse(ExifScrubber.isJpeg(new File(folder.getRoot(), "missing.jpg")));
+    }
+
+    @Test
+    public void loopingAndOutOfRangeDirectoriesAreSkipped() throws Exception {
+        int[] pointers = {0, 4, 7, 8, 0xFFFF, Integer.MAX_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE};
+        for (ByteOrder order : ORDERS) {
+            for (int pointer : pointers) {
+                byte[] source = ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(order, pointer, pointer)));
+                byte[] scrubbed = scrub(source, ScrubPolicy.SENSITIVE);
+                assertFalse("pointer " + pointer, ExifReader.read(new ByteArrayInputStream(scrubbed), ExifTags.ALL).has("Make"));
+            }
+        }
+    }
+
+    @Test
+    public void corruptSegmentsThrowOnlyIOException() throws Exception {
+        Random random = new Random(11);
+        for (ByteOrder order : ORDERS) {
+            byte[] jpeg = fixture(order);
+            int tiffLength = ExifFixtures.tiff(order).length;
+            for (int i = 0; i < 5000; i++) {
+                byte[] corrupt = jpeg.clone();
+                for (int flips = 1 + random.nextInt(4); flips > 0; flips--) {
+                    corrupt[ExifFixtures.TIFF_START + random.nextInt(tiffLength)] = (byte) random.nextInt();
+                }
+                scrubOrFail(corrupt);
+            }
+            for (int length = 0; length < jpeg.length; length += 7) {
+                scrubOrFail(Arrays.copyOf(jpeg, length));
+            }
+        }
+    }
+
+    private static void scrubOrFail(byte[] jpeg) {
+        try {
+            scrub(jpeg, ScrubPolicy.SENSITIVE);
+        } catch (IOException expected) {
+            // malformed input must surface as IOException, anything unchecked fails the test
+        }
+    }
+
+    private static byte[] fixture(ByteOrder order) throws IOException {
+        return ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(order)), ExifFixtures.xmpSegment());
+    }
+
+    private static byte[] scrub(byte[] jpeg, ScrubPolicy policy) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExifScrubber.scrub(new ByteArrayInputStream(jpeg), out, policy);
+        return out.toByteArray();
+    }
+
+    private static void assertSamePixels(byte[] expected, byte[] actual) throws IOException {
+        BufferedImage a = ImageIO.read(new ByteArrayInputStream(expected));
+        BufferedImage b = ImageIO.read(new ByteArrayInputStream(actual));
+        assertNotNull("scrubbed output doesn't decode", b);
+        assertEquals(a.getWidth(), b.getWidth());
+        assertEquals(a.getHeight(), b.getHeight());
+        assertArrayEquals(a.getRGB(0, 0, a.getWidth(), a.getHeight(), null, 0, a.getWidth()),
+                b.getRGB(0, 0, b.getWidth(), b.getHeight(), null, 0, b.getWidth()));
+    }
+}
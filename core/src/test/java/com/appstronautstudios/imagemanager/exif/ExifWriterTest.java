@@ -0,0 +1,121 @@
+package com.appstronautstudios.imagemanager.exif;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class ExifWriterTest {
+
+    private static final ByteOrder[] ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+
+    @Test
+    public void roundTripsBothByteOrders() throws Exception {
+        for (ByteOrder order : ORDERS) {
+            ExifData original = read(ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(order))));
+            ExifData written = read(ExifFixtures.jpeg(ExifWriter.buildSegment(original)));
+
+            // always written big endian, with values swapped where the source was little endian
+            ExifReaderTest.assertFixtureTags(ByteOrder.BIG_ENDIAN, written);
+            assertEquals(original.toMap(), written.toMap());
+            for (String tag : original.getTags()) {
+                assertEquals(tag, original.getEntry(tag).type, written.getEntry(tag).type);
+                assertEquals(tag, original.getEntry(tag).count, written.getEntry(tag).count);
+            }
+        }
+    }
+
+    @Test
+    public void segmentHasApp1Header() throws Exception {
+        ExifData data = read(ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(ByteOrder.LITTLE_ENDIAN))));
+        byte[] segment = ExifWriter.buildSegment(data);
+        assertEquals(0xFF, segment[0] & 0xFF);
+        assertEquals(ExifReader.MARKER_APP1, segment[1] & 0xFF);
+        assertEquals(segment.length - 2, (segment[2] & 0xFF) << 8 | segment[3] & 0xFF);
+        assertTrue(ExifReader.isExifSegment(segment, 4));
+        assertEquals('M', segment[4 + ExifReader.EXIF_HEADER_LENGTH]);
+    }
+
+    @Test
+    public void writesOnlyNeededDirectories() throws Exception {
+        ExifData data = read(ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(ByteOrder.BIG_ENDIAN))));
+        ExifData layout = read(ExifFixtures.jpeg(ExifWriter.buildSegment(data.filter(ExifTags.LAYOUT))));
+        assertEquals(Collections.singleton("Orientation"), layout.getTags());
+
+        ExifData gps = read(ExifFixtures.jpeg(ExifWriter.buildSegment(data.filter(ExifTags.GPS))));
+        assertEquals(data.filter(ExifTags.GPS).toMap(), gps.toMap());
+    }
+
+    @Test
+    public void noTagsWritesNoSegment() {
+        assertEquals(0, ExifWriter.buildSegment(ExifData.EMPTY).length);
+        Map<String, ExifData.Entry> unknown = new HashMap<>();
+        unknown.put("NoSuchTag", new ExifData.Entry(ExifData.TYPE_SHORT, 1, new byte[2]));
+        assertEquals(0, ExifWriter.buildSegment(new ExifData(ByteOrder.BIG_ENDIAN, unknown)).length);
+    }
+
+    @Test
+    public void dropsTagsHoldingSourceFileOffsets() throws Exception {
+        Map<String, ExifData.Entry> entries = new HashMap<>();
+        entries.put("Orientation", new ExifData.Entry(ExifData.TYPE_SHORT, 1, new byte[]{0, 6}));
+        entries.put("StripOffsets", new ExifData.Entry(ExifData.TYPE_LONG, 1, new byte[]{0, 0, 1, 0}));
+        entries.put("StripByteCounts", new ExifData.Entry(ExifData.TYPE_LONG, 1, new byte[]{0, 0, 2, 0}));
+        entries.put("JPEGInterchangeFormat", new ExifData.Entry(ExifData.TYPE_LONG, 1, new byte[]{0, 0, 3, 0}));
+        entries.put("JPEGInterchangeFormatLength", new ExifData.Entry(ExifData.TYPE_LONG, 1, new byte[]{0, 0, 4, 0}));
+        entries.put("MakerNote", new ExifData.Entry(ExifData.TYPE_UNDEFINED, 8, new byte[]{'N', 'i', 'k', 'o', 'n', 0, 0, 42}));
+        ExifData written = read(ExifFixtures.jpeg(ExifWriter.buildSegment(new ExifData(ByteOrder.BIG_ENDIAN, entries))));
+        assertEquals(Collections.singleton("Orientation"), written.getTags());
+        assertEquals(6, written.getInt("Orientation", 0));
+
+        // nothing but offsets leaves nothing to write
+        entries.remove("Orientation");
+        assertEquals(0, ExifWriter.buildSegment(new ExifData(ByteOrder.BIG_ENDIAN, entries)).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDataLargerThanOneSegment() {
+        Map<String, ExifData.Entry> entries = new HashMap<>();
+        entries.put("ImageDescription", new ExifData.Entry(ExifData.TYPE_ASCII, 70000, new byte[70000]));
+        ExifWriter.buildSegment(new ExifData(ByteOrder.BIG_ENDIAN, entries));
+    }
+
+    @Test
+    public void outputStreamInsertsSegmentAfterStartOfImage() throws Exception {
+        for (ByteOrder order : ORDERS) {
+            ExifData data = read(ExifFixtures.jpeg(ExifFixtures.exifSegment(ExifFixtures.tiff(order))));
+            byte[] plain = ExifFixtures.jpeg();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ExifOutputStream exif = new ExifOutputStream(out, data);
+            // split writes so the marker check sees the start of image across calls
+            exif.write(plain[0]);
+            exif.write(plain, 1, plain.length - 1);
+            exif.close();
+
+            byte[] written = out.toByteArray();
+            assertEquals(plain.length + ExifWriter.buildSegment(data).length, written.length);
+            assertEquals(data.toMap(), read(written).toMap());
+            assertEquals(ExifFixtures.WIDTH, ImageIO.read(new ByteArrayInputStream(written)).getWidth());
+        }
+    }
+
+    @Test
+    public void outputStreamPassesOtherDataThrough() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExifOutputStream exif = new ExifOutputStream(out, new byte[]{1, 2, 3});
+        exif.write(new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+        exif.close();
+        assertArrayEquals(new byte[]{(byte) 0x89, 'P', 'N', 'G'}, out.toByteArray());
+    }
+
+    private static ExifData read(byte[] jpeg) throws Exception {
+        return ExifReader.read(new ByteArrayInputStream(jpeg), ExifTags.ALL);
+    }
+}
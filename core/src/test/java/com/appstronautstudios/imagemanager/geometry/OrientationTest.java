@@ -0,0 +1,93 @@
+package com.appstronautstudios.imagemanager.geometry;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OrientationTest {
+
+    private static final int[][] SIZES = {{1, 1}, {1, 7}, {7, 1}, {4, 3}, {3, 4}, {640, 480}, {4032, 3024}};
+
+    @Test
+    public void transposedOrientationsSwapSize() {
+        for (int orientation = Orientation.UNDEFINED; orientation <= Orientation.ROTATE_270; orientation++) {
+            boolean transposed = orientation >= Orientation.TRANSPOSE;
+            assertEquals(transposed, Orientation.isTransposed(orientation));
+            assertEquals(transposed ? 3 : 4, Orientation.orientedWidth(4, 3, orientation));
+            assertEquals(transposed ? 4 : 3, Orientation.orientedHeight(4, 3, orientation));
+        }
+    }
+
+    @Test
+    public void normalHasNoTransform() {
+        assertNull(Orientation.transform(Orientation.UNDEFINED, 4, 3));
+        assertNull(Orientation.transform(Orientation.NORMAL, 4, 3));
+        int[] rect = {1, 2, 3, 3};
+        Orientation.toStored(Orientation.NORMAL, 4, 3, rect);
+        assertArrayEquals(new int[]{1, 2, 3, 3}, rect);
+    }
+
+    @Test
+    public void transformMapsImageOntoDisplayedBounds() {
+        for (int orientation = Orientation.FLIP_HORIZONTAL; orientation <= Orientation.ROTATE_270; orientation++) {
+            for (int[] size : SIZES) {
+                int[] displayed = toDisplayed(orientation, size[0], size[1], new int[]{0, 0, size[0], size[1]});
+                assertArrayEquals("orientation " + orientation, new int[]{0, 0,
+                        Orientation.orientedWidth(size[0], size[1], orientation),
+                        Orientation.orientedHeight(size[0], size[1], orientation)}, displayed);
+            }
+        }
+    }
+
+    @Test
+    public void toStoredInvertsTransform() {
+        Random random = new Random(42);
+        for (int orientation = Orientation.FLIP_HORIZONTAL; orientation <= Orientation.ROTATE_270; orientation++) {
+            for (int[] size : SIZES) {
+                for (int i = 0; i < 2500; i++) {
+                    int left = random.nextInt(size[0]);
+                    int top = random.nextInt(size[1]);
+                    int[] stored = {left, top, left + 1 + random.nextInt(size[0] - left),
+                            top + 1 + random.nextInt(size[1] - top)};
+                    int[] rect = toDisplayed(orientation, size[0], size[1], stored);
+                    Orientation.toStored(orientation, size[0], size[1], rect);
+                    assertArrayEquals("orientation " + orientation, stored, rect);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pixelsLandInsideTheirDisplayedRect() {
+        // the stored pixel under a displayed 1x1 rect is the one the transform draws there
+        for (int orientation = Orientation.FLIP_HORIZONTAL; orientation <= Orientation.ROTATE_270; orientation++) {
+            float[] m = Orientation.transform(orientation, 4, 3);
+            for (int y = 0; y < 3; y++) {
+                for (int x = 0; x < 4; x++) {
+                    float cx = x + 0.5f;
+                    float cy = y + 0.5f;
+                    int dx = (int) (m[0] * cx + m[1] * cy + m[2]);
+                    int dy = (int) (m[3] * cx + m[4] * cy + m[5]);
+                    int[] rect = {dx, dy, dx + 1, dy + 1};
+                    Orientation.toStored(orientation, 4, 3, rect);
+                    assertArrayEquals("orientation " + orientation, new int[]{x, y, x + 1, y + 1}, rect);
+                }
+            }
+        }
+    }
+
+    /**
+     * apply the transform to both corners of a stored rectangle
+     */
+    private static int[] toDisplayed(int orientation, int width, int height, int[] rect) {
+        float[] m = Orientation.transform(orientation, width, height);
+        float x0 = m[0] * rect[0] + m[1] * rect[1] + m[2];
+        float y0 = m[3] * rect[0] + m[4] * rect[1] + m[5];
+        float x1 = m[0] * rect[2] + m[1] * rect[3] + m[2];
+        float y1 = m[3] * rect[2] + m[4] * rect[3] + m[5];
+        return new int[]{Math.round(Math.min(x0, x1)), Math.round(Math.min(y0, y1)),
+                Math.round(Math.max(x0, x1)), Math.round(Math.max(y0, y1))};
+    }
+}
@@ -0,0 +1,152 @@
+package com.appstronautstudios.imagemanager.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares ScalingMath against the Rect based math ImageManager used before it moved to core
+ */
+public class ScalingMathTest {
+
+    private static final int[] SIZES = {1, 2, 3, 7, 16, 99, 100, 101, 333, 480, 640, 1079, 1920, 4032};
+
+    @Test
+    public void matchesLegacyMathForAllSizes() {
+        int[] rect = new int[4];
+        for (ScalingLogic logic : ScalingLogic.values()) {
+            for (int srcWidth : SIZES) {
+                for (int srcHeight : SIZES) {
+                    for (int dstWidth : SIZES) {
+                        for (int dstHeight : SIZES) {
+                            String label = logic + " " + srcWidth + "x" + srcHeight + " -> " + dstWidth + "x" + dstHeight;
+
+                            ScalingMath.calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, logic, rect);
+                            assertArrayEquals(label, legacySrcRect(srcWidth, srcHeight, dstWidth, dstHeight, logic), rect);
+
+                            ScalingMath.calculateDstRect(srcWidth, srcHeight, dstWidth, dstHeight, logic, rect);
+                            assertArrayEquals(label, legacyDstRect(srcWidth, srcHeight, dstWidth, dstHeight, logic), rect);
+
+                            assertEquals(label, legacySampleSize(srcWidth, srcHeight, dstWidth, dstHeight, logic),
+                                    ScalingMath.calculateSampleSize(srcWidth, srcHeight, dstWidth, dstHeight, logic));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cropKeepsDestinationAspect() {
+        int[] rect = new int[4];
+        ScalingMath.calculateSrcRect(4032, 3024, 100, 100, ScalingLogic.CROP, rect);
+        assertArrayEquals(new int[]{504, 0, 3528, 3024}, rect);
+        ScalingMath.calculateSrcRect(3024, 4032, 1920, 1080, ScalingLogic.CROP, rect);
+        assertArrayEquals(new int[]{0, 1165, 3024, 2866}, rect);
+    }
+
+    @Test
+    public void fitKeepsSourceAspect() {
+        int[] rect = new int[4];
+        ScalingMath.calculateDstRect(4032, 3024, 100, 100, ScalingLogic.FIT, rect);
+        assertArrayEquals(new int[]{0, 0, 100, 75}, rect);
+        ScalingMath.calculateDstRect(1, 1000, 50, 50, ScalingLogic.FIT, rect);
+        assertArrayEquals(new int[]{0, 0, 0, 50}, rect);
+    }
+
+    @Test
+    public void powerOfTwoSampleSize() {
+        assertEquals(1, ScalingMath.calculatePowerOfTwoSampleSize(100, 100, 200, 200, ScalingLogic.FIT));
+        assertEquals(1, ScalingMath.calculatePowerOfTwoSampleSize(100, 100, 100, 100, ScalingLogic.FIT));
+        assertEquals(4, ScalingMath.calculatePowerOfTwoSampleSize(4032, 3024, 640, 640, ScalingLogic.FIT));
+        assertEquals(4, ScalingMath.calculatePowerOfTwoSampleSize(4032, 3024, 640, 640, ScalingLogic.CROP));
+    }
+
+    @Test
+    public void orientedRectsUseDisplayedSize() {
+        int[] rect = new int[4];
+        int[] expected = new int[4];
+        for (int orientation = Orientation.NORMAL; orientation <= Orientation.ROTATE_270; orientation++) {
+            int width = Orientation.orientedWidth(4032, 3024, orientation);
+            int height = Orientation.orientedHeight(4032, 3024, orientation);
+
+            ScalingMath.calculateDstRect(4032, 3024, 300, 200, ScalingLogic.FIT, orientation, rect);
+            ScalingMath.calculateDstRect(width, height, 300, 200, ScalingLogic.FIT, expected);
+            assertArrayEquals("orientation " + orientation, expected, rect);
+
+            ScalingMath.calculateSrcRect(4032, 3024, 300, 200, ScalingLogic.CROP, orientation, rect);
+            ScalingMath.calculateSrcRect(width, height, 300, 200, ScalingLogic.CROP, expected);
+            Orientation.toStored(orientation, 4032, 3024, expected);
+            assertArrayEquals("orientation " + orientation, expected, rect);
+            assertEquals(IntRect.of(rect), ScalingMath.calculateSrcRect(4032, 3024, 300, 200, ScalingLogic.CROP, orientation));
+        }
+    }
+
+    /**
+     * ImageManager.calculateSrcRect as it was before the move to core, with Rect replaced by an array
+     */
+    private static int[] legacySrcRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                       ScalingLogic scalingLogic) {
+        if (scalingLogic == ScalingLogic.CROP) {
+            final float srcAspect = (float)srcWidth / (float)srcHeight;
+            final float dstAspect = (float)dstWidth / (float)dstHeight;
+
+            if (srcAspect > dstAspect) {
+                final int srcRectWidth = (int)(srcHeight * dstAspect);
+                final int srcRectLeft = (srcWidth - srcRectWidth) / 2;
+                return new int[]{srcRectLeft, 0, srcRectLeft + srcRectWidth, srcHeight};
+            } else {
+                final int srcRectHeight = (int)(srcWidth / dstAspect);
+                final int scrRectTop = (srcHeight - srcRectHeight) / 2;
+                return new int[]{0, scrRectTop, srcWidth, scrRectTop + srcRectHeight};
+            }
+        } else {
+            return new int[]{0, 0, srcWidth, srcHeight};
+        }
+    }
+
+    /**
+     * ImageManager.calculateDstRect as it was before the move to core
+     */
+    private static int[] legacyDstRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                       ScalingLogic scalingLogic) {
+        if (scalingLogic == ScalingLogic.FIT) {
+            final float srcAspect = (float)srcWidth / (float)srcHeight;
+            final float dstAspect = (float)dstWidth / (float)dstHeight;
+
+            if (srcAspect > dstAspect) {
+                return new int[]{0, 0, dstWidth, (int)(dstWidth / srcAspect)};
+            } else {
+                return new int[]{0, 0, (int)(dstHeight * srcAspect), dstHeight};
+            }
+        } else {
+            return new int[]{0, 0, dstWidth, dstHeight};
+        }
+    }
+
+    /**
+     * ImageManager.calculateSampleSize as it was before the move to core
+     */
+    private static int legacySampleSize(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                        ScalingLogic scalingLogic) {
+        if (scalingLogic == ScalingLogic.FIT) {
+            final float srcAspect = (float)srcWidth / (float)srcHeight;
+            final float dstAspect = (float)dstWidth / (float)dstHeight;
+
+            if (srcAspect > dstAspect) {
+                return srcWidth / dstWidth;
+            } else {
+                return srcHeight / dstHeight;
+            }
+        } else {
+            final float srcAspect = (float)srcWidth / (float)srcHeight;
+            final float dstAspect = (float)dstWidth / (float)dstHeight;
+
+            if (srcAspect > dstAspect) {
+                return srcHeight / dstHeight;
+            } else {
+                return srcWidth / dstWidth;
+            }
+        }
+    }
+}
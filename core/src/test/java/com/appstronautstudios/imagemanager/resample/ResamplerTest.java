@@ -0,0 +1,187 @@
+package com.appstronautstudios.imagemanager.resample;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResamplerTest {
+
+    private static final int[][] SIZES = {{1, 1}, {1, 9}, {9, 1}, {1, 300}, {300, 1}, {7, 5}, {64, 48}, {301, 199}};
+
+    @Test
+    public void sameSizeIsIdentity() {
+        int[] src = noise(37, 23, new Random(1));
+        for (ResampleMode mode : ResampleMode.values()) {
+            int[] dst = new int[src.length];
+            Resampler.resample(src, 0, 37, 37, 23, dst, 37, 23, mode);
+            assertArrayEquals(mode.name(), src, dst);
+        }
+    }
+
+    @Test
+    public void solidColourStaysSolid() {
+        int colour = 0xC0336699;
+        for (ResampleMode mode : ResampleMode.values()) {
+            for (int[] from : SIZES) {
+                for (int[] to : SIZES) {
+                    int[] src = new int[from[0] * from[1]];
+                    Arrays.fill(src, colour);
+                    int[] dst = new int[to[0] * to[1]];
+                    Resampler.resample(src, 0, from[0], from[0], from[1], dst, to[0], to[1], mode);
+                    for (int pixel : dst) {
+                        assertPixel(mode + " " + from[0] + "x" + from[1] + " -> " + to[0] + "x" + to[1],
+                                colour, pixel, 1);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void transparentPixelsDontDarkenEdges() {
+        // opaque red next to transparent black, non-premultiplied filtering would pull in black
+        int width = 40;
+        int height = 10;
+        int[] src = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(src, y * width, y * width + width / 2, 0xFFFF0000);
+        }
+        for (ResampleMode mode : ResampleMode.values()) {
+            for (int dstWidth : new int[]{7, 13, 40, 97}) {
+                int[] dst = new int[dstWidth * 3];
+                Resampler.resample(src, 0, width, width, height, dst, dstWidth, 3, mode);
+                for (int pixel : dst) {
+                    int alpha = pixel >>> 24;
+                    // channels of faint pixels are quantised by the premultiplied round trip
+                    if (alpha < 16) continue;
+                    assertPixel(mode + " -> " + dstWidth, alpha << 24 | 0xFF0000, pixel, 2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void readsOffsetAndStride() {
+        int[] block = noise(5, 4, new Random(2));
+        int[] padded = new int[3 + 9 * 6];
+        for (int y = 0; y < 4; y++) {
+            System.arraycopy(block, y * 5, padded, 3 + (y + 1) * 9 + 2, 5);
+        }
+        for (ResampleMode mode : ResampleMode.values()) {
+            int[] expected = new int[3 * 2];
+            int[] actual = new int[3 * 2];
+            Resampler.resample(block, 0, 5, 5, 4, expected, 3, 2, mode);
+            Resampler.resample(padded, 3 + 9 + 2, 9, 5, 4, actual, 3, 2, mode);
+            assertArrayEquals(mode.name(), expected, actual);
+        }
+    }
+
+    @Test
+    public void thinImagesScaleAlongTheirLength() {
+        int[] column = new int[300];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = i < 150 ? 0xFF000000 : 0xFFFFFFFF;
+        }
+        for (ResampleMode mode : ResampleMode.values()) {
+            int[] dst = new int[10];
+            Resampler.resample(column, 0, 1, 1, 300, dst, 1, 10, mode);
+            assertPixel(mode.name(), 0xFF000000, dst[0], 1);
+            assertPixel(mode.name(), 0xFFFFFFFF, dst[9], 1);
+
+            Resampler.resample(column, 0, 300, 300, 1, dst, 10, 1, mode);
+            assertPixel(mode.name(), 0xFF000000, dst[0], 1);
+            assertPixel(mode.name(), 0xFFFFFFFF, dst[9], 1);
+        }
+    }
+
+    @Test
+    public void readsSourceInStripes() {
+        final int width = 1200;
+        final int height = 900;
+        final int[] src = noise(width, height, new Random(4));
+        for (ResampleMode mode : ResampleMode.values()) {
+            final AtomicInteger largestRead = new AtomicInteger();
+            RowSource source = new RowSource() {
+                @Override
+                public void readRows(int y, int count, int[] dst, int offset) {
+                    assertTrue(y >= 0 && y + count <= height);
+                    largestRead.set(Math.max(largestRead.get(), count));
+                    System.arraycopy(src, y * width, dst, offset, count * width);
+                }
+            };
+            int[] expected = new int[300 * 225];
+            int[] actual = new int[300 * 225];
+            Resampler.resample(src, 0, width, width, height, expected, 300, 225, mode);
+            Resampler.resample(source, width, height, actual, 300, 225, mode, null);
+            assertArrayEquals(mode.name(), expected, actual);
+            // a stripe plus kernel overlap, never the whole source
+            assertTrue(mode + " read " + largestRead.get() + " rows", largestRead.get() < height / 2);
+        }
+    }
+
+    @Test
+    public void executorGivesSameResult() throws Exception {
+        int[] src = noise(800, 600, new Random(5));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        try {
+            for (ResampleMode mode : ResampleMode.values()) {
+                int[] expected = new int[123 * 97];
+                Resampler.resample(src, 0, 800, 800, 600, expected, 123, 97, mode);
+                int[] parallel = new int[123 * 97];
+                Resampler.resample(src, 0, 800, 800, 600, parallel, 123, 97, mode, executor);
+                assertArrayEquals(mode.name(), expected, parallel);
+                int[] rejected = new int[123 * 97];
+                Resampler.resample(src, 0, 800, 800, 600, rejected, 123, 97, mode, rejecting);
+                assertArrayEquals(mode.name(), expected, rejected);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptySource() {
+        Resampler.resample(new int[1], 0, 1, 0, 1, new int[1], 1, 1, ResampleMode.BILINEAR);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyDestination() {
+        Resampler.resample(new int[1], 0, 1, 1, 1, new int[1], 1, 0, ResampleMode.BILINEAR);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortDestination() {
+        Resampler.resample(new int[4], 0, 2, 2, 2, new int[3], 2, 2, ResampleMode.BILINEAR);
+    }
+
+    private static int[] noise(int width, int height, Random random) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() | 0xFF000000;
+        }
+        return pixels;
+    }
+
+    private static void assertPixel(String message, int expected, int actual, int tolerance) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            int difference = Math.abs((expected >>> shift & 0xFF) - (actual >>> shift & 0xFF));
+            if (difference > tolerance) {
+                fail(message + ": expected " + Integer.toHexString(expected) + " but was " + Integer.toHexString(actual));
+            }
+        }
+    }
+}
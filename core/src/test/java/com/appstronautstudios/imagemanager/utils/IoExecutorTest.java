@@ -0,0 +1,77 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class IoExecutorTest {
+
+    private static final String VIRTUAL_THREADS_PROPERTY = "imagemanager.virtualThreads";
+
+    private IoExecutor executor;
+
+    @After
+    public void tearDown() {
+        System.clearProperty(VIRTUAL_THREADS_PROPERTY);
+        if (executor != null) executor.shutdown();
+    }
+
+    @Test
+    public void usesVirtualThreadsWhenTheRuntimeHasThem() throws Exception {
+        executor = IoExecutor.create(8, "IoExecutorTest");
+        assertEquals(Runtime.version().feature() >= 21, executor.isVirtual());
+        assertTrue(runOnExecutor().startsWith("IoExecutorTest-"));
+    }
+
+    @Test
+    public void propertyForcesPlatformThreads() throws Exception {
+        System.setProperty(VIRTUAL_THREADS_PROPERTY, "false");
+        executor = IoExecutor.create(8, "IoExecutorTest");
+        assertFalse(executor.isVirtual());
+        // platform executors queue two tasks per thread
+        assertEquals(16, executor.getConcurrency());
+        assertEquals("IoExecutorTest-1", runOnExecutor());
+    }
+
+    @Test
+    public void platformThreadsAreCapped() {
+        System.setProperty(VIRTUAL_THREADS_PROPERTY, "false");
+        executor = IoExecutor.create(1000, "IoExecutorTest");
+        assertEquals(64 * 2, executor.getConcurrency());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveConcurrency() {
+        IoExecutor.create(0, "IoExecutorTest");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noScopesAfterShutdown() {
+        executor = IoExecutor.platform(1, "IoExecutorTest");
+        executor.shutdown();
+        executor.openScope(false);
+    }
+
+    /**
+     * @return name of the thread a task ran on
+     */
+    private String runOnExecutor() throws Exception {
+        TaskScope<String> scope = executor.openScope(false);
+        try {
+            Future<String> future = scope.fork(new Callable<String>() {
+                @Override
+                public String call() {
+                    return Thread.currentThread().getName();
+                }
+            });
+            scope.join();
+            return future.get();
+        } finally {
+            scope.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TaskScopeTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private IoExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = IoExecutor.platform(2, "TaskScopeTest");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void forkBlocksAtConcurrencyLimit() throws Exception {
+        final int limit = executor.getConcurrency();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger forked = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TaskScope<Void> scope = executor.openScope(false);
+                try {
+                    for (int i = 0; i <= limit; i++) {
+                        scope.fork(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                started.incrementAndGet();
+                                release.await();
+                                return null;
+                            }
+                        });
+                        forked.incrementAndGet();
+                    }
+                    scope.join();
+                } catch (Throwable t) {
+                    error.set(t);
+                } finally {
+                    scope.close();
+                }
+            }
+        });
+        producer.start();
+
+        // platform executors queue some tasks, so only limit tasks are in flight and fork waits
+        waitFor(producer, Thread.State.WAITING);
+        assertEquals(limit, forked.get());
+        assertTrue(started.get() <= limit);
+
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        assertFalse(producer.isAlive());
+        assertNull(error.get());
+        assertEquals(limit + 1, forked.get());
+        assertEquals(limit + 1, started.get());
+    }
+
+    @Test
+    public void closeInterruptsAndWaitsForRunningTasks() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final AtomicBoolean finished = new AtomicBoolean();
+        TaskScope<Void> scope = executor.openScope(false);
+        Future<Void> future = scope.fork(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                running.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    // linger so close has to wait for the task rather than just cancel it
+                    Thread.sleep(100);
+                    throw e;
+                } finally {
+                    finished.set(true);
+                }
+                return null;
+            }
+        });
+        assertTrue(running.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        scope.close();
+        assertTrue(interrupted.get());
+        assertTrue(finished.get());
+        assertTrue(future.isCancelled());
+        assertTrue(scope.isShutdown());
+        // a cancelled task is not a failure
+        scope.throwIfFailed();
+    }
+
+    @Test
+    public void throwIfFailedReportsFirstFailure() throws Exception {
+        TaskScope<String> scope = executor.openScope(false);
+        try {
+            Future<String> ok = scope.fork(new Callable<String>() {
+                @Override
+                public String call() {
+                    return "ok";
+                }
+            });
+            scope.fork(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw new IOException("broken");
+                }
+            });
+            scope.join();
+            assertEquals("ok", ok.get());
+            assertFalse(scope.isShutdown());
+            try {
+                scope.throwIfFailed();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+                assertEquals("broken", e.getCause().getMessage());
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    public void shutdownOnFailureCancelsSiblings() throws Exception {
+        final CountDownLatch siblingRunning = new CountDownLatch(1);
+        final AtomicBoolean siblingInterrupted = new AtomicBoolean();
+        final CountDownLatch fail = new CountDownLatch(1);
+        TaskScope<Void> scope = executor.openScope(true);
+        try {
+            Future<Void> sibling = scope.fork(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    siblingRunning.countDown();
+                    try {
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                    } catch (InterruptedException e) {
+                        siblingInterrupted.set(true);
+                        throw e;
+                    }
+                    return null;
+                }
+            });
+            assertTrue(siblingRunning.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            scope.fork(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    throw new IllegalStateException("first");
+                }
+            });
+            scope.join();
+            assertTrue(scope.isShutdown());
+            assertTrue(sibling.isCancelled());
+            assertTrue(siblingInterrupted.get());
+            try {
+                scope.throwIfFailed();
+                fail();
+            } catch (ExecutionException e) {
+                assertEquals("first", e.getCause().getMessage());
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    public void forkAfterShutdownReturnsCancelledFuture() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+        TaskScope<Void> scope = executor.openScope(false);
+        try {
+            scope.shutdown();
+            Future<Void> future = scope.fork(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    ran.set(true);
+                    return null;
+                }
+            });
+            assertTrue(future.isCancelled());
+            scope.join();
+            assertFalse(ran.get());
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void forkAfterCloseIsRejected() throws Exception {
+        TaskScope<Void> scope = executor.openScope(false);
+        scope.close();
+        scope.fork(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void onlyOwnerThreadMayFork() throws Exception {
+        final TaskScope<Void> scope = executor.openScope(false);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scope.fork(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            return null;
+                        }
+                    });
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+        other.start();
+        other.join();
+        scope.close();
+        assertTrue(error.get() instanceof IllegalStateException);
+    }
+
+    private static void waitFor(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (thread.getState() != state) {
+            if (System.nanoTime() > deadline) fail("thread never reached " + state + ", is " + thread.getState());
+            Thread.sleep(10);
+        }
+    }
+}
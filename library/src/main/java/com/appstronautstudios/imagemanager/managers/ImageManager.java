@@ -2,27 +2,70 @@ package com.appstronautstudios.imagemanager.managers;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
+import android.database.Cursor;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.PixelFormat;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.media.ExifInterface;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Debug;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
+import android.view.PixelCopy;
+import android.view.SurfaceView;
 import android.view.View;
 import android.widget.ImageView;
 
 import androidx.annotation.RequiresApi;
 import androidx.core.content.FileProvider;
 
+import com.appstronautstudios.imagemanager.exif.ExifData;
+import com.appstronautstudios.imagemanager.exif.ExifReader;
+import com.appstronautstudios.imagemanager.exif.ExifScanner;
+import com.appstronautstudios.imagemanager.exif.ExifScrubber;
+import com.appstronautstudios.imagemanager.exif.ScrubPolicy;
+import com.appstronautstudios.imagemanager.geometry.Orientation;
+import com.appstronautstudios.imagemanager.geometry.ScalingMath;
+import com.appstronautstudios.imagemanager.metrics.MeteredInputStream;
+import com.appstronautstudios.imagemanager.metrics.MeteredOutputStream;
+import com.appstronautstudios.imagemanager.metrics.MetricsSink;
+import com.appstronautstudios.imagemanager.resample.ResampleMode;
+import com.appstronautstudios.imagemanager.resample.Resampler;
+import com.appstronautstudios.imagemanager.resample.RowSource;
+import com.appstronautstudios.imagemanager.utils.BatchSaveListener;
+import com.appstronautstudios.imagemanager.utils.BitmapPool;
+import com.appstronautstudios.imagemanager.utils.BoundedExecutor;
+import com.appstronautstudios.imagemanager.utils.CancellationToken;
+import com.appstronautstudios.imagemanager.utils.EncodeOptions;
+import com.appstronautstudios.imagemanager.utils.GalleryEntry;
+import com.appstronautstudios.imagemanager.utils.ImageCache;
+import com.appstronautstudios.imagemanager.utils.ImageEncoder;
+import com.appstronautstudios.imagemanager.utils.MediaStoreSources;
+import com.appstronautstudios.imagemanager.utils.OperationResult;
+import com.appstronautstudios.imagemanager.utils.PngStreamWriter;
+import com.appstronautstudios.imagemanager.utils.Progress;
+import com.appstronautstudios.imagemanager.utils.Rendition;
+import com.appstronautstudios.imagemanager.utils.ResultListener;
+import com.appstronautstudios.imagemanager.utils.ResultTask;
+import com.appstronautstudios.imagemanager.utils.ShareCache;
 import com.appstronautstudios.imagemanager.utils.SuccessFailListener;
+import com.appstronautstudios.imagemanager.utils.TileDecoder;
+import com.appstronautstudios.imagemanager.utils.ViewTileRenderer;
 import com.karumi.dexter.Dexter;
 import com.karumi.dexter.PermissionToken;
 import com.karumi.dexter.listener.PermissionDeniedResponse;
@@ -30,12 +73,30 @@ import com.karumi.dexter.listener.PermissionGrantedResponse;
 import com.karumi.dexter.listener.PermissionRequest;
 import com.karumi.dexter.listener.single.PermissionListener;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 public class ImageManager {
 
@@ -62,7 +123,7 @@ public class ImageManager {
             "CFAPattern", "CustomRendered", "ExposureMode", "WhiteBalance", "DigitalZoomRatio",
             "FocalLengthIn35mmFilm", "SceneCaptureType", "GainControl", "Contrast", "Saturation",
             "Sharpness", "DeviceSettingDescription", "SubjectDistanceRange", "ImageUniqueID",
-            "CameraOwnerName", "CameraOwnerName", "BodySerialNumber", "LensSpecification",
+            "CameraOwnerName", "BodySerialNumber", "LensSpecification",
             "LensMake", "LensModel", "LensSerialNumber", "GPSVersionID", "GPSLatitudeRef",
             "GPSLatitude", "GPSLongitudeRef", "GPSLongitude", "GPSAltitudeRef", "GPSAltitude",
             "GPSTimeStamp", "GPSSatellites", "GPSStatus", "GPSMeasureMode", "GPSDOP",
@@ -89,14 +150,63 @@ public class ImageManager {
      * dimensions fit inside the requested destination area. The resulting
      * destination dimensions might be adjusted to a smaller size than
      * requested.
+     *
+     * Same as {@link com.appstronautstudios.imagemanager.geometry.ScalingLogic} of the core module,
+     * kept here so existing callers compile unchanged.
      */
     public static enum ScalingLogic {
         CROP, FIT
     }
 
+    private static com.appstronautstudios.imagemanager.geometry.ScalingLogic geometry(ScalingLogic scalingLogic) {
+        if (scalingLogic == null) return null;
+        return scalingLogic == ScalingLogic.CROP ? com.appstronautstudios.imagemanager.geometry.ScalingLogic.CROP
+                : com.appstronautstudios.imagemanager.geometry.ScalingLogic.FIT;
+    }
+
+    /**
+     * ConfigLogic picks the pixel format of a result from its source.
+     *
+     * AUTO: RGB_565 when the source has no alpha channel, which halves memory for photos, and
+     * ARGB_8888 otherwise.
+     *
+     * DISPLAY: A HARDWARE bitmap on android 8+, held in graphics memory only, and AUTO before
+     * that. Hardware bitmaps can be drawn but their pixels can't be read, modified or encoded.
+     */
+    public static enum ConfigLogic {
+        AUTO, DISPLAY
+    }
+
+
+    private static final int DECODE_BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_CHUNK_SIZE = 64 * 1024;
+    private static final EncodeOptions DEFAULT_SAVE_OPTIONS = EncodeOptions.jpeg(90);
+    private static final EncodeOptions DEFAULT_SHARE_OPTIONS = EncodeOptions.jpeg(100);
+    private static final Set<String> ORIENTATION_TAG = Collections.singleton(ExifInterface.TAG_ORIENTATION);
+    private static final int DEFAULT_SAVE_THREADS = 2;
+    private static final int DEFAULT_SAVE_QUEUE_CAPACITY = 16;
+    private static final long SHARE_CACHE_MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+    private static final long SHARE_CACHE_MAX_BYTES = 50 * 1024 * 1024L;
+    /**
+     * KiB of full size bitmaps batch encode workers may decode from Uris at once
+     */
+    private static final int BATCH_DECODE_BUDGET_KIB = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 4 / 1024);
 
     private static final ImageManager INSTANCE = new ImageManager();
 
+    private static volatile BitmapPool bitmapPool;
+    private static volatile ImageCache imageCache;
+    private static volatile MetricsSink metricsSink;
+
+    private int saveThreads = DEFAULT_SAVE_THREADS;
+    private int saveQueueCapacity = DEFAULT_SAVE_QUEUE_CAPACITY;
+    private BoundedExecutor saveExecutor;
+    private BoundedExecutor encodeExecutor;
+    private BoundedExecutor resampleExecutor;
+    private final Semaphore batchDecodeBudget = new Semaphore(BATCH_DECODE_BUDGET_KIB);
+    private ShareCache shareCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     private ImageManager() {
         if (INSTANCE != null) {
             throw new IllegalStateException("Already instantiated");
@@ -107,6 +217,106 @@ public class ImageManager {
         return INSTANCE;
     }
 
+    /**
+     * use a pool of recycled bitmaps for scaling, screenshots and decodes instead of allocating new
+     * bitmaps every time. Bitmaps returned by this class can be handed back with
+     * {@link #releaseBitmap(Bitmap)} once they are no longer displayed.
+     *
+     * @param pool bitmap pool or null to disable pooling
+     */
+    public static void setBitmapPool(BitmapPool pool) {
+        BitmapPool previous = bitmapPool;
+        bitmapPool = pool;
+        if (previous != null && previous != pool) previous.clear();
+    }
+
+    /**
+     * @return current bitmap pool or null if pooling is disabled
+     */
+    public static BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * hand a bitmap back once it is no longer used. It is added to the bitmap pool when one is set
+     * and recycled otherwise. The bitmap must not be used afterwards.
+     *
+     * @param bitmap bitmap to release
+     */
+    public static void releaseBitmap(Bitmap bitmap) {
+        BitmapPool pool = bitmapPool;
+        if (pool != null) {
+            pool.put(bitmap);
+        } else if (bitmap != null) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * cache the results of {@code decodeScaledCached} in memory and on disk
+     *
+     * @param cache image cache or null to disable caching
+     */
+    public static void setImageCache(ImageCache cache) {
+        imageCache = cache;
+    }
+
+    /**
+     * @return current image cache or null if caching is disabled
+     */
+    public static ImageCache getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * record stage timings of every operation, bytes read and written, bitmap allocations, pool
+     * and cache hits and memory high-water marks. See {@link MetricsSink}
+     *
+     * @param sink metrics sink or null to disable metrics
+     */
+    public static void setMetricsSink(MetricsSink sink) {
+        metricsSink = sink;
+    }
+
+    /**
+     * @return current metrics sink or null if metrics are disabled
+     */
+    public static MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    private static void count(MetricsSink.Counter counter, long delta) {
+        MetricsSink sink = metricsSink;
+        if (sink != null && delta > 0) sink.onCount(counter, delta);
+    }
+
+    /**
+     * count a bitmap that was allocated rather than reused
+     */
+    private static Bitmap allocated(Bitmap bitmap) {
+        if (bitmap != null) count(MetricsSink.Counter.BITMAP_BYTES_ALLOCATED, bitmap.getAllocationByteCount());
+        return bitmap;
+    }
+
+    private static void sampleMemory(MetricsSink sink) {
+        Runtime runtime = Runtime.getRuntime();
+        sink.onGauge(MetricsSink.Gauge.JAVA_HEAP_BYTES, runtime.totalMemory() - runtime.freeMemory());
+        sink.onGauge(MetricsSink.Gauge.NATIVE_HEAP_BYTES, Debug.getNativeHeapAllocatedSize());
+    }
+
+    /**
+     * @return cleared bitmap from the pool or a new one when pooling is disabled
+     */
+    private static Bitmap obtainBitmap(int width, int height, Bitmap.Config config) {
+        BitmapPool pool = bitmapPool;
+        if (pool != null) {
+            Bitmap pooled = pool.getIfPresent(width, height, config);
+            count(pooled != null ? MetricsSink.Counter.POOL_HITS : MetricsSink.Counter.POOL_MISSES, 1);
+            if (pooled != null) return pooled;
+        }
+        return allocated(Bitmap.createBitmap(width, height, config));
+    }
+
     /**
      * get bitmap from provided image view
      *
@@ -123,8 +333,34 @@ public class ImageManager {
      * @return bitmap
      */
     public Bitmap viewToBitmap(View view) {
+        return viewToBitmap(view, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * get bitmap from any view with a pixel format picked from the view. AUTO uses RGB_565 when
+     * the view's background is opaque, so nothing drawn can be transparent
+     *
+     * @param view        view to capture
+     * @param configLogic how to pick the pixel format
+     * @return bitmap
+     */
+    public Bitmap viewToBitmap(View view, ConfigLogic configLogic) {
+        Drawable background = view.getBackground();
+        boolean opaque = background != null && background.getOpacity() == PixelFormat.OPAQUE;
+        return viewToBitmap(view, resolveConfig(!opaque, configLogic));
+    }
+
+    /**
+     * get bitmap from any view in the given pixel format. HARDWARE results are drawn in software
+     * and then copied to graphics memory
+     *
+     * @param view   view to capture
+     * @param config pixel format of the result
+     * @return bitmap
+     */
+    public Bitmap viewToBitmap(View view, Bitmap.Config config) {
         // define a bitmap with the same size as the view
-        Bitmap returnedBitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_4444);
+        Bitmap returnedBitmap = obtainBitmap(view.getWidth(), view.getHeight(), softwareConfig(config));
         // bind a canvas to it
         Canvas canvas = new Canvas(returnedBitmap);
         // set background
@@ -139,7 +375,228 @@ public class ImageManager {
         // draw the view on the canvas
         view.draw(canvas);
         // return the bitmap
-        return returnedBitmap;
+        return isHardware(config) ? toHardware(returnedBitmap) : returnedBitmap;
+    }
+
+    /**
+     * capture a view as shown on screen. On android 8+ the pixels are copied from the window by
+     * the compositor, which is faster than drawing the view again and includes SurfaceView and
+     * TextureView content. The copy is scaled directly into a bitmap of the requested size so a
+     * reduced preview never needs a full resolution buffer. Before android 8, or if the view is
+     * not attached, the view is drawn into a scaled canvas instead.
+     *
+     * @param activity activity showing the view
+     * @param view     view to capture
+     * @param region   area of the view to capture in view coordinates, null for the whole view
+     * @param scale    output size relative to the captured area, e.g. 0.25f for a quarter size
+     *                 preview
+     * @param listener receives the bitmap on the main thread
+     */
+    public void snapshotView(Activity activity, final View view, Rect region, final float scale,
+                             final SuccessFailListener listener) {
+        if (scale <= 0) throw new IllegalArgumentException("scale must be positive");
+        final Rect area = region != null ? new Rect(region) : new Rect(0, 0, view.getWidth(), view.getHeight());
+        if (!area.intersect(0, 0, view.getWidth(), view.getHeight())) {
+            listener.failure(new IllegalArgumentException("Region is outside the view"));
+            return;
+        }
+        final int width = Math.max(1, Math.round(area.width() * scale));
+        final int height = Math.max(1, Math.round(area.height() * scale));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && view.isAttachedToWindow()
+                && view.isHardwareAccelerated()) {
+            pixelCopy(activity, view, area, width, height, listener);
+            return;
+        }
+        postDrawSnapshot(view, area, width, height, listener);
+    }
+
+    /**
+     * draw the view into a scaled canvas on the main thread and report the bitmap to the listener
+     */
+    private void postDrawSnapshot(final View view, final Rect area, final int width, final int height,
+                                  final SuccessFailListener listener) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.success(drawSnapshot(view, area, width, height));
+                } catch (Exception e) {
+                    listener.failure(e);
+                }
+            }
+        });
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    private void pixelCopy(Activity activity, final View view, final Rect area, final int width,
+                           final int height, final SuccessFailListener listener) {
+        final Bitmap bitmap = obtainBitmap(width, height, Bitmap.Config.ARGB_8888);
+        PixelCopy.OnPixelCopyFinishedListener finished = new PixelCopy.OnPixelCopyFinishedListener() {
+            @Override
+            public void onPixelCopyFinished(int copyResult) {
+                if (copyResult == PixelCopy.SUCCESS) {
+                    listener.success(bitmap);
+                    return;
+                }
+                releaseBitmap(bitmap);
+                if (view.isAttachedToWindow()) {
+                    // e.g. secure window or no surface yet, fall back to drawing the view
+                    try {
+                        listener.success(drawSnapshot(view, area, width, height));
+                        return;
+                    } catch (Exception e) {
+                        // report the copy failure below
+                    }
+                }
+                listener.failure(new IOException("PixelCopy failed with result " + copyResult));
+            }
+        };
+        try {
+            if (view instanceof SurfaceView) {
+                PixelCopy.request((SurfaceView) view, area, bitmap, finished, mainHandler);
+            } else {
+                // PixelCopy works in window coordinates
+                int[] location = new int[2];
+                view.getLocationInWindow(location);
+                Rect windowArea = new Rect(area);
+                windowArea.offset(location[0], location[1]);
+                PixelCopy.request(activity.getWindow(), windowArea, bitmap, finished, mainHandler);
+            }
+        } catch (IllegalArgumentException e) {
+            // window has no surface yet, draw the view like a failed copy does
+            releaseBitmap(bitmap);
+            postDrawSnapshot(view, area, width, height, listener);
+        }
+    }
+
+    /**
+     * export a view taller than the screen, e.g. the content of a ScrollView, as one PNG. The view
+     * is drawn in bands of tileHeight rows that are compressed as they arrive, so memory use
+     * depends on the tile size and not on the height of the view. Drawing happens on the main
+     * thread, don't block it waiting for the result.
+     *
+     * @param view       view laid out at its full content height
+     * @param output     PNG file to write
+     * @param tileHeight rows drawn at a time
+     * @param listener   receives the output file on the main thread
+     * @return handle that can be used to cancel the export or wait for the file
+     */
+    public Future<File> captureLongView(final View view, final File output, final int tileHeight,
+                                        SuccessFailListener listener) {
+        final ViewTileRenderer renderer = new ViewTileRenderer(view, tileHeight);
+        final Tracker tracker = new Tracker(MetricsSink.Operation.CAPTURE, null, null, mainHandler);
+        ResultTask<File> task = new ResultTask<>(reported(tracker, new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                boolean written = false;
+                MeteredOutputStream file = new MeteredOutputStream(new FileOutputStream(output));
+                OutputStream out = new BufferedOutputStream(file, DECODE_BUFFER_SIZE);
+                long encodeNanos = 0;
+                PngStreamWriter writer = null;
+                try {
+                    writer = new PngStreamWriter(out, renderer.getWidth(), renderer.getHeight(), !renderer.isOpaque());
+                    int[] pixels = new int[renderer.getWidth() * renderer.getTileHeight()];
+                    while (renderer.hasNext()) {
+                        // the next band is drawn while this one is compressed
+                        int rows = renderer.next(pixels);
+                        long start = System.nanoTime();
+                        writer.writeRows(pixels, 0, renderer.getWidth(), rows);
+                        encodeNanos += System.nanoTime() - start;
+                    }
+                    long start = System.nanoTime();
+                    writer.finish();
+                    encodeNanos += System.nanoTime() - start;
+                    written = true;
+                } finally {
+                    if (writer != null) writer.release();
+                    renderer.release();
+                    out.close();
+                    if (!written) output.delete();
+                }
+                tracker.add(OperationResult.Stage.ENCODE, encodeNanos - file.getNanos());
+                tracker.add(OperationResult.Stage.WRITE, file.getNanos());
+                count(MetricsSink.Counter.BYTES_WRITTEN, file.getBytes());
+                return output;
+            }
+        }), listener);
+        submitSave(task);
+        return task;
+    }
+
+    /**
+     * export a view taller than the screen as a sequence of images, one per band of tileHeight
+     * rows, named baseName_0, baseName_1 and so on. Memory use depends on the tile size and not on
+     * the height of the view. Drawing happens on the main thread, don't block it waiting for the
+     * result.
+     *
+     * @param view       view laid out at its full content height
+     * @param directory  directory for the tile files
+     * @param baseName   file name prefix
+     * @param tileHeight rows per tile file
+     * @param options    output format and quality of the tiles
+     * @param listener   receives the list of tile files, top to bottom, on the main thread
+     * @return handle that can be used to cancel the export or wait for the files
+     */
+    public Future<List<File>> captureLongViewTiles(final View view, final File directory, final String baseName,
+                                                   final int tileHeight, final EncodeOptions options,
+                                                   SuccessFailListener listener) {
+        final ViewTileRenderer renderer = new ViewTileRenderer(view, tileHeight);
+        final Tracker tracker = new Tracker(MetricsSink.Operation.CAPTURE, null, null, mainHandler);
+        ResultTask<List<File>> task = new ResultTask<>(reported(tracker, new Callable<List<File>>() {
+            @Override
+            public List<File> call() throws Exception {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Unable to create " + directory);
+                }
+                List<File> files = new ArrayList<>();
+                boolean written = false;
+                try {
+                    for (int index = 0; renderer.hasNext(); index++) {
+                        Bitmap tile = renderer.nextBitmap();
+                        int rows = renderer.getRows(index);
+                        // only the last tile is short, crop it to its rows
+                        Bitmap band = rows == tile.getHeight() ? tile : Bitmap.createBitmap(tile, 0, 0, tile.getWidth(), rows);
+                        File file = new File(directory, baseName + "_" + index + options.getExtension());
+                        files.add(file);
+                        MeteredOutputStream metered = new MeteredOutputStream(new FileOutputStream(file));
+                        OutputStream out = new BufferedOutputStream(metered, DECODE_BUFFER_SIZE);
+                        long start = System.nanoTime();
+                        try {
+                            ImageEncoder.encode(band, options, out);
+                        } finally {
+                            out.close();
+                            if (band != tile) band.recycle();
+                        }
+                        tracker.add(OperationResult.Stage.ENCODE, System.nanoTime() - start - metered.getNanos());
+                        tracker.add(OperationResult.Stage.WRITE, metered.getNanos());
+                        count(MetricsSink.Counter.BYTES_WRITTEN, metered.getBytes());
+                    }
+                    written = true;
+                } finally {
+                    renderer.release();
+                    if (!written) {
+                        for (File file : files) file.delete();
+                    }
+                }
+                return files;
+            }
+        }), listener);
+        submitSave(task);
+        return task;
+    }
+
+    /**
+     * draw part of a view into a scaled canvas. Must run on the main thread.
+     */
+    private static Bitmap drawSnapshot(View view, Rect area, int width, int height) {
+        Bitmap bitmap = obtainBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale((float) width / area.width(), (float) height / area.height());
+        canvas.translate(-area.left, -area.top);
+        Drawable background = view.getBackground();
+        if (background != null) background.draw(canvas);
+        view.draw(canvas);
+        return bitmap;
     }
 
     /**
@@ -150,33 +607,82 @@ public class ImageManager {
      * @param bitmap   bitmap to share
      */
     public void shareImageWithoutPermissions(Activity activity, Bitmap bitmap) {
-        // create file and folder in app specific cache
-        File cacheFolder = new File(activity.getCacheDir(), "images");
-        cacheFolder.mkdirs(); // don't forget to make the directory
-        File cacheImage = new File(cacheFolder, "temp_image.png");
+        shareImageWithoutPermissions(activity, bitmap, null);
+    }
 
-        // write our bitmap to file
-        FileOutputStream fos;
-        try {
-            fos = new FileOutputStream(cacheImage); // overwrites this image every time
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 100, fos);
-            fos.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * writes image to cache and shares with an intent flag permission circumventing requirement to
+     * write to external storage. The image is encoded on a background thread and the chooser is
+     * launched once it is written. The bitmap must not be recycled until the listener fires.
+     *
+     * @param activity activity
+     * @param bitmap   bitmap to share
+     * @param listener called with the shared content uri once the chooser launches, or the failure
+     * @return handle that can be used to cancel the share before the chooser launches
+     */
+    public Future<File> shareImageWithoutPermissions(final Activity activity, final Bitmap bitmap, final SuccessFailListener listener) {
+        return shareImageWithoutPermissions(activity, bitmap, DEFAULT_SHARE_OPTIONS, listener);
+    }
+
+    /**
+     * same as {@link #shareImageWithoutPermissions(Activity, Bitmap, SuccessFailListener)} with
+     * a custom output format and quality
+     *
+     * @param activity activity
+     * @param bitmap   bitmap to share
+     * @param options  output format and quality
+     * @param listener called with the shared content uri once the chooser launches, or the failure
+     * @return handle that can be used to cancel the share before the chooser launches
+     */
+    public Future<File> shareImageWithoutPermissions(final Activity activity, final Bitmap bitmap, final EncodeOptions options, final SuccessFailListener listener) {
+        final ShareCache cache = getShareCache(activity);
+        final Tracker tracker = new Tracker(MetricsSink.Operation.SHARE, null, null, mainHandler);
+        ResultTask<File> task = new ResultTask<>(reported(tracker, new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                long start = System.nanoTime();
+                File staged = cache.stage(bitmap, options);
+                tracker.record(OperationResult.Stage.ENCODE, start);
+                return staged;
+            }
+        }), new SuccessFailListener() {
+            @Override
+            public void success(Object object) {
+                File image = (File) object;
+                // get content URI of cached image and send share intent with temp read URI permission
+                // https://developer.android.com/reference/android/support/v4/content/FileProvider.html#Permissions
+                Uri contentUri = FileProvider.getUriForFile(activity, activity.getPackageName() + ".imagemanager.shareprovider", image);
+                if (contentUri != null) {
+                    activity.grantUriPermission(activity.getPackageName(), contentUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    Intent shareIntent = new Intent();
+                    shareIntent.setAction(Intent.ACTION_SEND);
+                    shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION); // temp permission for receiving app to read this file
+                    shareIntent.setDataAndType(contentUri, options.getMimeType());
+                    shareIntent.putExtra(Intent.EXTRA_STREAM, contentUri);
+                    activity.startActivity(Intent.createChooser(shareIntent, "Choose an app"));
+                    if (listener != null) listener.success(contentUri);
+                } else if (listener != null) {
+                    listener.failure(new Exception("Share failure"));
+                }
+            }
 
-        // get content URI of cached image and send share intent with temp read URI permission
-        // https://developer.android.com/reference/android/support/v4/content/FileProvider.html#Permissions
-        Uri contentUri = FileProvider.getUriForFile(activity, activity.getPackageName() + ".imagemanager.shareprovider", cacheImage);
-        activity.grantUriPermission(activity.getPackageName(), contentUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
-        if (contentUri != null) {
-            Intent shareIntent = new Intent();
-            shareIntent.setAction(Intent.ACTION_SEND);
-            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION); // temp permission for receiving app to read this file
-            shareIntent.setDataAndType(contentUri, activity.getContentResolver().getType(contentUri));
-            shareIntent.putExtra(Intent.EXTRA_STREAM, contentUri);
-            activity.startActivity(Intent.createChooser(shareIntent, "Choose an app"));
+            @Override
+            public void failure(Object object) {
+                if (object instanceof Exception) ((Exception) object).printStackTrace();
+                if (listener != null) listener.failure(object);
+            }
+        });
+        submitSave(task);
+        return task;
+    }
+
+    private synchronized ShareCache getShareCache(Context context) {
+        if (shareCache == null) {
+            // cache/images is exposed through the share FileProvider
+            File cacheFolder = new File(context.getCacheDir(), "images");
+            shareCache = new ShareCache(cacheFolder, SHARE_CACHE_MAX_AGE_MS, SHARE_CACHE_MAX_BYTES);
         }
+        return shareCache;
     }
 
     /**
@@ -197,10 +703,22 @@ public class ImageManager {
      * @param listener  success/fail listener
      */
     public void saveToGallery(final Activity activity, final Bitmap bitmap, final String albumName, final String fileName, final SuccessFailListener listener) {
+        saveToGallery(activity, bitmap, albumName, fileName, DEFAULT_SAVE_OPTIONS, listener);
+    }
+
+    /**
+     * @param activity  activity
+     * @param bitmap    bitmap to save
+     * @param albumName album name to save to in pictures directory
+     * @param fileName  name of file without extension
+     * @param options   output format and quality
+     * @param listener  success/fail listener
+     */
+    public void saveToGallery(final Activity activity, final Bitmap bitmap, final String albumName, final String fileName, final EncodeOptions options, final SuccessFailListener listener) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             // saving to scoped storage on android 29+ does not require write_external
             // https://developer.android.com/training/data-storage/shared/media
-            Uri uri = saveToGalleryWithoutPermissionCheck(activity, bitmap, albumName, fileName);
+            Uri uri = saveToGalleryReported(activity, bitmap, albumName, fileName, options);
             if (listener != null) {
                 if (uri != null) {
                     listener.success(uri);
@@ -214,7 +732,7 @@ public class ImageManager {
                     .withListener(new PermissionListener() {
                         @Override
                         public void onPermissionGranted(PermissionGrantedResponse response) {
-                            Uri uri = saveToGalleryWithoutPermissionCheck(activity, bitmap, albumName, fileName);
+                            Uri uri = saveToGalleryReported(activity, bitmap, albumName, fileName, options);
                             if (listener != null) {
                                 if (uri != null) {
                                     listener.success(uri);
@@ -242,184 +760,1963 @@ public class ImageManager {
     }
 
     /**
-     * @param activity  context
+     * configure the worker pool used by the async save methods. Applies to saves submitted after
+     * this call, saves already queued finish on the previous pool.
+     *
+     * @param threads       number of concurrent saves
+     * @param queueCapacity number of saves allowed to wait. When full, saves submitted from the
+     *                      main thread fail with a RejectedExecutionException and saves submitted
+     *                      from background threads block until there is room
+     */
+    public synchronized void setSaveExecutorConfig(int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+        }
+        saveThreads = threads;
+        saveQueueCapacity = queueCapacity;
+        if (saveExecutor != null) {
+            saveExecutor.shutdown();
+            saveExecutor = null;
+        }
+    }
+
+    private synchronized BoundedExecutor getSaveExecutor() {
+        if (saveExecutor == null) {
+            saveExecutor = new BoundedExecutor(saveThreads, saveQueueCapacity, "ImageManager-save");
+        }
+        return saveExecutor;
+    }
+
+    /**
+     * same as {@link #saveToGallery(Activity, Bitmap, String, String, SuccessFailListener)} but
+     * compresses and writes the bitmap on a background worker. The listener is called on the main
+     * thread. The bitmap must not be recycled or modified until the listener fires.
+     *
+     * @param activity  activity
      * @param bitmap    bitmap to save
      * @param albumName album name to save to in pictures directory
      * @param fileName  name of file without extension
-     * @return uri of file saved
+     * @param listener  success/fail listener, not called if the save is cancelled
+     * @return handle that can be used to cancel the save or wait for the resulting uri
      */
-    private Uri saveToGalleryWithoutPermissionCheck(final Activity activity, final Bitmap bitmap, final String albumName, final String fileName) {
-        // https://proandroiddev.com/working-with-scoped-storage-8a7e7cafea3
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            ContentValues contentValues = new ContentValues();
-            contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
-            contentValues.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
-            contentValues.put(MediaStore.MediaColumns.RELATIVE_PATH, "Pictures/" + albumName);
-            Uri collection = MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY);
-            Uri uri = activity.getContentResolver().insert(collection, contentValues);
-            if (uri != null) {
-                try {
-                    OutputStream out = activity.getContentResolver().openOutputStream(uri);
-                    if (out != null) {
-                        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
-                        out.close();
-                    }
-                    return uri;
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-            return null;
-        } else {
-            return saveToGalleryLegacyWithoutPermissionCheck(activity, bitmap, albumName, fileName);
-        }
+    public Future<Uri> saveToGalleryAsync(final Activity activity, final Bitmap bitmap, final String albumName, final String fileName, final SuccessFailListener listener) {
+        return saveToGalleryAsync(activity, bitmap, albumName, fileName, DEFAULT_SAVE_OPTIONS, listener);
     }
 
     /**
-     * WARNING - does not work on android 10+
+     * same as {@link #saveToGalleryAsync(Activity, Bitmap, String, String, SuccessFailListener)}
+     * with a custom output format and quality
      *
-     * @param activity  context
+     * @param activity  activity
      * @param bitmap    bitmap to save
      * @param albumName album name to save to in pictures directory
      * @param fileName  name of file without extension
-     * @return uri of file saved
+     * @param options   output format and quality
+     * @param listener  success/fail listener, not called if the save is cancelled
+     * @return handle that can be used to cancel the save or wait for the resulting uri
      */
-    private Uri saveToGalleryLegacyWithoutPermissionCheck(Activity activity, Bitmap bitmap, String albumName, String fileName) {
-        // create image folder if does not exist
-        File imagesFolder = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), albumName);
-        if (!imagesFolder.mkdirs() && !imagesFolder.isDirectory()) {
-            String state = Environment.getExternalStorageState();
-            if (Environment.MEDIA_MOUNTED.equals(state)) {
-                // failed to create and is not a directory. Something went wrong...
-                return null;
-            }
-        }
-
-        // delete image if already exists so FOS can create a new one
-        File image = new File(imagesFolder, fileName + ".jpg");
-        if (image.exists()) {
-            // image already exists, deleting to start from clean state
-            if (!image.delete()) {
-                // failed to delete
-                return null;
+    public Future<Uri> saveToGalleryAsync(final Activity activity, final Bitmap bitmap, final String albumName, final String fileName, final EncodeOptions options, final SuccessFailListener listener) {
+        final Tracker tracker = new Tracker(MetricsSink.Operation.SAVE, null, null, mainHandler);
+        final ResultTask<Uri> task = new ResultTask<>(reported(tracker, new Callable<Uri>() {
+            @Override
+            public Uri call() throws Exception {
+                Uri uri = saveToGalleryWithoutPermissionCheck(activity, bitmap, albumName, fileName, options, tracker);
+                if (uri == null) throw new Exception("Save failure");
+                return uri;
             }
-        }
+        }), listener);
 
-        // compress bitmap and write to file stream. FOS creates file if does not exist
-        FileOutputStream out = null;
-        try {
-            out = new FileOutputStream(image);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
-            out.flush();
-            out.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        submitSaveWithPermission(activity, task);
+        return task;
+    }
 
-        // get Uri from saved image
-        Uri uriSavedImage = Uri.fromFile(image);
+    /**
+     * same as {@link #saveToGalleryAsync(Activity, Bitmap, String, String, EncodeOptions, SuccessFailListener)}
+     * with byte progress, cancellation and stage timings. The image is encoded in memory first so
+     * the write can report progress against a known size and stop between chunks.
+     *
+     * @param activity  activity
+     * @param bitmap    bitmap to save
+     * @param albumName album name to save to in pictures directory
+     * @param fileName  name of file without extension
+     * @param options   output format and quality
+     * @param token     cancels the save between stages and write chunks, may be null
+     * @param listener  progress and typed result listener, not called if the returned future is
+     *                  cancelled
+     * @return handle that can be used to cancel the save or wait for the result
+     */
+    public Future<OperationResult<Uri>> saveToGalleryAsync(final Activity activity, final Bitmap bitmap, final String albumName, final String fileName, final EncodeOptions options, CancellationToken token, ResultListener<Uri> listener) {
+        final Tracker tracker = new Tracker(MetricsSink.Operation.SAVE, token, listener, mainHandler);
+        final ResultTask<OperationResult<Uri>> task = new ResultTask<>(reported(tracker, new Callable<OperationResult<Uri>>() {
+            @Override
+            public OperationResult<Uri> call() throws Exception {
+                tracker.setItems(0, 1);
+                tracker.checkCancelled();
+                long start = System.nanoTime();
+                byte[] data = ImageEncoder.encodeToBytes(bitmap, options);
+                tracker.record(OperationResult.Stage.ENCODE, start);
+                tracker.setTotalBytes(data.length);
+                Uri uri = saveToGalleryWithoutPermissionCheck(activity, trackedWriter(data, tracker), albumName, fileName, options, tracker);
+                // the save path swallows errors, a cancelled write shows up as a missing uri
+                tracker.checkCancelled();
+                if (uri == null) throw new Exception("Save failure");
+                tracker.setItems(1, 1);
+                return tracker.finish(uri);
+            }
+        }), resultAdapter(listener));
 
-        // media scan the new file so it shows up in the gallery
-        Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-        mediaScanIntent.setData(uriSavedImage);
-        activity.sendBroadcast(mediaScanIntent);
+        submitSaveWithPermission(activity, task);
+        return task;
+    }
 
-        return uriSavedImage;
+    /**
+     * export many images to the gallery. Encoding runs in parallel on all cores while the
+     * previously encoded images are written to storage, so compression and MediaStore I/O overlap.
+     * Entries are hidden from the gallery until they are completely written.
+     *
+     * @param activity activity
+     * @param entries  images to save. Bitmaps must not be recycled until the batch completes
+     * @param listener progress, per item failure and completion listener
+     * @return handle that can be used to cancel the remaining entries
+     */
+    public Future<List<Uri>> saveToGalleryBatch(final Activity activity, final List<GalleryEntry> entries, final BatchSaveListener listener) {
+        return saveToGalleryBatch(activity, entries, DEFAULT_SAVE_OPTIONS, listener);
     }
 
-    public static HashMap<String, String> getAllExifData(File file) throws IOException {
-        ExifInterface exifInterface = new ExifInterface(file.getName());
-        return getAllExifData(exifInterface);
+    /**
+     * same as {@link #saveToGalleryBatch(Activity, List, BatchSaveListener)} with a custom output
+     * format and quality
+     *
+     * @param activity activity
+     * @param entries  images to save. Bitmaps must not be recycled until the batch completes
+     * @param options  output format and quality for every entry
+     * @param listener progress, per item failure and completion listener
+     * @return handle that can be used to cancel the remaining entries
+     */
+    public Future<List<Uri>> saveToGalleryBatch(final Activity activity, final List<GalleryEntry> entries, final EncodeOptions options, final BatchSaveListener listener) {
+        final List<GalleryEntry> batch = new ArrayList<>(entries);
+        final Tracker tracker = new Tracker(MetricsSink.Operation.SAVE_BATCH, null, null, mainHandler);
+        final ResultTask<List<Uri>> task = new ResultTask<>(reported(tracker, new Callable<List<Uri>>() {
+            @Override
+            public List<Uri> call() throws Exception {
+                return saveBatchWithoutPermissionCheck(activity, batch, options, listener, tracker);
+            }
+        }), batchAdapter(listener));
+        submitSaveWithPermission(activity, task);
+        return task;
     }
 
-    @RequiresApi(api = Build.VERSION_CODES.N)
-    public static HashMap<String, String> getAllExifData(InputStream inputStream) throws IOException {
-        ExifInterface exifInterface = new ExifInterface(inputStream);
-        return getAllExifData(exifInterface);
+    /**
+     * same as {@link #saveToGalleryBatch(Activity, List, EncodeOptions, BatchSaveListener)} with
+     * typed results, item and byte progress, cancellation and stage timings summed over the batch.
+     * Entries that fail have a null uri in the result list.
+     *
+     * @param activity activity
+     * @param entries  images to save. Bitmaps must not be recycled until the batch completes
+     * @param options  output format and quality for every entry
+     * @param token    stops the batch between entries and write chunks, may be null. Entries
+     *                 already written stay in the gallery
+     * @param listener progress and typed result listener
+     * @return handle that can be used to cancel the remaining entries
+     */
+    public Future<OperationResult<List<Uri>>> saveToGalleryBatch(final Activity activity, final List<GalleryEntry> entries, final EncodeOptions options, CancellationToken token, ResultListener<List<Uri>> listener) {
+        final List<GalleryEntry> batch = new ArrayList<>(entries);
+        final Tracker tracker = new Tracker(MetricsSink.Operation.SAVE_BATCH, token, listener, mainHandler);
+        final ResultTask<OperationResult<List<Uri>>> task = new ResultTask<>(reported(tracker, new Callable<OperationResult<List<Uri>>>() {
+            @Override
+            public OperationResult<List<Uri>> call() throws Exception {
+                return tracker.finish(saveBatchWithoutPermissionCheck(activity, batch, options, null, tracker));
+            }
+        }), resultAdapter(listener));
+        submitSaveWithPermission(activity, task);
+        return task;
     }
 
-    public static HashMap<String, String> getAllExifData(ExifInterface exifInterface) throws IOException {
-        HashMap<String, String> data = new HashMap<>();
-        for (String key : ALL_EXIF_ATTRIBUTES) {
-            String valueForKey = exifInterface.getAttribute(key);
-            if (valueForKey != null && !valueForKey.isEmpty()) data.put(key, valueForKey);
-        }
+    private List<Uri> saveBatchWithoutPermissionCheck(final Activity activity, final List<GalleryEntry> batch, final EncodeOptions options, final BatchSaveListener listener, final Tracker tracker) throws InterruptedException {
+        final int total = batch.size();
+        tracker.setItems(0, total);
+        final Uri[] uris = new Uri[total];
+        BoundedExecutor encoder = getEncodeExecutor();
+        CompletionService<EncodedEntry> encoded = new ExecutorCompletionService<>(encoder);
+        // keep a few encoded images ahead of the writer without buffering the whole batch
+        int window = encoder.getMaximumPoolSize() * 2;
+        List<Future<EncodedEntry>> pending = new ArrayList<>();
+        int submitted = 0;
+        int done = 0;
+        try {
+            while (done < total) {
+                tracker.checkCancelled();
+                while (submitted < total && submitted - done < window) {
+                    pending.add(encoded.submit(new EncodeTask(activity.getContentResolver(), submitted, batch.get(submitted), options, batchDecodeBudget, tracker)));
+                    submitted++;
+                }
+                Future<EncodedEntry> next = encoded.take();
+                pending.remove(next); // don't hold on to encoded bytes once written
+                EncodedEntry result;
+                try {
+                    result = next.get();
+                } catch (ExecutionException e) {
+                    // EncodeTask reports its own failures, anything else is unexpected
+                    throw new IllegalStateException(e.getCause());
+                }
+                GalleryEntry entry = batch.get(result.index);
+                Exception error = result.error;
+                if (error == null) {
+                    uris[result.index] = saveToGalleryWithoutPermissionCheck(activity, trackedWriter(result.data, tracker),
+                            entry.getAlbumName(), entry.getFileName(), options, tracker);
+                    tracker.checkCancelled();
+                    if (uris[result.index] == null) error = new Exception("Save failure");
+                }
+                done++;
+                tracker.setItems(done, total);
+                postBatchProgress(listener, result.index, entry, error, done, total);
+            }
+        } finally {
+            for (Future<EncodedEntry> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return Arrays.asList(uris);
+    }
+
+    private void postBatchProgress(final BatchSaveListener listener, final int index, final GalleryEntry entry, final Exception error, final int done, final int total) {
+        if (listener == null) return;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (error != null) listener.itemFailure(index, entry, error);
+                listener.progress(done, total);
+            }
+        });
+    }
+
+    /**
+     * create several sizes of one image file, e.g. upload copy and thumbnails. The file is decoded
+     * once at the largest sample size that still satisfies every rendition, each smaller rendition
+     * is scaled from a larger one where that covers the same area, and the outputs are encoded in
+     * parallel. EXIF orientation is applied.
+     *
+     * @param file         image file
+     * @param renditions   sizes and formats to produce
+     * @param resampleMode resampling algorithm for each scale step
+     * @param listener     receives the encoded renditions as a List of byte[] in the order
+     *                     requested, on the main thread. Not called if cancelled
+     * @return handle that can be used to cancel or wait for the renditions
+     */
+    public Future<List<byte[]>> createRenditions(final File file, List<Rendition> renditions,
+                                                 final ResampleMode resampleMode, SuccessFailListener listener) {
+        final List<Rendition> requested = new ArrayList<>(renditions);
+        final Tracker tracker = new Tracker(MetricsSink.Operation.RENDITIONS, null, null, mainHandler);
+        ResultTask<List<byte[]>> task = new ResultTask<>(reported(tracker, new Callable<List<byte[]>>() {
+            @Override
+            public List<byte[]> call() throws Exception {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+                count(MetricsSink.Counter.BYTES_READ, file.length());
+                return encodeRenditions(options, new DecodeCall() {
+                    @Override
+                    public Bitmap decode(BitmapFactory.Options options) {
+                        return BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+                    }
+                }, readOrientation(file), requested, resampleMode, tracker);
+            }
+        }), listener);
+        submitSave(task);
+        return task;
+    }
+
+    /**
+     * same as {@link #createRenditions(File, List, ResampleMode, SuccessFailListener)} for an
+     * image uri
+     *
+     * @param context      context used to resolve the uri
+     * @param uri          image uri
+     * @param renditions   sizes and formats to produce
+     * @param resampleMode resampling algorithm for each scale step
+     * @param listener     receives the encoded renditions as a List of byte[] in the order
+     *                     requested, on the main thread. Not called if cancelled
+     * @return handle that can be used to cancel or wait for the renditions
+     */
+    public Future<List<byte[]>> createRenditions(Context context, final Uri uri, List<Rendition> renditions,
+                                                 final ResampleMode resampleMode, SuccessFailListener listener) {
+        final ContentResolver resolver = context.getContentResolver();
+        final List<Rendition> requested = new ArrayList<>(renditions);
+        final Tracker tracker = new Tracker(MetricsSink.Operation.RENDITIONS, null, null, mainHandler);
+        ResultTask<List<byte[]>> task = new ResultTask<>(reported(tracker, new Callable<List<byte[]>>() {
+            @Override
+            public List<byte[]> call() throws Exception {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                InputStream in = openUri(resolver, uri);
+                try {
+                    BitmapFactory.decodeStream(in, null, options);
+                } finally {
+                    in.close();
+                }
+                return encodeRenditions(options, new DecodeCall() {
+                    @Override
+                    public Bitmap decode(BitmapFactory.Options options) throws IOException {
+                        InputStream in = openUri(resolver, uri);
+                        try {
+                            return BitmapFactory.decodeStream(in, null, options);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }, readOrientation(resolver, uri), requested, resampleMode, tracker);
+            }
+        }), listener);
+        submitSave(task);
+        return task;
+    }
+
+    private List<byte[]> encodeRenditions(BitmapFactory.Options options, DecodeCall call, int orientation,
+                                          final List<Rendition> renditions, ResampleMode resampleMode,
+                                          final Tracker tracker) throws IOException, InterruptedException {
+        final int count = renditions.size();
+        if (count == 0) return new ArrayList<>();
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unable to decode image bounds");
+        }
+        // one decode, sampled for the most demanding rendition
+        final int width = Orientation.orientedWidth(options.outWidth, options.outHeight, orientation);
+        final int height = Orientation.orientedHeight(options.outWidth, options.outHeight, orientation);
+        int sampleSize = Integer.MAX_VALUE;
+        for (Rendition rendition : renditions) {
+            sampleSize = Math.min(sampleSize, calculatePowerOfTwoSampleSize(width, height,
+                    rendition.getWidth(), rendition.getHeight(), rendition.getScalingLogic()));
+        }
+        options.inSampleSize = sampleSize;
+        options.inJustDecodeBounds = false;
+        long start = System.nanoTime();
+        Bitmap sampled = decodeReusing(options, call);
+        if (sampled == null) throw new IOException("Unable to decode image");
+        tracker.record(OperationResult.Stage.DECODE, start);
+
+        // largest first so each rendition can be scaled from the smallest larger one
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                Rendition first = renditions.get(a);
+                Rendition second = renditions.get(b);
+                return Long.compare((long) second.getWidth() * second.getHeight(),
+                        (long) first.getWidth() * first.getHeight());
+            }
+        });
+        final Bitmap[] outputs = new Bitmap[count];
+        List<Future<byte[]>> encodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) encodes.add(null);
+        BoundedExecutor encoder = getEncodeExecutor();
+        try {
+            for (int produced = 0; produced < count; produced++) {
+                final int index = order[produced];
+                Rendition rendition = renditions.get(index);
+                Bitmap source = sampled;
+                int sourceOrientation = orientation;
+                for (int j = produced - 1; j >= 0; j--) {
+                    int candidate = order[j];
+                    if (canScaleFrom(outputs[candidate], renditions.get(candidate), rendition)) {
+                        source = outputs[candidate];
+                        sourceOrientation = ExifInterface.ORIENTATION_NORMAL;
+                        break;
+                    }
+                }
+                start = System.nanoTime();
+                outputs[index] = createScaledBitmap(source, rendition.getWidth(), rendition.getHeight(),
+                        rendition.getScalingLogic(), sourceOrientation, resampleMode);
+                tracker.record(OperationResult.Stage.SCALE, start);
+                final Bitmap output = outputs[index];
+                final EncodeOptions encodeOptions = rendition.getOptions();
+                encodes.set(index, encoder.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        long start = System.nanoTime();
+                        byte[] data = ImageEncoder.encodeToBytes(output, encodeOptions);
+                        tracker.record(OperationResult.Stage.ENCODE, start);
+                        return data;
+                    }
+                }));
+            }
+            List<byte[]> results = new ArrayList<>(count);
+            for (Future<byte[]> encode : encodes) {
+                try {
+                    results.add(encode.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            // bitmaps can only go back to the pool once no encode is reading them
+            for (Future<byte[]> encode : encodes) {
+                if (encode == null) continue;
+                encode.cancel(false);
+                try {
+                    encode.get();
+                } catch (Exception e) {
+                    // already reported or cancelled
+                }
+            }
+            for (Bitmap output : outputs) {
+                if (output != null && output != sampled) releaseBitmap(output);
+            }
+            releaseBitmap(sampled);
+        }
+    }
+
+    /**
+     * @return true if a rendition can be scaled from a previous rendition's bitmap: it has to
+     * cover the same area of the image and be at least as large as the new output
+     */
+    private static boolean canScaleFrom(Bitmap previous, Rendition previousRendition, Rendition rendition) {
+        if (previousRendition.getScalingLogic() == ScalingLogic.CROP) {
+            // a crop only contains the whole of another crop with the same aspect ratio
+            if (rendition.getScalingLogic() != ScalingLogic.CROP) return false;
+            if ((long) rendition.getWidth() * previousRendition.getHeight()
+                    != (long) rendition.getHeight() * previousRendition.getWidth()) return false;
+        }
+        Rect srcRect = calculateSrcRect(previous.getWidth(), previous.getHeight(), rendition.getWidth(),
+                rendition.getHeight(), rendition.getScalingLogic());
+        Rect dstRect = calculateDstRect(previous.getWidth(), previous.getHeight(), rendition.getWidth(),
+                rendition.getHeight(), rendition.getScalingLogic());
+        return srcRect.width() >= dstRect.width() && srcRect.height() >= dstRect.height();
+    }
+
+    private void submitSaveWithPermission(Activity activity, final ResultTask<?> task) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // saving to scoped storage on android 29+ does not require write_external
+            submitSave(task);
+        } else {
+            Dexter.withContext(activity)
+                    .withPermission(Manifest.permission.WRITE_EXTERNAL_STORAGE)
+                    .withListener(new PermissionListener() {
+                        @Override
+                        public void onPermissionGranted(PermissionGrantedResponse response) {
+                            submitSave(task);
+                        }
+
+                        @Override
+                        public void onPermissionDenied(PermissionDeniedResponse response) {
+                            task.fail(new SecurityException("Permission denied"));
+                        }
+
+                        @Override
+                        public void onPermissionRationaleShouldBeShown(PermissionRequest permission, PermissionToken token) {
+                            token.continuePermissionRequest();
+                        }
+                    }).check();
+        }
+    }
+
+    private synchronized BoundedExecutor getEncodeExecutor() {
+        if (encodeExecutor == null) {
+            int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+            encodeExecutor = new BoundedExecutor(cores, cores * 4, "ImageManager-encode");
+        }
+        return encodeExecutor;
+    }
+
+    /**
+     * helpers for {@link Resampler} stripes. Its threads time out when idle, so nothing lingers
+     * between scaling calls
+     */
+    private synchronized BoundedExecutor getResampleExecutor() {
+        if (resampleExecutor == null) {
+            int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+            resampleExecutor = new BoundedExecutor(cores, cores * 4, "ImageManager-resample");
+        }
+        return resampleExecutor;
+    }
+
+    private void submitSave(ResultTask<?> task) {
+        if (task.isDone()) return; // cancelled before the permission check came back
+        try {
+            getSaveExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            task.fail(e);
+        }
+    }
+
+    /**
+     * save on the calling thread and report the save to the metrics sink
+     */
+    private Uri saveToGalleryReported(Activity activity, Bitmap bitmap, String albumName, String fileName, EncodeOptions options) {
+        Tracker tracker = new Tracker(MetricsSink.Operation.SAVE, null, null, mainHandler);
+        Uri uri = saveToGalleryWithoutPermissionCheck(activity, bitmap, albumName, fileName, options, tracker);
+        tracker.report(uri != null);
+        return uri;
+    }
+
+    /**
+     * @param activity  context
+     * @param bitmap    bitmap to save
+     * @param albumName album name to save to in pictures directory
+     * @param fileName  name of file without extension
+     * @param options   output format and quality
+     * @param tracker   collects stage timings
+     * @return uri of file saved
+     */
+    private Uri saveToGalleryWithoutPermissionCheck(final Activity activity, final Bitmap bitmap, final String albumName, final String fileName, final EncodeOptions options, Tracker tracker) {
+        return saveToGalleryWithoutPermissionCheck(activity, new StreamWriter() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                ImageEncoder.encode(bitmap, options, out);
+            }
+        }, albumName, fileName, options, tracker);
+    }
+
+    /**
+     * @param activity  context
+     * @param writer    writes the encoded image
+     * @param albumName album name to save to in pictures directory
+     * @param fileName  name of file without extension
+     * @param options   format of the encoded image
+     * @param tracker   collects stage timings. MediaStore calls and the destination's write calls
+     *                  count as WRITE, the rest of the writer's time as ENCODE
+     * @return uri of file saved
+     */
+    private Uri saveToGalleryWithoutPermissionCheck(final Activity activity, final StreamWriter writer, final String albumName, final String fileName, final EncodeOptions options, Tracker tracker) {
+        // https://proandroiddev.com/working-with-scoped-storage-8a7e7cafea3
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ContentResolver resolver = activity.getContentResolver();
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+            contentValues.put(MediaStore.MediaColumns.MIME_TYPE, options.getMimeType());
+            contentValues.put(MediaStore.MediaColumns.RELATIVE_PATH, "Pictures/" + albumName);
+            // keep the entry hidden from other apps until it is fully written
+            contentValues.put(MediaStore.MediaColumns.IS_PENDING, 1);
+            Uri collection = MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY);
+            long start = System.nanoTime();
+            Uri uri = resolver.insert(collection, contentValues);
+            tracker.record(OperationResult.Stage.WRITE, start);
+            if (uri != null) {
+                try {
+                    start = System.nanoTime();
+                    OutputStream out = resolver.openOutputStream(uri);
+                    if (out == null) throw new IOException("Unable to open " + uri);
+                    tracker.record(OperationResult.Stage.WRITE, start);
+                    writeMetered(writer, out, tracker);
+                    start = System.nanoTime();
+                    ContentValues published = new ContentValues();
+                    published.put(MediaStore.MediaColumns.IS_PENDING, 0);
+                    resolver.update(uri, published, null, null);
+                    tracker.record(OperationResult.Stage.WRITE, start);
+                    return uri;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    // don't leave a half written entry behind
+                    resolver.delete(uri, null, null);
+                }
+            }
+            return null;
+        } else {
+            return saveToGalleryLegacyWithoutPermissionCheck(activity, writer, albumName, fileName, options, tracker);
+        }
+    }
+
+    /**
+     * run the writer against out and close it, splitting the time into ENCODE and WRITE
+     */
+    private static void writeMetered(StreamWriter writer, OutputStream out, Tracker tracker) throws IOException {
+        MeteredOutputStream metered = new MeteredOutputStream(out);
+        long start = System.nanoTime();
+        try {
+            writer.writeTo(metered);
+        } finally {
+            metered.close();
+            tracker.add(OperationResult.Stage.ENCODE, System.nanoTime() - start - metered.getNanos());
+            tracker.add(OperationResult.Stage.WRITE, metered.getNanos());
+            count(MetricsSink.Counter.BYTES_WRITTEN, metered.getBytes());
+        }
+    }
+
+    /**
+     * WARNING - does not work on android 10+
+     *
+     * @param activity  context
+     * @param writer    writes the encoded image
+     * @param albumName album name to save to in pictures directory
+     * @param fileName  name of file without extension
+     * @param options   format of the encoded image
+     * @param tracker   collects stage timings
+     * @return uri of file saved
+     */
+    private Uri saveToGalleryLegacyWithoutPermissionCheck(Activity activity, StreamWriter writer, String albumName, String fileName, EncodeOptions options, Tracker tracker) {
+        // create image folder if does not exist
+        File imagesFolder = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), albumName);
+        if (!imagesFolder.mkdirs() && !imagesFolder.isDirectory()) {
+            String state = Environment.getExternalStorageState();
+            if (Environment.MEDIA_MOUNTED.equals(state)) {
+                // failed to create and is not a directory. Something went wrong...
+                return null;
+            }
+        }
+
+        // delete image if already exists so FOS can create a new one
+        File image = new File(imagesFolder, fileName + options.getExtension());
+        if (image.exists()) {
+            // image already exists, deleting to start from clean state
+            if (!image.delete()) {
+                // failed to delete
+                return null;
+            }
+        }
+
+        // write the encoded image to file stream. FOS creates file if does not exist
+        try {
+            writeMetered(writer, new FileOutputStream(image), tracker);
+        } catch (Exception e) {
+            e.printStackTrace();
+            image.delete();
+            return null;
+        }
+
+        // get Uri from saved image
+        Uri uriSavedImage = Uri.fromFile(image);
+
+        // media scan the new file so it shows up in the gallery
+        Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
+        mediaScanIntent.setData(uriSavedImage);
+        activity.sendBroadcast(mediaScanIntent);
+
+        return uriSavedImage;
+    }
+
+    /**
+     * writes an encoded image to the destination stream of a gallery save
+     */
+    private interface StreamWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * write encoded bytes in chunks, reporting progress and checking for cancellation in between
+     */
+    private static StreamWriter trackedWriter(final byte[] data, final Tracker tracker) {
+        return new StreamWriter() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                for (int offset = 0; offset < data.length; offset += WRITE_CHUNK_SIZE) {
+                    tracker.checkCancelled();
+                    int length = Math.min(WRITE_CHUNK_SIZE, data.length - offset);
+                    out.write(data, offset, length);
+                    tracker.addBytes(length);
+                }
+            }
+        };
+    }
+
+    /**
+     * report the operation to the metrics sink once the call returns or throws
+     */
+    private static <T> Callable<T> reported(final Tracker tracker, final Callable<T> call) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                boolean success = false;
+                try {
+                    T result = call.call();
+                    success = true;
+                    return result;
+                } finally {
+                    tracker.report(success);
+                }
+            }
+        };
+    }
+
+    private static <T> SuccessFailListener resultAdapter(final ResultListener<T> listener) {
+        if (listener == null) return null;
+        return new SuccessFailListener() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void success(Object object) {
+                listener.onSuccess((OperationResult<T>) object);
+            }
+
+            @Override
+            public void failure(Object object) {
+                listener.onFailure(object instanceof Exception ? (Exception) object : new Exception(String.valueOf(object)));
+            }
+        };
+    }
+
+    /**
+     * completion and batch level failures (permission denied, rejected, interrupted) go through
+     * the task so they reach the listener however the batch ends
+     */
+    private static SuccessFailListener batchAdapter(final BatchSaveListener listener) {
+        if (listener == null) return null;
+        return new SuccessFailListener() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void success(Object object) {
+                listener.complete((List<Uri>) object);
+            }
+
+            @Override
+            public void failure(Object object) {
+                listener.failure(object instanceof Exception ? (Exception) object : new Exception(String.valueOf(object)));
+            }
+        };
+    }
+
+    /**
+     * Collects stage timings and progress of one operation and checks its cancellation token.
+     * Stages can be recorded from several threads, progress is posted to the main thread and the
+     * finished operation is reported to the metrics sink.
+     */
+    private static class Tracker {
+        private final MetricsSink.Operation operation;
+        private final CancellationToken token;
+        private final ResultListener<?> listener;
+        private final Handler handler;
+        private final long started = System.nanoTime();
+        private final long[] stageNanos = new long[OperationResult.Stage.values().length];
+        private long bytesWritten;
+        private long totalBytes = -1;
+        private int itemsDone;
+        private int totalItems;
+
+        Tracker(MetricsSink.Operation operation, CancellationToken token, ResultListener<?> listener, Handler handler) {
+            this.operation = operation;
+            this.token = token;
+            this.listener = listener;
+            this.handler = handler;
+        }
+
+        void checkCancelled() {
+            if (token != null) token.throwIfCancelled();
+        }
+
+        boolean isCancelled() {
+            return token != null && token.isCancelled();
+        }
+
+        synchronized void record(OperationResult.Stage stage, long startNanos) {
+            stageNanos[stage.ordinal()] += System.nanoTime() - startNanos;
+        }
+
+        synchronized void add(OperationResult.Stage stage, long nanos) {
+            if (nanos > 0) stageNanos[stage.ordinal()] += nanos;
+        }
+
+        void setTotalBytes(long total) {
+            synchronized (this) {
+                totalBytes = total;
+            }
+        }
+
+        void addBytes(long count) {
+            synchronized (this) {
+                bytesWritten += count;
+            }
+            postProgress();
+        }
+
+        void setItems(int done, int total) {
+            synchronized (this) {
+                itemsDone = done;
+                totalItems = total;
+            }
+            postProgress();
+        }
+
+        synchronized <T> OperationResult<T> finish(T value) {
+            return new OperationResult<>(value, stageNanos, System.nanoTime() - started);
+        }
+
+        /**
+         * hand the operation's timings to the metrics sink, if one is set
+         */
+        void report(boolean success) {
+            MetricsSink sink = metricsSink;
+            if (sink == null) return;
+            long[] stages;
+            synchronized (this) {
+                stages = stageNanos.clone();
+            }
+            sink.onOperation(operation, stages, System.nanoTime() - started, success);
+            sampleMemory(sink);
+        }
+
+        private void postProgress() {
+            if (listener == null) return;
+            final Progress progress;
+            synchronized (this) {
+                progress = new Progress(bytesWritten, totalBytes, itemsDone, totalItems);
+            }
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onProgress(progress);
+                }
+            });
+        }
+    }
+
+    /**
+     * Encodes one batch entry. Uri entries are decoded at full size, but only as many at once as
+     * fit in the decode budget, so a batch of large photos can't exhaust memory.
+     */
+    private static class EncodeTask implements Callable<EncodedEntry> {
+        private final ContentResolver resolver;
+        private final int index;
+        private final GalleryEntry entry;
+        private final EncodeOptions options;
+        private final Semaphore decodeBudget;
+        private final Tracker tracker;
+
+        EncodeTask(ContentResolver resolver, int index, GalleryEntry entry, EncodeOptions options, Semaphore decodeBudget, Tracker tracker) {
+            this.resolver = resolver;
+            this.index = index;
+            this.entry = entry;
+            this.options = options;
+            this.decodeBudget = decodeBudget;
+            this.tracker = tracker;
+        }
+
+        @Override
+        public EncodedEntry call() {
+            Bitmap bitmap = entry.getBitmap();
+            boolean decoded = false;
+            int permits = 0;
+            try {
+                tracker.checkCancelled();
+                long start = System.nanoTime();
+                if (bitmap == null) {
+                    if (entry.getSource() == null) throw new IllegalArgumentException("Entry has no bitmap or source");
+                    BitmapFactory.Options bounds = new BitmapFactory.Options();
+                    bounds.inJustDecodeBounds = true;
+                    decode(bounds);
+                    if (bounds.outWidth <= 0 || bounds.outHeight <= 0) throw new IOException("Unable to decode " + entry.getSource());
+                    BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+                    decodeOptions.inSampleSize = 1;
+                    long kib = (long) bounds.outWidth * bounds.outHeight * 4 / 1024 + 1;
+                    // an image larger than the whole budget is sampled down instead of running out of memory
+                    while (kib / ((long) decodeOptions.inSampleSize * decodeOptions.inSampleSize) > BATCH_DECODE_BUDGET_KIB) {
+                        decodeOptions.inSampleSize *= 2;
+                    }
+                    int needed = (int) Math.max(1, kib / ((long) decodeOptions.inSampleSize * decodeOptions.inSampleSize));
+                    decodeBudget.acquire(needed);
+                    permits = needed;
+                    bitmap = decode(decodeOptions);
+                    if (bitmap == null) throw new IOException("Unable to decode " + entry.getSource());
+                    decoded = true;
+                    tracker.record(OperationResult.Stage.DECODE, start);
+                    start = System.nanoTime();
+                }
+                byte[] data = ImageEncoder.encodeToBytes(bitmap, options);
+                tracker.record(OperationResult.Stage.ENCODE, start);
+                return new EncodedEntry(index, data, null);
+            } catch (Exception e) {
+                return new EncodedEntry(index, null, e);
+            } finally {
+                if (decoded) bitmap.recycle();
+                if (permits > 0) decodeBudget.release(permits);
+            }
+        }
+
+        private Bitmap decode(BitmapFactory.Options options) throws IOException {
+            InputStream in = resolver.openInputStream(entry.getSource());
+            if (in == null) throw new IOException("Unable to open " + entry.getSource());
+            try {
+                return BitmapFactory.decodeStream(new BufferedInputStream(in, DECODE_BUFFER_SIZE), null, options);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private static class EncodedEntry {
+        final int index;
+        final byte[] data;
+        final Exception error;
+
+        EncodedEntry(int index, byte[] data, Exception error) {
+            this.index = index;
+            this.data = data;
+            this.error = error;
+        }
+    }
+
+    public static HashMap<String, String> getAllExifData(File file) throws IOException {
+        ExifInterface exifInterface = new ExifInterface(file.getAbsolutePath());
+        return getAllExifData(exifInterface);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.N)
+    public static HashMap<String, String> getAllExifData(InputStream inputStream) throws IOException {
+        ExifInterface exifInterface = new ExifInterface(inputStream);
+        return getAllExifData(exifInterface);
+    }
+
+    public static HashMap<String, String> getAllExifData(ExifInterface exifInterface) throws IOException {
+        HashMap<String, String> data = new HashMap<>();
+        for (String key : ALL_EXIF_ATTRIBUTES) {
+            String valueForKey = exifInterface.getAttribute(key);
+            if (valueForKey != null && !valueForKey.isEmpty()) data.put(key, valueForKey);
+        }
         return data;
     }
 
-    public static void stripSensitiveExifData(File file) {
+    /**
+     * read only the requested EXIF tags of a JPEG without decoding pixels or reading past the
+     * EXIF segment. Much faster than {@link #getAllExifData(File)} when indexing many files.
+     *
+     * @param file JPEG file
+     * @param tags tag names, see {@link com.appstronautstudios.imagemanager.exif.ExifTags} for
+     *             predefined groups
+     * @return requested tags present in the file
+     * @throws IOException if the file can't be read or is not a JPEG
+     */
+    public static ExifData readExifData(File file, Set<String> tags) throws IOException {
+        return ExifReader.read(file, tags);
+    }
+
+    /**
+     * see {@link #readExifData(File, Set)}. The stream is not closed.
+     *
+     * @param inputStream JPEG stream
+     * @param tags        tag names
+     * @return requested tags present in the stream
+     * @throws IOException if the stream can't be read or is not a JPEG
+     */
+    public static ExifData readExifData(InputStream inputStream, Set<String> tags) throws IOException {
+        return ExifReader.read(inputStream, tags);
+    }
+
+    /**
+     * read EXIF tags from every JPEG under a directory in parallel. Results are reported as they
+     * are read, from scanner worker threads.
+     *
+     * @param root        directory to walk
+     * @param tags        tag names to read
+     * @param parallelism number of concurrent reads
+     * @param listener    per file result, per file error and completion listener
+     * @return handle to cancel the scan
+     */
+    public static Future<Integer> scanExifData(File root, Set<String> tags, int parallelism, ExifScanner.Listener listener) {
+        return new ExifScanner(parallelism, tags).scanDirectory(root, listener);
+    }
+
+    /**
+     * read EXIF tags from every JPEG matching a MediaStore query in parallel. Results are reported
+     * as they are read, from scanner worker threads. On android 10+ GPS tags are redacted unless
+     * the app holds ACCESS_MEDIA_LOCATION.
+     *
+     * @param context       context
+     * @param collection    MediaStore collection, e.g. {@code MediaStore.Images.Media.EXTERNAL_CONTENT_URI}
+     * @param selection     optional where clause
+     * @param selectionArgs optional where arguments
+     * @param tags          tag names to read
+     * @param parallelism   number of concurrent reads
+     * @param listener      per image result, per image error and completion listener. Sources are
+     *                      {@link MediaStoreSources.UriSource}
+     * @return handle to cancel the scan
+     */
+    public static Future<Integer> scanExifData(Context context, Uri collection, String selection, String[] selectionArgs,
+                                               Set<String> tags, int parallelism, ExifScanner.Listener listener) {
+        MediaStoreSources sources = new MediaStoreSources(context.getContentResolver(), collection, selection, selectionArgs);
+        return new ExifScanner(parallelism, tags).scan(sources, listener);
+    }
+
+    /**
+     * remove location, author and device identifying metadata from an image file in place. JPEGs
+     * are rewritten in a single streaming pass without re-encoding, other formats fall back to
+     * ExifInterface.
+     * <p>
+     * JPEGs are scrubbed with {@link ScrubPolicy#SENSITIVE}, which removes more than earlier
+     * versions did: besides GPS, Artist, Make, Model and MakerNote it also drops Copyright,
+     * Software, UserComment, ImageUniqueID, CameraOwnerName, body and lens serial numbers and
+     * every XMP segment. Other formats still lose only GPS, Artist, Make, Model and MakerNote. Use
+     * {@link ExifScrubber#scrub(File, ScrubPolicy)} with a custom policy to keep any of these.
+     *
+     * @param file image file
+     */
+    public static void stripSensitiveExifData(File file) {
+        try {
+            if (ExifScrubber.isJpeg(file)) {
+                ExifScrubber.scrub(file, ScrubPolicy.SENSITIVE);
+                return;
+            }
+            boolean androidN = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
+            ExifInterface exifInterface = new ExifInterface(file.getAbsolutePath());
+            // author
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_ARTIST, null);
+            // location information
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_ALTITUDE, null);
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_ALTITUDE_REF, null);
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_DATESTAMP, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_AREA_INFORMATION, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_BEARING, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_BEARING_REF, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_DISTANCE, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_DISTANCE_REF, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_LATITUDE, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_LATITUDE_REF, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_LONGITUDE, null);
+            if (androidN)
+                exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_LONGITUDE_REF, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DIFFERENTIAL, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DOP, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_IMG_DIRECTION, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_IMG_DIRECTION_REF, null);
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_LATITUDE, null);
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_LATITUDE_REF, null);
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_LONGITUDE, null);
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_LONGITUDE_REF, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_MAP_DATUM, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_MEASURE_MODE, null);
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_PROCESSING_METHOD, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_SATELLITES, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_SPEED, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_SPEED_REF, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_STATUS, null);
+            exifInterface.setAttribute(ExifInterface.TAG_GPS_TIMESTAMP, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_TRACK, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_TRACK_REF, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_VERSION_ID, null);
+            // device
+            exifInterface.setAttribute(ExifInterface.TAG_MAKE, null);
+            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_MAKER_NOTE, null);
+            exifInterface.setAttribute(ExifInterface.TAG_MODEL, null);
+            exifInterface.saveAttributes();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * remove metadata from a JPEG file in place, in a single streaming pass without re-encoding
+     *
+     * @param file   JPEG file
+     * @param policy metadata to remove, e.g. {@link ScrubPolicy#SENSITIVE}
+     * @throws IOException if the file can't be rewritten or is not a JPEG
+     */
+    public static void stripExifData(File file, ScrubPolicy policy) throws IOException {
+        ExifScrubber.scrub(file, policy);
+    }
+
+    /**
+     * copy a JPEG from a uri to a stream without the metadata removed by the policy. The output
+     * stream is not closed.
+     *
+     * @param context context used to resolve the uri
+     * @param source  JPEG uri
+     * @param out     destination
+     * @param policy  metadata to remove
+     * @throws IOException if reading or writing fails or the source is not a JPEG
+     */
+    public static void stripExifData(Context context, Uri source, OutputStream out, ScrubPolicy policy) throws IOException {
+        InputStream in = openUri(context.getContentResolver(), source);
+        try {
+            ExifScrubber.scrub(in, out, policy);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * remove metadata from many JPEG files in place, in parallel. Blocks until done, call from a
+     * background thread.
+     *
+     * @param files       JPEG files
+     * @param policy      metadata to remove
+     * @param parallelism number of files processed at once
+     * @return files that failed with their error, empty if all succeeded
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static Map<File, Exception> stripExifData(Collection<File> files, ScrubPolicy policy, int parallelism) throws InterruptedException {
+        return ExifScrubber.scrubAll(files, policy, parallelism);
+    }
+
+    /**
+     * Utility function for creating a scaled version of an existing bitmap
+     *
+     * @param unscaledBitmap Bitmap to scale
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return New scaled bitmap object
+     */
+    public static Bitmap createScaledBitmap(Bitmap unscaledBitmap, int dstWidth, int dstHeight,
+                                            ScalingLogic scalingLogic) {
+        return createScaledBitmap(unscaledBitmap, dstWidth, dstHeight, scalingLogic,
+                ExifInterface.ORIENTATION_NORMAL);
+    }
+
+    /**
+     * Utility function for creating a scaled and correctly oriented version of an existing bitmap.
+     * Rotation and flipping are folded into the scaling transform so the result comes out of a
+     * single draw without an intermediate full size copy. Destination sizes are in oriented
+     * coordinates, i.e. as the image should be displayed.
+     *
+     * @param unscaledBitmap Bitmap to scale, as stored in the file
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param orientation EXIF orientation of the source, one of ExifInterface.ORIENTATION_*
+     * @return New scaled bitmap object
+     */
+    public static Bitmap createScaledBitmap(Bitmap unscaledBitmap, int dstWidth, int dstHeight,
+                                            ScalingLogic scalingLogic, int orientation) {
+        return drawScaledBitmap(unscaledBitmap, dstWidth, dstHeight, scalingLogic, orientation,
+                Bitmap.Config.ARGB_8888);
+    }
+
+    private static Bitmap drawScaledBitmap(Bitmap unscaledBitmap, int dstWidth, int dstHeight,
+                                           ScalingLogic scalingLogic, int orientation, Bitmap.Config config) {
+        final int srcWidth = unscaledBitmap.getWidth();
+        final int srcHeight = unscaledBitmap.getHeight();
+        Rect dstRect = calculateDstRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic,
+                orientation);
+        Bitmap scaledBitmap = obtainBitmap(dstRect.width(), dstRect.height(), config);
+        Canvas canvas = new Canvas(scaledBitmap);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        Matrix matrix = orientationMatrix(orientation, srcWidth, srcHeight);
+        if (matrix == null) {
+            Rect srcRect = calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic);
+            canvas.drawBitmap(unscaledBitmap, srcRect, dstRect, paint);
+        } else {
+            // stored -> displayed, then the displayed source rect -> destination rect
+            Rect orientedSrcRect = calculateSrcRect(Orientation.orientedWidth(srcWidth, srcHeight, orientation),
+                    Orientation.orientedHeight(srcWidth, srcHeight, orientation), dstWidth, dstHeight, scalingLogic);
+            Matrix scale = new Matrix();
+            scale.setRectToRect(new RectF(orientedSrcRect), new RectF(dstRect), Matrix.ScaleToFit.FILL);
+            matrix.postConcat(scale);
+            canvas.drawBitmap(unscaledBitmap, matrix, paint);
+        }
+
+        return scaledBitmap;
+    }
+
+    /**
+     * Utility function for creating a scaled and correctly oriented version of an existing bitmap
+     * with a choice of resampling algorithm. {@link ResampleMode#BILINEAR} is the single draw of
+     * {@link #createScaledBitmap(Bitmap, int, int, ScalingLogic, int)}, the other modes avoid
+     * aliasing on large reductions. AREA_AVERAGE and LANCZOS3 copy the source region to an int
+     * array and filter it on all cores.
+     *
+     * @param unscaledBitmap Bitmap to scale, as stored in the file
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param orientation EXIF orientation of the source, one of ExifInterface.ORIENTATION_*
+     * @param resampleMode Resampling algorithm
+     * @return New scaled bitmap object
+     */
+    public static Bitmap createScaledBitmap(Bitmap unscaledBitmap, int dstWidth, int dstHeight,
+                                            ScalingLogic scalingLogic, int orientation,
+                                            ResampleMode resampleMode) {
+        return createScaledBitmap(unscaledBitmap, dstWidth, dstHeight, scalingLogic, orientation,
+                resampleMode, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Same as {@link #createScaledBitmap(Bitmap, int, int, ScalingLogic, int, ResampleMode)} with
+     * the pixel format of the result picked from the source. See {@link ConfigLogic}
+     *
+     * @param unscaledBitmap Bitmap to scale, as stored in the file
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param orientation EXIF orientation of the source, one of ExifInterface.ORIENTATION_*
+     * @param resampleMode Resampling algorithm
+     * @param configLogic How to pick the pixel format
+     * @return New scaled bitmap object
+     */
+    public static Bitmap createScaledBitmap(Bitmap unscaledBitmap, int dstWidth, int dstHeight,
+                                            ScalingLogic scalingLogic, int orientation,
+                                            ResampleMode resampleMode, ConfigLogic configLogic) {
+        return createScaledBitmap(unscaledBitmap, dstWidth, dstHeight, scalingLogic, orientation,
+                resampleMode, resolveConfig(unscaledBitmap.hasAlpha(), configLogic));
+    }
+
+    /**
+     * Same as {@link #createScaledBitmap(Bitmap, int, int, ScalingLogic, int, ResampleMode)} with
+     * a given pixel format. RGB_565 drops alpha and ALPHA_8 keeps only alpha. HARDWARE results
+     * are scaled in software and then copied to graphics memory.
+     *
+     * @param unscaledBitmap Bitmap to scale, as stored in the file
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param orientation EXIF orientation of the source, one of ExifInterface.ORIENTATION_*
+     * @param resampleMode Resampling algorithm
+     * @param config Pixel format of the result
+     * @return New scaled bitmap object
+     */
+    public static Bitmap createScaledBitmap(Bitmap unscaledBitmap, int dstWidth, int dstHeight,
+                                            ScalingLogic scalingLogic, int orientation,
+                                            ResampleMode resampleMode, Bitmap.Config config) {
+        Bitmap.Config drawConfig = softwareConfig(config);
+        Bitmap scaled;
+        switch (resampleMode) {
+            case PROGRESSIVE:
+                scaled = createProgressiveScaledBitmap(unscaledBitmap, dstWidth, dstHeight, scalingLogic,
+                        orientation, drawConfig);
+                break;
+            case AREA_AVERAGE:
+            case LANCZOS3:
+                scaled = createResampledBitmap(unscaledBitmap, dstWidth, dstHeight, scalingLogic,
+                        orientation, resampleMode, drawConfig);
+                break;
+            default:
+                scaled = drawScaledBitmap(unscaledBitmap, dstWidth, dstHeight, scalingLogic, orientation,
+                        drawConfig);
+                break;
+        }
+        return isHardware(config) ? toHardware(scaled) : scaled;
+    }
+
+    /**
+     * @param hasAlpha    whether the source can contain transparency
+     * @param configLogic how to pick the pixel format, null for ARGB_8888
+     * @return pixel format for a result
+     */
+    private static Bitmap.Config resolveConfig(boolean hasAlpha, ConfigLogic configLogic) {
+        if (configLogic == null) return Bitmap.Config.ARGB_8888;
+        if (configLogic == ConfigLogic.DISPLAY && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return Bitmap.Config.HARDWARE;
+        }
+        return hasAlpha ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+    }
+
+    /**
+     * HARDWARE is not defined before android 8, check the version before comparing
+     */
+    private static boolean isHardware(Bitmap.Config config) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE;
+    }
+
+    /**
+     * @return config to draw in, hardware bitmaps can't be drawn into
+     */
+    private static Bitmap.Config softwareConfig(Bitmap.Config config) {
+        return config == null || isHardware(config) ? Bitmap.Config.ARGB_8888 : config;
+    }
+
+    /**
+     * move a software bitmap to graphics memory, returning the software bitmap to the pool
+     */
+    private static Bitmap toHardware(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return bitmap;
+        Bitmap hardware = bitmap.copy(Bitmap.Config.HARDWARE, false);
+        if (hardware == null) return bitmap;
+        releaseBitmap(bitmap);
+        return hardware;
+    }
+
+    /**
+     * halve the source region with filtered draws until it is within 2x of the destination, each
+     * draw at exactly half size averages 2x2 pixels. The last step is a normal oriented scale.
+     */
+    private static Bitmap createProgressiveScaledBitmap(Bitmap unscaledBitmap, int dstWidth, int dstHeight,
+                                                        ScalingLogic scalingLogic, int orientation,
+                                                        Bitmap.Config config) {
+        final int srcWidth = unscaledBitmap.getWidth();
+        final int srcHeight = unscaledBitmap.getHeight();
+        Rect dstRect = calculateDstRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic, orientation);
+        Rect srcRect = calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic, orientation);
+        // destination size in stored orientation
+        final int targetWidth = Orientation.isTransposed(orientation) ? dstRect.height() : dstRect.width();
+        final int targetHeight = Orientation.isTransposed(orientation) ? dstRect.width() : dstRect.height();
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        Bitmap current = unscaledBitmap;
+        while (srcRect.width() >= targetWidth * 2 && srcRect.height() >= targetHeight * 2) {
+            Bitmap half = obtainBitmap(srcRect.width() / 2, srcRect.height() / 2, Bitmap.Config.ARGB_8888);
+            Rect halfRect = new Rect(0, 0, half.getWidth(), half.getHeight());
+            new Canvas(half).drawBitmap(current, srcRect, halfRect, paint);
+            if (current != unscaledBitmap) releaseBitmap(current);
+            current = half;
+            srcRect = halfRect;
+        }
+        Bitmap scaled = drawScaledBitmap(current, dstWidth, dstHeight, scalingLogic, orientation, config);
+        if (current != unscaledBitmap) releaseBitmap(current);
+        return scaled;
+    }
+
+    /**
+     * filter the source region with a {@link Resampler} kernel, then apply the orientation to the
+     * destination sized result
+     */
+    private static Bitmap createResampledBitmap(final Bitmap unscaledBitmap, int dstWidth, int dstHeight,
+                                                ScalingLogic scalingLogic, int orientation,
+                                                ResampleMode resampleMode, Bitmap.Config config) {
+        final int srcWidth = unscaledBitmap.getWidth();
+        final int srcHeight = unscaledBitmap.getHeight();
+        Rect dstRect = calculateDstRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic, orientation);
+        Rect srcRect = calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic, orientation);
+        final int targetWidth = Orientation.isTransposed(orientation) ? dstRect.height() : dstRect.width();
+        final int targetHeight = Orientation.isTransposed(orientation) ? dstRect.width() : dstRect.height();
+
+        // the resampler pulls source rows a stripe at a time instead of one copy of the region
+        final int left = srcRect.left;
+        final int top = srcRect.top;
+        final int regionWidth = srcRect.width();
+        RowSource source = new RowSource() {
+            @Override
+            public void readRows(int y, int count, int[] dst, int offset) {
+                unscaledBitmap.getPixels(dst, offset, regionWidth, left, top + y, regionWidth, count);
+            }
+        };
+        int[] dst = new int[targetWidth * targetHeight];
+        Resampler.resample(source, regionWidth, srcRect.height(), dst, targetWidth, targetHeight,
+                resampleMode, INSTANCE.getResampleExecutor());
+        Bitmap resampled = obtainBitmap(targetWidth, targetHeight, config);
+        resampled.setPixels(dst, 0, targetWidth, 0, 0, targetWidth, targetHeight);
+
+        Matrix matrix = orientationMatrix(orientation, targetWidth, targetHeight);
+        if (matrix == null) return resampled;
+        // pixel exact rotation or flip, no filtering needed
+        Bitmap oriented = obtainBitmap(dstRect.width(), dstRect.height(), config);
+        new Canvas(oriented).drawBitmap(resampled, matrix, null);
+        releaseBitmap(resampled);
+        return oriented;
+    }
+
+    /**
+     * Decode an image file directly to the requested size. The image is sub-sampled while decoding
+     * so memory use is proportional to the destination size rather than the source size. With
+     * {@link ScalingLogic#CROP} only the cropped region of the file is decoded when the format
+     * supports it. EXIF orientation is applied as part of the scaling, the destination size is
+     * the displayed size.
+     *
+     * @param file Image file to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return New scaled bitmap object
+     * @throws IOException if the file can't be read or decoded
+     */
+    public static Bitmap decodeScaled(final File file, int dstWidth, int dstHeight,
+                                      ScalingLogic scalingLogic) throws IOException {
+        return decodeScaled(file, dstWidth, dstHeight, scalingLogic, ResampleMode.BILINEAR);
+    }
+
+    /**
+     * Same as {@link #decodeScaled(File, int, int, ScalingLogic)} with a choice of resampling
+     * algorithm for the scale after the sub-sampled decode
+     *
+     * @param file Image file to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param resampleMode Resampling algorithm
+     * @return New scaled bitmap object
+     * @throws IOException if the file can't be read or decoded
+     */
+    public static Bitmap decodeScaled(final File file, int dstWidth, int dstHeight,
+                                      ScalingLogic scalingLogic, ResampleMode resampleMode) throws IOException {
+        return decodeScaled(file, dstWidth, dstHeight, scalingLogic, resampleMode, null);
+    }
+
+    /**
+     * Same as {@link #decodeScaled(File, int, int, ScalingLogic, ResampleMode)} with the pixel
+     * format of the result picked from the decoded image. See {@link ConfigLogic}
+     *
+     * @param file Image file to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param resampleMode Resampling algorithm
+     * @param configLogic How to pick the pixel format, null for ARGB_8888
+     * @return New scaled bitmap object
+     * @throws IOException if the file can't be read or decoded
+     */
+    public static Bitmap decodeScaled(final File file, int dstWidth, int dstHeight, ScalingLogic scalingLogic,
+                                      ResampleMode resampleMode, ConfigLogic configLogic) throws IOException {
+        Tracker tracker = new Tracker(MetricsSink.Operation.DECODE, null, null, null);
+        boolean success = false;
+        try {
+            long start = System.nanoTime();
+            final int orientation = readOrientation(file);
+            Bitmap sampled = decodeSampled(file, dstWidth, dstHeight, scalingLogic, orientation);
+            tracker.record(OperationResult.Stage.DECODE, start);
+            Bitmap scaled = finishSampledDecode(sampled, dstWidth, dstHeight, scalingLogic, orientation, resampleMode,
+                    configLogic, tracker);
+            success = true;
+            return scaled;
+        } finally {
+            tracker.report(success);
+        }
+    }
+
+    /**
+     * Decode an image uri directly to the requested size. See
+     * {@link #decodeScaled(File, int, int, ScalingLogic)}
+     *
+     * @param context Context used to resolve the uri
+     * @param uri Image uri to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return New scaled bitmap object
+     * @throws IOException if the uri can't be read or decoded
+     */
+    public static Bitmap decodeScaled(Context context, final Uri uri, int dstWidth, int dstHeight,
+                                      ScalingLogic scalingLogic) throws IOException {
+        return decodeScaled(context, uri, dstWidth, dstHeight, scalingLogic, ResampleMode.BILINEAR);
+    }
+
+    /**
+     * Same as {@link #decodeScaled(Context, Uri, int, int, ScalingLogic)} with a choice of
+     * resampling algorithm for the scale after the sub-sampled decode
+     *
+     * @param context Context used to resolve the uri
+     * @param uri Image uri to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param resampleMode Resampling algorithm
+     * @return New scaled bitmap object
+     * @throws IOException if the uri can't be read or decoded
+     */
+    public static Bitmap decodeScaled(Context context, final Uri uri, int dstWidth, int dstHeight,
+                                      ScalingLogic scalingLogic, ResampleMode resampleMode) throws IOException {
+        return decodeScaled(context, uri, dstWidth, dstHeight, scalingLogic, resampleMode, null);
+    }
+
+    /**
+     * Same as {@link #decodeScaled(Context, Uri, int, int, ScalingLogic, ResampleMode)} with the
+     * pixel format of the result picked from the decoded image. See {@link ConfigLogic}
+     *
+     * @param context Context used to resolve the uri
+     * @param uri Image uri to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param resampleMode Resampling algorithm
+     * @param configLogic How to pick the pixel format, null for ARGB_8888
+     * @return New scaled bitmap object
+     * @throws IOException if the uri can't be read or decoded
+     */
+    public static Bitmap decodeScaled(Context context, final Uri uri, int dstWidth, int dstHeight,
+                                      ScalingLogic scalingLogic, ResampleMode resampleMode,
+                                      ConfigLogic configLogic) throws IOException {
+        final ContentResolver resolver = context.getContentResolver();
+        Tracker tracker = new Tracker(MetricsSink.Operation.DECODE, null, null, null);
+        boolean success = false;
+        try {
+            long start = System.nanoTime();
+            final int orientation = readOrientation(resolver, uri);
+            if (scalingLogic == ScalingLogic.CROP) {
+                TileDecoder decoder = openTileDecoder(resolver, uri);
+                if (decoder != null) {
+                    try {
+                        Bitmap cropped = decodeCropped(decoder, dstWidth, dstHeight, orientation, resampleMode,
+                                configLogic, tracker, start);
+                        success = true;
+                        return cropped;
+                    } finally {
+                        decoder.close();
+                    }
+                }
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            InputStream in = openUri(resolver, uri);
+            try {
+                BitmapFactory.decodeStream(in, null, options);
+            } finally {
+                in.close();
+            }
+            prepareSampledDecode(options, dstWidth, dstHeight, scalingLogic, orientation);
+            Bitmap sampled = decodeReusing(options, new DecodeCall() {
+                @Override
+                public Bitmap decode(BitmapFactory.Options options) throws IOException {
+                    InputStream in = openUri(resolver, uri);
+                    try {
+                        return BitmapFactory.decodeStream(in, null, options);
+                    } finally {
+                        in.close();
+                    }
+                }
+            });
+            tracker.record(OperationResult.Stage.DECODE, start);
+            Bitmap scaled = finishSampledDecode(sampled, dstWidth, dstHeight, scalingLogic, orientation, resampleMode,
+                    configLogic, tracker);
+            success = true;
+            return scaled;
+        } finally {
+            tracker.report(success);
+        }
+    }
+
+    /**
+     * Decode an image stream directly to the requested size. See
+     * {@link #decodeScaled(File, int, int, ScalingLogic)}. The stream is read once, only the
+     * header bytes needed to find the image size are buffered. The stream is not closed.
+     *
+     * @param inputStream Image stream to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return New scaled bitmap object
+     * @throws IOException if the stream can't be read or decoded
+     */
+    public static Bitmap decodeScaled(InputStream inputStream, int dstWidth, int dstHeight,
+                                      ScalingLogic scalingLogic) throws IOException {
+        return decodeScaled(inputStream, dstWidth, dstHeight, scalingLogic, ResampleMode.BILINEAR);
+    }
+
+    /**
+     * Same as {@link #decodeScaled(InputStream, int, int, ScalingLogic)} with a choice of
+     * resampling algorithm for the scale after the sub-sampled decode. The stream is not closed.
+     *
+     * @param inputStream Image stream to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param resampleMode Resampling algorithm
+     * @return New scaled bitmap object
+     * @throws IOException if the stream can't be read or decoded
+     */
+    public static Bitmap decodeScaled(InputStream inputStream, int dstWidth, int dstHeight,
+                                      ScalingLogic scalingLogic, ResampleMode resampleMode) throws IOException {
+        return decodeScaled(inputStream, dstWidth, dstHeight, scalingLogic, resampleMode, null);
+    }
+
+    /**
+     * Same as {@link #decodeScaled(InputStream, int, int, ScalingLogic, ResampleMode)} with the
+     * pixel format of the result picked from the decoded image. See {@link ConfigLogic}. The
+     * stream is not closed.
+     *
+     * @param inputStream Image stream to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param resampleMode Resampling algorithm
+     * @param configLogic How to pick the pixel format, null for ARGB_8888
+     * @return New scaled bitmap object
+     * @throws IOException if the stream can't be read or decoded
+     */
+    public static Bitmap decodeScaled(InputStream inputStream, int dstWidth, int dstHeight,
+                                      ScalingLogic scalingLogic, ResampleMode resampleMode,
+                                      ConfigLogic configLogic) throws IOException {
+        Tracker tracker = new Tracker(MetricsSink.Operation.DECODE, null, null, null);
+        boolean success = false;
         try {
-            boolean androidN = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
-            ExifInterface exifInterface = new ExifInterface(file.getName());
-            // author
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_ARTIST, null);
-            // location information
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_ALTITUDE, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_ALTITUDE_REF, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_DATESTAMP, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_AREA_INFORMATION, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_DATESTAMP, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_BEARING, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_BEARING_REF, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_DISTANCE, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_DISTANCE_REF, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_LATITUDE, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_LATITUDE_REF, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_LONGITUDE, null);
-            if (androidN)
-                exifInterface.setAttribute(ExifInterface.TAG_GPS_DEST_LONGITUDE_REF, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DIFFERENTIAL, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_DOP, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_IMG_DIRECTION, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_IMG_DIRECTION_REF, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_LATITUDE, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_LATITUDE_REF, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_LONGITUDE, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_LONGITUDE_REF, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_MAP_DATUM, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_MEASURE_MODE, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_PROCESSING_METHOD, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_SATELLITES, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_SPEED, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_SPEED_REF, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_STATUS, null);
-            exifInterface.setAttribute(ExifInterface.TAG_GPS_TIMESTAMP, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_TRACK, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_TRACK_REF, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_GPS_VERSION_ID, null);
-            // device
-            exifInterface.setAttribute(ExifInterface.TAG_MAKE, null);
-            if (androidN) exifInterface.setAttribute(ExifInterface.TAG_MAKER_NOTE, null);
-            exifInterface.setAttribute(ExifInterface.TAG_MODEL, null);
-            exifInterface.setAttribute(ExifInterface.TAG_MAKE, null);
-            exifInterface.saveAttributes();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            long start = System.nanoTime();
+            BufferedInputStream in = new BufferedInputStream(inputStream, DECODE_BUFFER_SIZE);
+            in.mark(Integer.MAX_VALUE);
+            final int orientation = readOrientation(in);
+            in.reset();
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(in, null, options);
+            in.reset();
+            in.mark(0); // stop buffering, the pixel decode only reads forward
+            prepareSampledDecode(options, dstWidth, dstHeight, scalingLogic, orientation);
+            Bitmap sampled = allocated(BitmapFactory.decodeStream(in, null, options));
+            tracker.record(OperationResult.Stage.DECODE, start);
+            Bitmap scaled = finishSampledDecode(sampled, dstWidth, dstHeight, scalingLogic, orientation, resampleMode,
+                    configLogic, tracker);
+            success = true;
+            return scaled;
+        } finally {
+            tracker.report(success);
         }
     }
 
     /**
-     * Utility function for creating a scaled version of an existing bitmap
+     * Same as {@link #decodeScaled(File, int, int, ScalingLogic, ResampleMode)} on a background
+     * worker, with cancellation between the decode and scale stages and their timings in the
+     * result
      *
-     * @param unscaledBitmap Bitmap to scale
+     * @param file Image file to decode
      * @param dstWidth Wanted width of destination bitmap
      * @param dstHeight Wanted height of destination bitmap
      * @param scalingLogic Logic to use to avoid image stretching
-     * @return New scaled bitmap object
+     * @param resampleMode Resampling algorithm
+     * @param token Cancels the decode between stages, may be null
+     * @param listener Typed result listener
+     * @return handle that can be used to cancel the decode or wait for the bitmap
      */
-    public static Bitmap createScaledBitmap(Bitmap unscaledBitmap, int dstWidth, int dstHeight,
-                                            ScalingLogic scalingLogic) {
-        Rect srcRect = calculateSrcRect(unscaledBitmap.getWidth(), unscaledBitmap.getHeight(),
-                dstWidth, dstHeight, scalingLogic);
-        Rect dstRect = calculateDstRect(unscaledBitmap.getWidth(), unscaledBitmap.getHeight(),
+    public Future<OperationResult<Bitmap>> decodeScaledAsync(final File file, final int dstWidth, final int dstHeight,
+                                                             final ScalingLogic scalingLogic, final ResampleMode resampleMode,
+                                                             CancellationToken token, ResultListener<Bitmap> listener) {
+        final Tracker tracker = new Tracker(MetricsSink.Operation.DECODE, token, listener, mainHandler);
+        ResultTask<OperationResult<Bitmap>> task = new ResultTask<>(reported(tracker, new Callable<OperationResult<Bitmap>>() {
+            @Override
+            public OperationResult<Bitmap> call() throws Exception {
+                tracker.checkCancelled();
+                long start = System.nanoTime();
+                int orientation = readOrientation(file);
+                Bitmap sampled = decodeSampled(file, dstWidth, dstHeight, scalingLogic, orientation);
+                tracker.record(OperationResult.Stage.DECODE, start);
+                Bitmap scaled;
+                try {
+                    tracker.checkCancelled();
+                    start = System.nanoTime();
+                    scaled = createScaledBitmap(sampled, dstWidth, dstHeight, scalingLogic, orientation, resampleMode);
+                    tracker.record(OperationResult.Stage.SCALE, start);
+                } finally {
+                    releaseBitmap(sampled);
+                }
+                if (tracker.isCancelled()) {
+                    releaseBitmap(scaled);
+                    throw new CancellationException("Operation cancelled");
+                }
+                return tracker.finish(scaled);
+            }
+        }), resultAdapter(listener));
+        submitSave(task);
+        return task;
+    }
+
+    /**
+     * Same as {@link #decodeScaled(File, int, int, ScalingLogic)} but served from the image cache
+     * when the same file was decoded to the same size before. The file's size and modification
+     * time are part of the cache key so edited files are decoded again. Misses are added to the
+     * memory cache right away and written to the disk cache on the save workers. The returned
+     * bitmap is shared with the cache when one is set and must not be recycled or released.
+     *
+     * @param file Image file to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return Scaled bitmap object
+     * @throws IOException if the file can't be read or decoded
+     */
+    public static Bitmap decodeScaledCached(File file, int dstWidth, int dstHeight,
+                                            ScalingLogic scalingLogic) throws IOException {
+        ImageCache cache = imageCache;
+        if (cache == null) return decodeScaled(file, dstWidth, dstHeight, scalingLogic);
+        String key = cache.key(fileIdentity(file), scaleTransform(dstWidth, dstHeight, scalingLogic));
+        Bitmap bitmap = cache.get(key);
+        count(bitmap != null ? MetricsSink.Counter.CACHE_HITS : MetricsSink.Counter.CACHE_MISSES, 1);
+        if (bitmap == null) {
+            bitmap = decodeScaled(file, dstWidth, dstHeight, scalingLogic);
+            cache.put(key, bitmap, INSTANCE.getSaveExecutor());
+        }
+        return bitmap;
+    }
+
+    /**
+     * Same as {@link #decodeScaled(Context, Uri, int, int, ScalingLogic)} but served from the
+     * image cache when possible. See {@link #decodeScaledCached(File, int, int, ScalingLogic)}
+     *
+     * @param context Context used to resolve the uri
+     * @param uri Image uri to decode
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return Scaled bitmap object
+     * @throws IOException if the uri can't be read or decoded
+     */
+    public static Bitmap decodeScaledCached(Context context, Uri uri, int dstWidth, int dstHeight,
+                                            ScalingLogic scalingLogic) throws IOException {
+        ImageCache cache = imageCache;
+        if (cache == null) return decodeScaled(context, uri, dstWidth, dstHeight, scalingLogic);
+        String key = cache.key(uriIdentity(context.getContentResolver(), uri),
+                scaleTransform(dstWidth, dstHeight, scalingLogic));
+        Bitmap bitmap = cache.get(key);
+        count(bitmap != null ? MetricsSink.Counter.CACHE_HITS : MetricsSink.Counter.CACHE_MISSES, 1);
+        if (bitmap == null) {
+            bitmap = decodeScaled(context, uri, dstWidth, dstHeight, scalingLogic);
+            cache.put(key, bitmap, INSTANCE.getSaveExecutor());
+        }
+        return bitmap;
+    }
+
+    private static String scaleTransform(int dstWidth, int dstHeight, ScalingLogic scalingLogic) {
+        return "scale:" + dstWidth + "x" + dstHeight + ":" + scalingLogic + ":oriented";
+    }
+
+    private static String fileIdentity(File file) {
+        return "file:" + file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    /**
+     * identify a uri by its size and modification date when the provider exposes them
+     */
+    private static String uriIdentity(ContentResolver resolver, Uri uri) {
+        if ("file".equals(uri.getScheme()) && uri.getPath() != null) {
+            return fileIdentity(new File(uri.getPath()));
+        }
+        StringBuilder identity = new StringBuilder(uri.toString());
+        Cursor cursor = null;
+        try {
+            cursor = resolver.query(uri, null, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                int size = cursor.getColumnIndex(MediaStore.MediaColumns.SIZE);
+                int modified = cursor.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+                if (size >= 0) identity.append(':').append(cursor.getLong(size));
+                if (modified >= 0) identity.append(':').append(cursor.getLong(modified));
+            }
+        } catch (Exception e) {
+            // provider does not support queries, fall back to the uri alone
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+        return identity.toString();
+    }
+
+    /**
+     * Centre crop an image stream to the requested size, decoding only the cropped region at the
+     * largest sample size that still covers the destination. The compressed stream is buffered in
+     * memory but the full image is never decoded. EXIF orientation is applied. The stream is not
+     * closed.
+     *
+     * @param inputStream JPEG, PNG, WEBP or HEIF stream
+     * @param dstWidth Wanted width of destination bitmap
+     * @param dstHeight Wanted height of destination bitmap
+     * @return New cropped and scaled bitmap object
+     * @throws IOException if the stream can't be read or does not support region decoding
+     */
+    public static Bitmap decodeCropped(InputStream inputStream, int dstWidth, int dstHeight)
+            throws IOException {
+        Tracker tracker = new Tracker(MetricsSink.Operation.DECODE, null, null, null);
+        boolean success = false;
+        try {
+            long start = System.nanoTime();
+            BufferedInputStream in = new BufferedInputStream(inputStream, DECODE_BUFFER_SIZE);
+            in.mark(Integer.MAX_VALUE);
+            final int orientation = readOrientation(in);
+            in.reset();
+            TileDecoder decoder = TileDecoder.open(in);
+            try {
+                Bitmap cropped = decodeCropped(decoder, dstWidth, dstHeight, orientation, ResampleMode.BILINEAR,
+                        null, tracker, start);
+                success = true;
+                return cropped;
+            } finally {
+                decoder.close();
+            }
+        } finally {
+            tracker.report(success);
+        }
+    }
+
+    /**
+     * @param decodeStart start of the decode stage, which includes opening the decoder
+     */
+    private static Bitmap decodeCropped(TileDecoder decoder, int dstWidth, int dstHeight,
+                                        int orientation, ResampleMode resampleMode,
+                                        ConfigLogic configLogic, Tracker tracker, long decodeStart) throws IOException {
+        Bitmap region = decodeCropRegion(decoder, dstWidth, dstHeight, orientation);
+        tracker.record(OperationResult.Stage.DECODE, decodeStart);
+        // region already has the destination aspect, CROP only trims sampling rounding
+        return finishSampledDecode(region, dstWidth, dstHeight, ScalingLogic.CROP, orientation, resampleMode,
+                configLogic, tracker);
+    }
+
+    /**
+     * decode the CROP source rectangle at the largest sample size that still covers the
+     * destination, in stored orientation
+     */
+    private static Bitmap decodeCropRegion(TileDecoder decoder, int dstWidth, int dstHeight, int orientation)
+            throws IOException {
+        final int srcWidth = decoder.getWidth();
+        final int srcHeight = decoder.getHeight();
+        Rect srcRect = calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, ScalingLogic.CROP,
+                orientation);
+        int sampleSize = calculatePowerOfTwoSampleSize(Orientation.orientedWidth(srcWidth, srcHeight, orientation),
+                Orientation.orientedHeight(srcWidth, srcHeight, orientation), dstWidth, dstHeight, ScalingLogic.CROP);
+        return decodeRegion(decoder, srcRect, sampleSize);
+    }
+
+    /**
+     * decode a region into a fresh bitmap. Unlike BitmapFactory, the region decoder never resizes
+     * inBitmap, it draws clipped into it and keeps its size, so pooled bitmaps are not used here.
+     * The region still goes back to the pool once it has been scaled.
+     */
+    private static Bitmap decodeRegion(TileDecoder decoder, Rect srcRect, int sampleSize) throws IOException {
+        return allocated(decoder.decodeRegion(srcRect, sampleSize));
+    }
+
+    /**
+     * decode stage of {@link #decodeScaled(File, int, int, ScalingLogic)}: the cropped region or
+     * the sub-sampled image, still in stored orientation
+     */
+    private static Bitmap decodeSampled(final File file, int dstWidth, int dstHeight, ScalingLogic scalingLogic,
+                                        int orientation) throws IOException {
+        if (scalingLogic == ScalingLogic.CROP) {
+            TileDecoder decoder = openTileDecoder(file);
+            if (decoder != null) {
+                try {
+                    Bitmap region = decodeCropRegion(decoder, dstWidth, dstHeight, orientation);
+                    count(MetricsSink.Counter.BYTES_READ, file.length());
+                    return region;
+                } finally {
+                    decoder.close();
+                }
+            }
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        prepareSampledDecode(options, dstWidth, dstHeight, scalingLogic, orientation);
+        Bitmap sampled = decodeReusing(options, new DecodeCall() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+            }
+        });
+        if (sampled == null) throw new IOException("Unable to decode image");
+        count(MetricsSink.Counter.BYTES_READ, file.length());
+        return sampled;
+    }
+
+    /**
+     * @return EXIF orientation of the file, normal if it has none or can't be read
+     */
+    private static int readOrientation(File file) {
+        try {
+            return ExifReader.read(file, ORIENTATION_TAG)
+                    .getInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static int readOrientation(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream in = openUri(resolver, uri);
+        try {
+            return readOrientation(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * read the orientation from the stream's header segments. Callers reset the stream after.
+     */
+    private static int readOrientation(InputStream in) {
+        try {
+            return ExifReader.read(in, ORIENTATION_TAG)
+                    .getInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * @return region decoder or null if the image format does not support region decoding
+     */
+    private static TileDecoder openTileDecoder(File file) {
+        try {
+            return TileDecoder.open(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return region decoder or null if the image format does not support region decoding
+     */
+    private static TileDecoder openTileDecoder(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream in = openUri(resolver, uri);
+        try {
+            return TileDecoder.open(in);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Calculate the largest power of two down-sampling factor that still decodes an image at
+     * least as large as the destination area. Powers of two are what the JPEG decoder can
+     * sub-sample natively.
+     *
+     * @param srcWidth Width of source image
+     * @param srcHeight Height of source image
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @return Power of two sample size for decoding
+     */
+    public static int calculatePowerOfTwoSampleSize(int srcWidth, int srcHeight, int dstWidth,
+                                                    int dstHeight, ScalingLogic scalingLogic) {
+        return ScalingMath.calculatePowerOfTwoSampleSize(srcWidth, srcHeight, dstWidth, dstHeight,
+                geometry(scalingLogic));
+    }
+
+    private static InputStream openUri(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new IOException("Unable to open " + uri);
+        MetricsSink sink = metricsSink;
+        return sink != null ? new MeteredInputStream(in, sink) : in;
+    }
+
+    private interface DecodeCall {
+        Bitmap decode(BitmapFactory.Options options) throws IOException;
+    }
+
+    /**
+     * run a pixel decode into a pooled bitmap when one is large enough, falling back to a fresh
+     * allocation if the decoder can't reuse it
+     */
+    private static Bitmap decodeReusing(BitmapFactory.Options options, DecodeCall call) throws IOException {
+        Bitmap reusable = obtainDecodeBitmap(options.outWidth, options.outHeight, options.inSampleSize);
+        if (reusable != null) {
+            options.inMutable = true;
+            options.inBitmap = reusable;
+            try {
+                Bitmap decoded = call.decode(options);
+                if (decoded != null) return decoded;
+            } catch (IllegalArgumentException e) {
+                // not reusable for this image
+            }
+            options.inBitmap = null;
+            releaseBitmap(reusable);
+        }
+        return allocated(call.decode(options));
+    }
+
+    /**
+     * @return pooled bitmap large enough for a sampled ARGB_8888 decode or null
+     */
+    private static Bitmap obtainDecodeBitmap(int srcWidth, int srcHeight, int sampleSize) {
+        BitmapPool pool = bitmapPool;
+        if (pool == null) return null;
+        long width = (srcWidth + sampleSize - 1) / sampleSize;
+        long height = (srcHeight + sampleSize - 1) / sampleSize;
+        long bytes = width * height * 4;
+        if (bytes > Integer.MAX_VALUE) return null;
+        Bitmap reusable = pool.getForDecode((int) bytes, Bitmap.Config.ARGB_8888);
+        count(reusable != null ? MetricsSink.Counter.POOL_HITS : MetricsSink.Counter.POOL_MISSES, 1);
+        return reusable;
+    }
+
+    /**
+     * turn a bounds only decode result into options for the sampled pixel decode
+     */
+    private static void prepareSampledDecode(BitmapFactory.Options options, int dstWidth,
+                                             int dstHeight, ScalingLogic scalingLogic,
+                                             int orientation) throws IOException {
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unable to decode image bounds");
+        }
+        options.inSampleSize = calculatePowerOfTwoSampleSize(
+                Orientation.orientedWidth(options.outWidth, options.outHeight, orientation),
+                Orientation.orientedHeight(options.outWidth, options.outHeight, orientation),
                 dstWidth, dstHeight, scalingLogic);
-        Bitmap scaledBitmap = Bitmap.createBitmap(dstRect.width(), dstRect.height(),
-                Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(scaledBitmap);
-        canvas.drawBitmap(unscaledBitmap, srcRect, dstRect, new Paint(Paint.FILTER_BITMAP_FLAG));
+        options.inJustDecodeBounds = false;
+    }
 
-        return scaledBitmap;
+    /**
+     * scale a sampled decode to the exact destination size, releasing the intermediate bitmap
+     */
+    private static Bitmap finishSampledDecode(Bitmap sampled, int dstWidth, int dstHeight,
+                                              ScalingLogic scalingLogic, int orientation,
+                                              ResampleMode resampleMode, ConfigLogic configLogic,
+                                              Tracker tracker) throws IOException {
+        if (sampled == null) throw new IOException("Unable to decode image");
+        long start = System.nanoTime();
+        Bitmap scaled = createScaledBitmap(sampled, dstWidth, dstHeight, scalingLogic, orientation, resampleMode,
+                resolveConfig(sampled.hasAlpha(), configLogic));
+        if (scaled != sampled) releaseBitmap(sampled);
+        tracker.record(OperationResult.Stage.SCALE, start);
+        return scaled;
     }
 
     /**
@@ -435,25 +2732,7 @@ public class ImageManager {
      */
     public static int calculateSampleSize(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
                                           ScalingLogic scalingLogic) {
-        if (scalingLogic == ScalingLogic.FIT) {
-            final float srcAspect = (float)srcWidth / (float)srcHeight;
-            final float dstAspect = (float)dstWidth / (float)dstHeight;
-
-            if (srcAspect > dstAspect) {
-                return srcWidth / dstWidth;
-            } else {
-                return srcHeight / dstHeight;
-            }
-        } else {
-            final float srcAspect = (float)srcWidth / (float)srcHeight;
-            final float dstAspect = (float)dstWidth / (float)dstHeight;
-
-            if (srcAspect > dstAspect) {
-                return srcHeight / dstHeight;
-            } else {
-                return srcWidth / dstWidth;
-            }
-        }
+        return ScalingMath.calculateSampleSize(srcWidth, srcHeight, dstWidth, dstHeight, geometry(scalingLogic));
     }
 
     /**
@@ -468,22 +2747,9 @@ public class ImageManager {
      */
     public static Rect calculateSrcRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
                                         ScalingLogic scalingLogic) {
-        if (scalingLogic == ScalingLogic.CROP) {
-            final float srcAspect = (float)srcWidth / (float)srcHeight;
-            final float dstAspect = (float)dstWidth / (float)dstHeight;
-
-            if (srcAspect > dstAspect) {
-                final int srcRectWidth = (int)(srcHeight * dstAspect);
-                final int srcRectLeft = (srcWidth - srcRectWidth) / 2;
-                return new Rect(srcRectLeft, 0, srcRectLeft + srcRectWidth, srcHeight);
-            } else {
-                final int srcRectHeight = (int)(srcWidth / dstAspect);
-                final int scrRectTop = (int)(srcHeight - srcRectHeight) / 2;
-                return new Rect(0, scrRectTop, srcWidth, scrRectTop + srcRectHeight);
-            }
-        } else {
-            return new Rect(0, 0, srcWidth, srcHeight);
-        }
+        int[] rect = new int[4];
+        ScalingMath.calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, geometry(scalingLogic), rect);
+        return new Rect(rect[0], rect[1], rect[2], rect[3]);
     }
 
     /**
@@ -498,17 +2764,60 @@ public class ImageManager {
      */
     public static Rect calculateDstRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
                                         ScalingLogic scalingLogic) {
-        if (scalingLogic == ScalingLogic.FIT) {
-            final float srcAspect = (float)srcWidth / (float)srcHeight;
-            final float dstAspect = (float)dstWidth / (float)dstHeight;
+        int[] rect = new int[4];
+        ScalingMath.calculateDstRect(srcWidth, srcHeight, dstWidth, dstHeight, geometry(scalingLogic), rect);
+        return new Rect(rect[0], rect[1], rect[2], rect[3]);
+    }
 
-            if (srcAspect > dstAspect) {
-                return new Rect(0, 0, dstWidth, (int)(dstWidth / srcAspect));
-            } else {
-                return new Rect(0, 0, (int)(dstHeight * srcAspect), dstHeight);
-            }
-        } else {
-            return new Rect(0, 0, dstWidth, dstHeight);
-        }
+    /**
+     * Calculates source rectangle for scaling an oriented bitmap. The crop is chosen on the image
+     * as displayed and returned in the coordinates of the bitmap as stored.
+     *
+     * @param srcWidth Width of source image as stored
+     * @param srcHeight Height of source image as stored
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param orientation EXIF orientation of the source, one of ExifInterface.ORIENTATION_*
+     * @return Optimal source rectangle in stored coordinates
+     */
+    public static Rect calculateSrcRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                        ScalingLogic scalingLogic, int orientation) {
+        int[] rect = new int[4];
+        ScalingMath.calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, geometry(scalingLogic),
+                orientation, rect);
+        return new Rect(rect[0], rect[1], rect[2], rect[3]);
+    }
+
+    /**
+     * Calculates destination rectangle for scaling an oriented bitmap, whose displayed width and
+     * height are swapped for 90 and 270 degree rotations
+     *
+     * @param srcWidth Width of source image as stored
+     * @param srcHeight Height of source image as stored
+     * @param dstWidth Width of destination area
+     * @param dstHeight Height of destination area
+     * @param scalingLogic Logic to use to avoid image stretching
+     * @param orientation EXIF orientation of the source, one of ExifInterface.ORIENTATION_*
+     * @return Optimal destination rectangle
+     */
+    public static Rect calculateDstRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                        ScalingLogic scalingLogic, int orientation) {
+        int[] rect = new int[4];
+        ScalingMath.calculateDstRect(srcWidth, srcHeight, dstWidth, dstHeight, geometry(scalingLogic),
+                orientation, rect);
+        return new Rect(rect[0], rect[1], rect[2], rect[3]);
+    }
+
+    /**
+     * @return matrix mapping stored coordinates to displayed coordinates, null for normal or
+     * unknown orientations
+     */
+    private static Matrix orientationMatrix(int orientation, int width, int height) {
+        float[] values = Orientation.transform(orientation, width, height);
+        if (values == null) return null;
+        Matrix matrix = new Matrix();
+        matrix.setValues(new float[]{values[0], values[1], values[2], values[3], values[4], values[5], 0, 0, 1});
+        return matrix;
     }
 }
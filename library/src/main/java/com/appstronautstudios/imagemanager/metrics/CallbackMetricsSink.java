@@ -0,0 +1,53 @@
+package com.appstronautstudios.imagemanager.metrics;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates in memory and hands a {@link MetricsSnapshot} to a listener on the main thread at
+ * most once per interval, after an operation finishes. Suited to forwarding to an analytics
+ * backend without reporting every single operation.
+ */
+public class CallbackMetricsSink extends InMemoryMetricsSink {
+
+    public interface Listener {
+        void onMetrics(MetricsSnapshot snapshot);
+    }
+
+    private final Listener listener;
+    private final long intervalNanos;
+    private final boolean resetOnReport;
+    private final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * @param intervalMillis minimum time between two reports, 0 to report after every operation
+     * @param resetOnReport  true to report only what was recorded since the previous report
+     * @param listener       receives the snapshots
+     */
+    public CallbackMetricsSink(long intervalMillis, boolean resetOnReport, Listener listener) {
+        if (intervalMillis < 0) throw new IllegalArgumentException("intervalMillis must not be negative");
+        this.intervalNanos = intervalMillis * 1000000L;
+        this.listener = listener;
+        this.resetOnReport = resetOnReport;
+    }
+
+    @Override
+    public void onOperation(Operation operation, long[] stageNanos, long totalNanos, boolean success) {
+        super.onOperation(operation, stageNanos, totalNanos, success);
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        // only the thread that wins the swap reports
+        if (now - last < intervalNanos || !lastReport.compareAndSet(last, now)) return;
+        final MetricsSnapshot snapshot = snapshot();
+        if (resetOnReport) reset();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onMetrics(snapshot);
+            }
+        });
+    }
+}
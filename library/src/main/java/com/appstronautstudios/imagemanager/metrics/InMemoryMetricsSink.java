@@ -0,0 +1,88 @@
+package com.appstronautstudios.imagemanager.metrics;
+
+import com.appstronautstudios.imagemanager.utils.OperationResult;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Aggregates metrics in memory: latency histograms per operation and stage, failure counts,
+ * counter totals and gauge high-water marks. Recording is lock free, histograms are created the
+ * first time an operation or stage is seen. Read the aggregate with {@link #snapshot()}.
+ */
+public class InMemoryMetricsSink implements MetricsSink {
+
+    private static final int OPERATIONS = Operation.values().length;
+    private static final int STAGES = OperationResult.Stage.values().length;
+    private static final int TOTAL = STAGES; // histogram slot after the stages
+
+    private final AtomicReferenceArray<LatencyHistogram> histograms =
+            new AtomicReferenceArray<>(OPERATIONS * (STAGES + 1));
+    private final AtomicLongArray failures = new AtomicLongArray(OPERATIONS);
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final AtomicLongArray highWater = new AtomicLongArray(Gauge.values().length);
+
+    @Override
+    public void onOperation(Operation operation, long[] stageNanos, long totalNanos, boolean success) {
+        for (int stage = 0; stage < STAGES; stage++) {
+            if (stageNanos[stage] > 0) histogram(operation, stage).record(stageNanos[stage]);
+        }
+        histogram(operation, TOTAL).record(totalNanos);
+        if (!success) failures.incrementAndGet(operation.ordinal());
+    }
+
+    @Override
+    public void onCount(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    @Override
+    public void onGauge(Gauge gauge, long value) {
+        int index = gauge.ordinal();
+        long max = highWater.get(index);
+        while (value > max && !highWater.compareAndSet(index, max, value)) {
+            max = highWater.get(index);
+        }
+    }
+
+    /**
+     * @return copy of everything recorded since creation or the last {@link #reset()}
+     */
+    public MetricsSnapshot snapshot() {
+        LatencyHistogram.Snapshot[] timings = new LatencyHistogram.Snapshot[histograms.length()];
+        for (int i = 0; i < timings.length; i++) {
+            LatencyHistogram histogram = histograms.get(i);
+            timings[i] = histogram != null ? histogram.snapshot() : LatencyHistogram.Snapshot.EMPTY;
+        }
+        return new MetricsSnapshot(timings, copy(failures), copy(counters), copy(highWater));
+    }
+
+    /**
+     * clear all recorded values. Values recorded concurrently may be lost or kept.
+     */
+    public void reset() {
+        for (int i = 0; i < histograms.length(); i++) {
+            LatencyHistogram histogram = histograms.get(i);
+            if (histogram != null) histogram.reset();
+        }
+        for (int i = 0; i < failures.length(); i++) failures.set(i, 0);
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        for (int i = 0; i < highWater.length(); i++) highWater.set(i, 0);
+    }
+
+    private LatencyHistogram histogram(Operation operation, int stage) {
+        int index = operation.ordinal() * (STAGES + 1) + stage;
+        LatencyHistogram histogram = histograms.get(index);
+        if (histogram == null) {
+            histograms.compareAndSet(index, null, new LatencyHistogram());
+            histogram = histograms.get(index);
+        }
+        return histogram;
+    }
+
+    private static long[] copy(AtomicLongArray array) {
+        long[] copy = new long[array.length()];
+        for (int i = 0; i < copy.length; i++) copy[i] = array.get(i);
+        return copy;
+    }
+}
@@ -0,0 +1,57 @@
+package com.appstronautstudios.imagemanager.metrics;
+
+import android.util.Log;
+
+import com.appstronautstudios.imagemanager.utils.OperationResult;
+
+import java.util.Locale;
+
+/**
+ * Logs every finished operation with its stage times and keeps the in memory aggregate, which
+ * {@link #logSnapshot()} writes out on demand. Meant for debugging, formatting a line per
+ * operation is not free.
+ */
+public class LogcatMetricsSink extends InMemoryMetricsSink {
+
+    private final String tag;
+
+    public LogcatMetricsSink() {
+        this("ImageManager");
+    }
+
+    /**
+     * @param tag logcat tag
+     */
+    public LogcatMetricsSink(String tag) {
+        this.tag = tag;
+    }
+
+    @Override
+    public void onOperation(Operation operation, long[] stageNanos, long totalNanos, boolean success) {
+        super.onOperation(operation, stageNanos, totalNanos, success);
+        if (!Log.isLoggable(tag, success ? Log.DEBUG : Log.WARN)) return;
+        StringBuilder line = new StringBuilder(operation.name().toLowerCase(Locale.US));
+        line.append(success ? " ok " : " failed ");
+        for (OperationResult.Stage stage : OperationResult.Stage.values()) {
+            long nanos = stageNanos[stage.ordinal()];
+            if (nanos == 0) continue;
+            line.append(stage.name().toLowerCase(Locale.US))
+                    .append(String.format(Locale.US, "=%.1fms ", nanos / 1e6));
+        }
+        line.append(String.format(Locale.US, "total=%.1fms", totalNanos / 1e6));
+        if (success) {
+            Log.d(tag, line.toString());
+        } else {
+            Log.w(tag, line.toString());
+        }
+    }
+
+    /**
+     * write the aggregate of all operations so far to logcat
+     */
+    public void logSnapshot() {
+        for (String line : snapshot().toString().split("\n")) {
+            Log.i(tag, line);
+        }
+    }
+}
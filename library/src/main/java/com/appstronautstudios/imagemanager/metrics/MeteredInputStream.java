@@ -0,0 +1,65 @@
+package com.appstronautstudios.imagemanager.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reports the bytes read from a stream to a sink as {@link MetricsSink.Counter#BYTES_READ} when
+ * it is closed
+ */
+public class MeteredInputStream extends FilterInputStream {
+
+    private final MetricsSink sink;
+    private long bytes;
+    private long mark;
+    private boolean closed;
+
+    public MeteredInputStream(InputStream in, MetricsSink sink) {
+        super(in);
+        this.sink = sink;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) bytes++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = in.read(b, off, len);
+        if (count > 0) bytes += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        if (skipped > 0) bytes += skipped;
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        in.mark(readlimit);
+        mark = bytes;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        in.reset();
+        bytes = mark;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            if (!closed && bytes > 0) sink.onCount(MetricsSink.Counter.BYTES_READ, bytes);
+            closed = true;
+        }
+    }
+}
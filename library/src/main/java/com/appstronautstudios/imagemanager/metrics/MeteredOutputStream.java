@@ -0,0 +1,64 @@
+package com.appstronautstudios.imagemanager.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written to a stream and the time spent inside its write, flush and close
+ * calls. When an encoder writes straight to the stream, that time is the I/O part and the rest
+ * of the encode is compression. Not thread safe.
+ */
+public class MeteredOutputStream extends FilterOutputStream {
+
+    private long bytes;
+    private long nanos;
+
+    public MeteredOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        out.write(b);
+        nanos += System.nanoTime() - start;
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        nanos += System.nanoTime() - start;
+        bytes += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        out.flush();
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.close();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return time spent in the underlying stream
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,61 @@
+package com.appstronautstudios.imagemanager.metrics;
+
+import com.appstronautstudios.imagemanager.utils.OperationResult;
+
+/**
+ * Receives metrics recorded by {@link com.appstronautstudios.imagemanager.managers.ImageManager}.
+ * Methods are called on worker threads while operations run, implementations must be thread
+ * safe and return quickly. Nothing is recorded while no sink is set.
+ */
+public interface MetricsSink {
+
+    enum Operation {
+        SAVE, SAVE_BATCH, SHARE, DECODE, RENDITIONS, CAPTURE
+    }
+
+    enum Counter {
+        /**
+         * compressed bytes read from files and content uris by decodes
+         */
+        BYTES_READ,
+        /**
+         * encoded bytes written by saves and captures
+         */
+        BYTES_WRITTEN,
+        /**
+         * pixel memory of bitmaps that had to be allocated instead of reused
+         */
+        BITMAP_BYTES_ALLOCATED,
+        POOL_HITS,
+        POOL_MISSES,
+        CACHE_HITS,
+        CACHE_MISSES
+    }
+
+    enum Gauge {
+        JAVA_HEAP_BYTES, NATIVE_HEAP_BYTES
+    }
+
+    /**
+     * an operation finished
+     *
+     * @param operation  operation type
+     * @param stageNanos time per stage indexed by {@link OperationResult.Stage} ordinal, 0 for
+     *                   stages the operation does not have. Owned by the caller, copy to keep
+     * @param totalNanos wall clock time of the whole operation
+     * @param success    false if the operation failed or was cancelled
+     */
+    void onOperation(Operation operation, long[] stageNanos, long totalNanos, boolean success);
+
+    /**
+     * @param counter counter to increase
+     * @param delta   amount, positive
+     */
+    void onCount(Counter counter, long delta);
+
+    /**
+     * @param gauge gauge sampled
+     * @param value current value
+     */
+    void onGauge(Gauge gauge, long value);
+}
@@ -0,0 +1,112 @@
+package com.appstronautstudios.imagemanager.metrics;
+
+import com.appstronautstudios.imagemanager.utils.OperationResult;
+
+import java.util.Locale;
+
+/**
+ * Immutable copy of the metrics aggregated by an {@link InMemoryMetricsSink}
+ */
+public class MetricsSnapshot {
+
+    private static final int STAGES = OperationResult.Stage.values().length;
+
+    private final LatencyHistogram.Snapshot[] timings; // per operation: stages then total
+    private final long[] failures;
+    private final long[] counters;
+    private final long[] highWater;
+
+    MetricsSnapshot(LatencyHistogram.Snapshot[] timings, long[] failures, long[] counters, long[] highWater) {
+        this.timings = timings;
+        this.failures = failures;
+        this.counters = counters;
+        this.highWater = highWater;
+    }
+
+    /**
+     * @param operation operation type
+     * @return distribution of whole operation times, including failures
+     */
+    public LatencyHistogram.Snapshot getTotal(MetricsSink.Operation operation) {
+        return timings[operation.ordinal() * (STAGES + 1) + STAGES];
+    }
+
+    /**
+     * @param operation operation type
+     * @param stage     stage
+     * @return distribution of the stage's times within the operation
+     */
+    public LatencyHistogram.Snapshot getStage(MetricsSink.Operation operation, OperationResult.Stage stage) {
+        return timings[operation.ordinal() * (STAGES + 1) + stage.ordinal()];
+    }
+
+    public long getFailures(MetricsSink.Operation operation) {
+        return failures[operation.ordinal()];
+    }
+
+    public long getCount(MetricsSink.Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    /**
+     * @param gauge gauge
+     * @return highest value sampled
+     */
+    public long getHighWater(MetricsSink.Gauge gauge) {
+        return highWater[gauge.ordinal()];
+    }
+
+    /**
+     * @return share of bitmap requests served from the pool, 0 if there were none
+     */
+    public float getPoolHitRate() {
+        return rate(getCount(MetricsSink.Counter.POOL_HITS), getCount(MetricsSink.Counter.POOL_MISSES));
+    }
+
+    /**
+     * @return share of cached decodes served from the image cache, 0 if there were none
+     */
+    public float getCacheHitRate() {
+        return rate(getCount(MetricsSink.Counter.CACHE_HITS), getCount(MetricsSink.Counter.CACHE_MISSES));
+    }
+
+    private static float rate(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (float) hits / (hits + misses);
+    }
+
+    /**
+     * @return one line per operation seen with count, failures and total and stage percentiles,
+     * then counters and high-water marks
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (MetricsSink.Operation operation : MetricsSink.Operation.values()) {
+            LatencyHistogram.Snapshot total = getTotal(operation);
+            if (total.getCount() == 0) continue;
+            builder.append(operation.name().toLowerCase(Locale.US))
+                    .append(" n=").append(total.getCount())
+                    .append(" failed=").append(getFailures(operation))
+                    .append(" total ").append(describe(total));
+            for (OperationResult.Stage stage : OperationResult.Stage.values()) {
+                LatencyHistogram.Snapshot timing = getStage(operation, stage);
+                if (timing.getCount() == 0) continue;
+                builder.append(' ').append(stage.name().toLowerCase(Locale.US)).append(' ').append(describe(timing));
+            }
+            builder.append('\n');
+        }
+        for (MetricsSink.Counter counter : MetricsSink.Counter.values()) {
+            builder.append(counter.name().toLowerCase(Locale.US)).append('=').append(getCount(counter)).append(' ');
+        }
+        for (MetricsSink.Gauge gauge : MetricsSink.Gauge.values()) {
+            builder.append("max_").append(gauge.name().toLowerCase(Locale.US)).append('=').append(getHighWater(gauge)).append(' ');
+        }
+        return builder.append(String.format(Locale.US, "pool_hit_rate=%.2f cache_hit_rate=%.2f",
+                getPoolHitRate(), getCacheHitRate())).toString();
+    }
+
+    private static String describe(LatencyHistogram.Snapshot timing) {
+        return String.format(Locale.US, "p50=%.1fms p99=%.1fms max=%.1fms",
+                timing.getPercentileNanos(50) / 1e6, timing.getPercentileNanos(99) / 1e6, timing.getMaxNanos() / 1e6);
+    }
+}
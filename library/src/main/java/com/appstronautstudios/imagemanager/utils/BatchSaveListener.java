@@ -0,0 +1,37 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.net.Uri;
+
+import java.util.List;
+
+/**
+ * Callbacks for batch gallery exports. All methods are called on the main thread.
+ */
+public interface BatchSaveListener {
+    /**
+     * @param done  number of entries finished, successfully or not
+     * @param total number of entries in the batch
+     */
+    void progress(int done, int total);
+
+    /**
+     * @param index position of the failed entry in the batch
+     * @param entry failed entry
+     * @param e     failure reason
+     */
+    void itemFailure(int index, GalleryEntry entry, Exception e);
+
+    /**
+     * @param uris saved uris in batch order. Failed entries are null
+     */
+    void complete(List<Uri> uris);
+
+    /**
+     * the batch stopped before every entry was handled, e.g. storage permission was denied, the
+     * save queue was full or the worker was interrupted. Entries already written stay in the
+     * gallery. Not called when the batch is cancelled through its Future.
+     *
+     * @param e failure reason
+     */
+    void failure(Exception e);
+}
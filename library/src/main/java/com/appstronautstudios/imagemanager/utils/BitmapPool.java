@@ -0,0 +1,193 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of mutable bitmaps grouped by width, height and config. Bitmaps handed back with
+ * {@link #put(Bitmap)} are reused by later {@link #get(int, int, Bitmap.Config)} calls instead of
+ * allocating new ones. The least recently used sizes are evicted once the pool exceeds its byte
+ * budget. Thread safe.
+ */
+public class BitmapPool {
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, ArrayDeque<Bitmap>> groups = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxBytes maximum total allocation size of pooled bitmaps
+     */
+    public BitmapPool(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param width  bitmap width
+     * @param height bitmap height
+     * @param config bitmap config
+     * @return a cleared (fully transparent) mutable bitmap, recycled from the pool when possible
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = getIfPresent(width, height, config);
+        return bitmap != null ? bitmap : Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * @param width  bitmap width
+     * @param height bitmap height
+     * @param config bitmap config
+     * @return a cleared pooled bitmap of exactly this size and config, or null if there is none
+     */
+    public Bitmap getIfPresent(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(new Key(width, height, config));
+        if (bitmap != null) bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * find a pooled bitmap large enough to be used as {@code BitmapFactory.Options.inBitmap}.
+     * BitmapFactory reconfigures it to the decoded size and overwrites every pixel, so it is not
+     * cleared. Not suitable for {@code BitmapRegionDecoder}, which keeps the bitmap's own size and
+     * only draws the region into it; use {@link #getIfPresent(int, int, Bitmap.Config)} there.
+     *
+     * @param minBytes minimum allocation size
+     * @param config   config the decode will use
+     * @return reusable bitmap or null if none is large enough
+     */
+    public synchronized Bitmap getForDecode(int minBytes, Bitmap.Config config) {
+        Key bestKey = null;
+        Bitmap best = null;
+        for (Map.Entry<Key, ArrayDeque<Bitmap>> entry : groups.entrySet()) {
+            if (entry.getKey().config != config) continue;
+            Bitmap candidate = entry.getValue().peekLast();
+            if (candidate == null || candidate.getAllocationByteCount() < minBytes) continue;
+            if (best == null || candidate.getAllocationByteCount() < best.getAllocationByteCount()) {
+                best = candidate;
+                bestKey = entry.getKey();
+            }
+        }
+        if (best == null) {
+            missCount++;
+            return null;
+        }
+        return take(bestKey);
+    }
+
+    private synchronized Bitmap take(Key key) {
+        ArrayDeque<Bitmap> group = groups.get(key);
+        Bitmap bitmap = group != null ? group.pollLast() : null;
+        if (bitmap == null) {
+            missCount++;
+            return null;
+        }
+        if (group.isEmpty()) groups.remove(key);
+        currentBytes -= bitmap.getAllocationByteCount();
+        hitCount++;
+        return bitmap;
+    }
+
+    /**
+     * hand a bitmap back for reuse. The caller must not touch it afterwards. Bitmaps that can't be
+     * reused are recycled.
+     *
+     * @param bitmap bitmap no longer in use
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable() || bitmap.getConfig() == null
+                || bitmap.getAllocationByteCount() > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        Key key = new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> group = groups.get(key);
+        if (group == null) {
+            group = new ArrayDeque<>();
+            groups.put(key, group);
+        }
+        group.addLast(bitmap);
+        currentBytes += bitmap.getAllocationByteCount();
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * recycle all pooled bitmaps
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(long size) {
+        Iterator<ArrayDeque<Bitmap>> iterator = groups.values().iterator();
+        while (currentBytes > size && iterator.hasNext()) {
+            ArrayDeque<Bitmap> group = iterator.next();
+            while (currentBytes > size && !group.isEmpty()) {
+                Bitmap evicted = group.pollFirst();
+                currentBytes -= evicted.getAllocationByteCount();
+                evicted.recycle();
+                evictionCount++;
+            }
+            if (group.isEmpty()) iterator.remove();
+        }
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool[bytes=" + currentBytes + "/" + maxBytes + ", hits=" + hitCount
+                + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+    }
+
+    private static class Key {
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+
+        Key(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return width == other.width && height == other.height && config == other.config;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * width + height) * 31 + (config != null ? config.hashCode() : 0);
+        }
+    }
+}
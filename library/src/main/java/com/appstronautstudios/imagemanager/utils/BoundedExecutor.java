@@ -0,0 +1,80 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size worker pool with a bounded queue. When the queue is full, background callers block
+ * until a slot frees up (backpressure) while main thread callers are rejected immediately so the
+ * UI never stalls waiting on disk I/O.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * @param threads       number of worker threads
+     * @param queueCapacity number of tasks allowed to wait for a worker
+     * @param name          prefix used for worker thread names
+     */
+    public BoundedExecutor(int threads, int queueCapacity, String name) {
+        super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new WorkerFactory(name),
+                new BackpressurePolicy());
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+        }
+        allowCoreThreadTimeOut(true);
+    }
+
+    private static class BackpressurePolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor shut down");
+            }
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                // never block the UI thread, let the caller decide what to do
+                throw new RejectedExecutionException("Queue full");
+            }
+            try {
+                executor.getQueue().put(r);
+                // put skips execute's shutdown check, a task queued after shutdown would never run
+                if (executor.isShutdown() && executor.remove(r)) {
+                    throw new RejectedExecutionException("Executor shut down");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for queue", e);
+            }
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String name;
+
+        WorkerFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation for long running operations. The operation checks the token between
+ * stages and between chunks of output and stops with a {@link CancellationException} once it is
+ * cancelled, cleaning up partial output.
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if the token was cancelled
+     */
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("Operation cancelled");
+    }
+}
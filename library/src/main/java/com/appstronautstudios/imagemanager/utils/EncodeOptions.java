@@ -0,0 +1,164 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import com.appstronautstudios.imagemanager.exif.ExifData;
+
+/**
+ * Output format and quality for saved and shared images. Immutable, the {@code with} methods
+ * return modified copies.
+ */
+public class EncodeOptions {
+
+    private static final int DEFAULT_MIN_QUALITY = 40;
+
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+    private final long targetBytes;
+    private final int minQuality;
+    private final ExifData metadata;
+
+    private EncodeOptions(Bitmap.CompressFormat format, int quality, long targetBytes, int minQuality, ExifData metadata) {
+        if (quality < 0 || quality > 100) throw new IllegalArgumentException("quality must be 0-100");
+        this.format = format;
+        this.quality = quality;
+        this.targetBytes = targetBytes;
+        this.minQuality = minQuality;
+        this.metadata = metadata;
+    }
+
+    /**
+     * @param quality 0-100
+     * @return lossy JPEG output
+     */
+    public static EncodeOptions jpeg(int quality) {
+        return new EncodeOptions(Bitmap.CompressFormat.JPEG, quality, 0, DEFAULT_MIN_QUALITY, null);
+    }
+
+    /**
+     * @return lossless PNG output
+     */
+    public static EncodeOptions png() {
+        return new EncodeOptions(Bitmap.CompressFormat.PNG, 100, 0, DEFAULT_MIN_QUALITY, null);
+    }
+
+    /**
+     * @param quality 0-100
+     * @return lossy WEBP output. Uses WEBP_LOSSY on android 11+ and WEBP before that
+     */
+    @SuppressWarnings("deprecation")
+    public static EncodeOptions webpLossy(int quality) {
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+        return new EncodeOptions(format, quality, 0, DEFAULT_MIN_QUALITY, null);
+    }
+
+    /**
+     * @return lossless WEBP output. Uses WEBP_LOSSLESS on android 11+ and WEBP at quality 100
+     * before that, which is lossless from android 10
+     */
+    @SuppressWarnings("deprecation")
+    public static EncodeOptions webpLossless() {
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP;
+        return new EncodeOptions(format, 100, 0, DEFAULT_MIN_QUALITY, null);
+    }
+
+    /**
+     * encode at the highest quality, between the default minimum and this quality, whose output
+     * fits in the given size. Ignored for lossless formats.
+     *
+     * @param maxBytes size cap for the encoded image
+     * @return copy of these options with a size target
+     */
+    public EncodeOptions withTargetBytes(long maxBytes) {
+        return withTargetBytes(maxBytes, Math.min(DEFAULT_MIN_QUALITY, quality));
+    }
+
+    /**
+     * @param maxBytes   size cap for the encoded image
+     * @param minQuality lowest quality to try. If even this does not fit, the image is written at
+     *                   this quality anyway
+     * @return copy of these options with a size target
+     */
+    public EncodeOptions withTargetBytes(long maxBytes, int minQuality) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+        return new EncodeOptions(format, quality, maxBytes, Math.max(0, Math.min(minQuality, quality)), metadata);
+    }
+
+    /**
+     * write exactly these EXIF tags into JPEG output, in the same pass as the encode. Encoder
+     * output carries no metadata of its own so by default saved and shared images have none.
+     * Use {@link ExifData#filter(java.util.Set)} or a selective read of the source file to keep
+     * only some tags, e.g. capture time but not GPS. Leave out Orientation when the bitmap is
+     * already upright. Ignored for PNG and WEBP.
+     *
+     * @param metadata tags to write, null for none
+     * @return copy of these options with metadata
+     */
+    public EncodeOptions withMetadata(ExifData metadata) {
+        return new EncodeOptions(format, quality, targetBytes, minQuality,
+                metadata == null || metadata.size() == 0 ? null : metadata);
+    }
+
+    public Bitmap.CompressFormat getFormat() {
+        return format;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * @return size cap in bytes, 0 when there is none
+     */
+    public long getTargetBytes() {
+        return targetBytes;
+    }
+
+    public int getMinQuality() {
+        return minQuality;
+    }
+
+    /**
+     * @return tags written into JPEG output, null when none are
+     */
+    public ExifData getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return true if quality has no effect on the output
+     */
+    @SuppressWarnings("deprecation")
+    public boolean isLossless() {
+        if (format == Bitmap.CompressFormat.PNG) return true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && format == Bitmap.CompressFormat.WEBP_LOSSLESS) return true;
+        return format == Bitmap.CompressFormat.WEBP && quality == 100 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+    }
+
+    /**
+     * @return mime type of the output, for MediaStore entries and share intents
+     */
+    public String getMimeType() {
+        if (format == Bitmap.CompressFormat.PNG) return "image/png";
+        if (format == Bitmap.CompressFormat.JPEG) return "image/jpeg";
+        return "image/webp";
+    }
+
+    /**
+     * @return file extension of the output, including the dot
+     */
+    public String getExtension() {
+        if (format == Bitmap.CompressFormat.PNG) return ".png";
+        if (format == Bitmap.CompressFormat.JPEG) return ".jpg";
+        return ".webp";
+    }
+
+    @Override
+    public String toString() {
+        return format + ":" + quality + (targetBytes > 0 ? ":" + minQuality + "-" + targetBytes : "")
+                + (metadata != null ? ":exif" + Integer.toHexString(metadata.toMap().hashCode()) : "");
+    }
+}
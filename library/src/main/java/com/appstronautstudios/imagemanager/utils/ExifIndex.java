@@ -0,0 +1,450 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+
+import com.appstronautstudios.imagemanager.exif.ExifData;
+import com.appstronautstudios.imagemanager.exif.ExifScanner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * SQLite backed index of EXIF data. Entries are keyed by file path or content uri and carry a
+ * size and modification fingerprint, so rescans only read images that are new or changed and drop
+ * images that disappeared. GPS position and capture time are stored in their own columns for fast
+ * queries without opening any image.
+ */
+public class ExifIndex {
+
+    private static final int DATABASE_VERSION = 2;
+    private static final String TABLE = "images";
+    private static final String COLUMN_KEY = "key";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_MODIFIED = "modified";
+    private static final String COLUMN_GENERATION = "generation";
+    private static final String COLUMN_TAGS = "tags";
+    private static final String COLUMN_LATITUDE = "latitude";
+    private static final String COLUMN_LONGITUDE = "longitude";
+    private static final String COLUMN_TAKEN = "taken";
+    private static final String COLUMN_DATA = "data";
+    private static final int WRITE_BATCH_SIZE = 100;
+    private static final int MAX_VALUE_LENGTH = 8 * 1024;
+
+    private final SQLiteOpenHelper helper;
+
+    /**
+     * @param context context
+     * @param name    database file name
+     */
+    public ExifIndex(Context context, String name) {
+        helper = new SQLiteOpenHelper(context.getApplicationContext(), name, null, DATABASE_VERSION) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                db.execSQL("CREATE TABLE " + TABLE + " (" + COLUMN_KEY + " TEXT PRIMARY KEY, "
+                        + COLUMN_SIZE + " INTEGER, " + COLUMN_MODIFIED + " INTEGER, "
+                        + COLUMN_GENERATION + " INTEGER, " + COLUMN_TAGS + " INTEGER, " + COLUMN_LATITUDE + " REAL, "
+                        + COLUMN_LONGITUDE + " REAL, " + COLUMN_TAKEN + " INTEGER, "
+                        + COLUMN_DATA + " BLOB)");
+                db.execSQL("CREATE INDEX images_taken ON " + TABLE + " (" + COLUMN_TAKEN + ")");
+                db.execSQL("CREATE INDEX images_gps ON " + TABLE + " (" + COLUMN_LATITUDE + ") WHERE "
+                        + COLUMN_LATITUDE + " IS NOT NULL");
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+                // index is a cache, rebuild from scratch
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+                onCreate(db);
+            }
+        };
+    }
+
+    /**
+     * bring the index up to date with a directory tree. Only new or changed JPEGs are read and
+     * entries for deleted files are removed.
+     *
+     * @param root        directory to walk
+     * @param tags        tag names to store
+     * @param parallelism number of concurrent reads
+     * @param listener    optional listener for the images that were read, may be null
+     * @return handle to cancel the update or wait for the number of images read
+     */
+    public Future<Integer> update(File root, Set<String> tags, int parallelism, ExifScanner.Listener listener) {
+        String prefix = root.getAbsolutePath() + File.separator;
+        Iterable<ExifScanner.Source> sources = ExifScanner.directorySources(root);
+        return update(prefix, sources, tags, parallelism, listener);
+    }
+
+    /**
+     * bring the index up to date with a MediaStore query. Changes are detected with the size,
+     * DATE_MODIFIED and, on android 11+, GENERATION_MODIFIED columns.
+     *
+     * @param context       context
+     * @param collection    MediaStore collection
+     * @param selection     optional where clause
+     * @param selectionArgs optional where arguments
+     * @param tags          tag names to store
+     * @param parallelism   number of concurrent reads
+     * @param listener      optional listener for the images that were read, may be null
+     * @return handle to cancel the update or wait for the number of images read
+     */
+    public Future<Integer> update(Context context, Uri collection, String selection, String[] selectionArgs,
+                                  Set<String> tags, int parallelism, ExifScanner.Listener listener) {
+        MediaStoreSources sources = new MediaStoreSources(context.getContentResolver(), collection, selection, selectionArgs);
+        // deletions are only detected for unfiltered queries, a filtered query doesn't see everything
+        String prefix = selection == null ? collection.toString() + "/" : null;
+        return update(prefix, sources, tags, parallelism, listener);
+    }
+
+    private Future<Integer> update(final String prefix, final Iterable<? extends ExifScanner.Source> sources,
+                                   Set<String> tags, int parallelism, final ExifScanner.Listener listener) {
+        final long tagSet = tagSetHash(tags);
+        final Map<String, long[]> known = new HashMap<>();
+        final Set<String> seen = new HashSet<>();
+        final Map<String, long[]> changed = new ConcurrentHashMap<>();
+        final IndexWriter writer = new IndexWriter(prefix, known, seen, changed, listener);
+        Iterable<ExifScanner.Source> changedSources = new Iterable<ExifScanner.Source>() {
+            @Override
+            public Iterator<ExifScanner.Source> iterator() {
+                // runs on the scanner thread, keep database reads off the caller's thread
+                if (prefix != null) known.putAll(loadFingerprints(prefix));
+                final Iterator<? extends ExifScanner.Source> all = sources.iterator();
+                return new ClosingIterator() {
+                    private ExifScanner.Source next = advance();
+
+                    private ExifScanner.Source advance() {
+                        while (all.hasNext()) {
+                            ExifScanner.Source source = all.next();
+                            seen.add(source.getName());
+                            // rows indexed for another tag set don't have the tags asked for now
+                            long[] fingerprint = fingerprint(source, tagSet);
+                            long[] previous = known.get(source.getName());
+                            if (previous == null && prefix == null) previous = loadFingerprint(source.getName());
+                            if (previous == null || !Arrays.equals(previous, fingerprint)) {
+                                changed.put(source.getName(), fingerprint);
+                                return source;
+                            }
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public ExifScanner.Source next() {
+                        if (next == null) throw new NoSuchElementException();
+                        ExifScanner.Source source = next;
+                        next = advance();
+                        return source;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        // the scanner closes its sources once every read has finished, however the
+                        // scan ends, so rows already read are kept even if it was cancelled or failed
+                        try {
+                            writer.flush();
+                        } finally {
+                            // pass the close on to e.g. a MediaStore cursor
+                            if (all instanceof Closeable) ((Closeable) all).close();
+                        }
+                    }
+                };
+            }
+        };
+        return new ExifScanner(parallelism, tags).scan(changedSources, writer);
+    }
+
+    private interface ClosingIterator extends Iterator<ExifScanner.Source>, Closeable {
+    }
+
+    /**
+     * writes scan results in batches and removes entries for images that are gone
+     */
+    private class IndexWriter implements ExifScanner.Listener {
+        private final String prefix;
+        private final Map<String, long[]> known;
+        private final Set<String> seen;
+        private final Map<String, long[]> changed;
+        private final ExifScanner.Listener listener;
+        private final List<ContentValues> pending = new ArrayList<>();
+
+        IndexWriter(String prefix, Map<String, long[]> known, Set<String> seen, Map<String, long[]> changed,
+                    ExifScanner.Listener listener) {
+            this.prefix = prefix;
+            this.known = known;
+            this.seen = seen;
+            this.changed = changed;
+            this.listener = listener;
+        }
+
+        @Override
+        public void result(ExifScanner.Source source, ExifData data) {
+            ContentValues values = toValues(source.getName(), changed.get(source.getName()), data);
+            List<ContentValues> batch = null;
+            synchronized (pending) {
+                pending.add(values);
+                if (pending.size() >= WRITE_BATCH_SIZE) {
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                }
+            }
+            if (batch != null) write(batch);
+            if (listener != null) listener.result(source, data);
+        }
+
+        @Override
+        public void error(ExifScanner.Source source, Exception e) {
+            if (listener != null) listener.error(source, e);
+        }
+
+        @Override
+        public void complete(int scanned, int failed) {
+            flush();
+            if (prefix != null) {
+                Set<String> removed = new HashSet<>(known.keySet());
+                removed.removeAll(seen);
+                delete(removed);
+            }
+            if (listener != null) listener.complete(scanned, failed);
+        }
+
+        void flush() {
+            synchronized (pending) {
+                write(pending);
+                pending.clear();
+            }
+        }
+    }
+
+    /**
+     * @param key file path or content uri
+     * @return indexed tags as strings, or null if the image is not indexed
+     */
+    public HashMap<String, String> get(String key) {
+        Cursor cursor = helper.getReadableDatabase().query(TABLE, new String[]{COLUMN_DATA},
+                COLUMN_KEY + " = ?", new String[]{key}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? decode(cursor.getBlob(0)) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return keys of all indexed images with a GPS position
+     */
+    public List<String> queryWithGps() {
+        return queryKeys(COLUMN_LATITUDE + " IS NOT NULL", null);
+    }
+
+    /**
+     * @param start inclusive start of the range
+     * @param end   exclusive end of the range
+     * @return keys of all indexed images captured in the range, by DateTimeOriginal or DateTime
+     */
+    public List<String> queryTakenBetween(Date start, Date end) {
+        return queryKeys(COLUMN_TAKEN + " >= ? AND " + COLUMN_TAKEN + " < ?",
+                new String[]{String.valueOf(start.getTime()), String.valueOf(end.getTime())});
+    }
+
+    /**
+     * @return number of indexed images
+     */
+    public int size() {
+        Cursor cursor = helper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void close() {
+        helper.close();
+    }
+
+    private List<String> queryKeys(String where, String[] args) {
+        List<String> keys = new ArrayList<>();
+        Cursor cursor = helper.getReadableDatabase().query(TABLE, new String[]{COLUMN_KEY}, where,
+                args, null, null, COLUMN_TAKEN);
+        try {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return keys;
+    }
+
+    private Map<String, long[]> loadFingerprints(String prefix) {
+        Map<String, long[]> fingerprints = new HashMap<>();
+        Cursor cursor = helper.getReadableDatabase().query(TABLE,
+                new String[]{COLUMN_KEY, COLUMN_SIZE, COLUMN_MODIFIED, COLUMN_GENERATION, COLUMN_TAGS},
+                "substr(" + COLUMN_KEY + ", 1, ?) = ?",
+                new String[]{String.valueOf(prefix.length()), prefix}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                fingerprints.put(cursor.getString(0),
+                        new long[]{cursor.getLong(1), cursor.getLong(2), cursor.getLong(3), cursor.getLong(4)});
+            }
+        } finally {
+            cursor.close();
+        }
+        return fingerprints;
+    }
+
+    private long[] loadFingerprint(String key) {
+        Cursor cursor = helper.getReadableDatabase().query(TABLE,
+                new String[]{COLUMN_SIZE, COLUMN_MODIFIED, COLUMN_GENERATION, COLUMN_TAGS},
+                COLUMN_KEY + " = ?", new String[]{key}, null, null, null);
+        try {
+            return cursor.moveToFirst()
+                    ? new long[]{cursor.getLong(0), cursor.getLong(1), cursor.getLong(2), cursor.getLong(3)} : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return size, modification time, generation and the hash of the indexed tag set
+     */
+    private static long[] fingerprint(ExifScanner.Source source, long tagSet) {
+        if (source instanceof MediaStoreSources.UriSource) {
+            MediaStoreSources.UriSource uriSource = (MediaStoreSources.UriSource) source;
+            return new long[]{uriSource.getSize(), uriSource.getDateModified(), uriSource.getGeneration(), tagSet};
+        }
+        File file = new File(source.getName());
+        return new long[]{file.length(), file.lastModified(), 0, tagSet};
+    }
+
+    /**
+     * @return hash of the tag names independent of set order, stable across runs
+     */
+    private static long tagSetHash(Set<String> tags) {
+        long hash = 1;
+        for (String tag : new TreeSet<>(tags)) {
+            hash = 31 * hash + tag.hashCode();
+        }
+        return hash;
+    }
+
+    private static ContentValues toValues(String key, long[] fingerprint, ExifData data) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_KEY, key);
+        values.put(COLUMN_SIZE, fingerprint[0]);
+        values.put(COLUMN_MODIFIED, fingerprint[1]);
+        values.put(COLUMN_GENERATION, fingerprint[2]);
+        values.put(COLUMN_TAGS, fingerprint[3]);
+        double[] latLong = data.getLatLong();
+        if (latLong != null) {
+            values.put(COLUMN_LATITUDE, latLong[0]);
+            values.put(COLUMN_LONGITUDE, latLong[1]);
+        } else {
+            values.putNull(COLUMN_LATITUDE);
+            values.putNull(COLUMN_LONGITUDE);
+        }
+        Date taken = data.getDate("DateTimeOriginal");
+        if (taken == null) taken = data.getDate("DateTime");
+        if (taken != null) {
+            values.put(COLUMN_TAKEN, taken.getTime());
+        } else {
+            values.putNull(COLUMN_TAKEN);
+        }
+        values.put(COLUMN_DATA, encode(data.toMap()));
+        return values;
+    }
+
+    private void write(List<ContentValues> batch) {
+        if (batch.isEmpty()) return;
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ContentValues values : batch) {
+                db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void delete(Set<String> keys) {
+        if (keys.isEmpty()) return;
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String key : keys) {
+                db.delete(TABLE, COLUMN_KEY + " = ?", new String[]{key});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static byte[] encode(Map<String, String> data) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(data.size());
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                String value = entry.getValue();
+                // maker notes and xmp blobs can be huge, they are not worth indexing in full
+                if (value.length() > MAX_VALUE_LENGTH) value = value.substring(0, MAX_VALUE_LENGTH);
+                out.writeUTF(entry.getKey());
+                out.writeUTF(value);
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static HashMap<String, String> decode(byte[] blob) {
+        HashMap<String, String> data = new HashMap<>();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob));
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                data.put(in.readUTF(), in.readUTF());
+            }
+        } catch (IOException e) {
+            // corrupt row, treat as empty
+        }
+        return data;
+    }
+}
@@ -0,0 +1,57 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+/**
+ * One image in a batch gallery export. Either an in memory bitmap or a source uri that is
+ * decoded when the entry is encoded.
+ */
+public class GalleryEntry {
+
+    private final Bitmap bitmap;
+    private final Uri source;
+    private final String albumName;
+    private final String fileName;
+
+    /**
+     * @param bitmap    bitmap to save
+     * @param albumName album name to save to in pictures directory
+     * @param fileName  name of file without extension
+     */
+    public GalleryEntry(Bitmap bitmap, String albumName, String fileName) {
+        this(bitmap, null, albumName, fileName);
+    }
+
+    /**
+     * @param source    uri of an image to decode and save
+     * @param albumName album name to save to in pictures directory
+     * @param fileName  name of file without extension
+     */
+    public GalleryEntry(Uri source, String albumName, String fileName) {
+        this(null, source, albumName, fileName);
+    }
+
+    private GalleryEntry(Bitmap bitmap, Uri source, String albumName, String fileName) {
+        this.bitmap = bitmap;
+        this.source = source;
+        this.albumName = albumName;
+        this.fileName = fileName;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    public Uri getSource() {
+        return source;
+    }
+
+    public String getAlbumName() {
+        return albumName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+}
@@ -0,0 +1,270 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Two level cache for derived images. A byte budgeted in memory LRU of bitmaps backed by an on
+ * disk cache of encoded images. Disk entries are written to a temp file and renamed into place so
+ * a crash never leaves a truncated entry behind, and the least recently used files are deleted
+ * once the disk budget is exceeded. Thread safe.
+ * <p>
+ * Bitmaps returned by the cache are shared. Callers must not recycle or release them.
+ */
+public class ImageCache {
+
+    private static final String DIRECTORY = "image_cache";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final LruCache<String, Bitmap> memory;
+    private final File directory;
+    private final long maxDiskBytes;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+    private long diskBytes = -1; // -1 until the directory has been scanned
+    private long memoryHitCount;
+    private long diskHitCount;
+    private long missCount;
+
+    /**
+     * cache in {@code getCacheDir()/image_cache} storing lossless PNGs on disk
+     *
+     * @param context        context
+     * @param maxMemoryBytes in memory budget
+     * @param maxDiskBytes   on disk budget
+     */
+    public ImageCache(Context context, int maxMemoryBytes, long maxDiskBytes) {
+        this(new File(context.getCacheDir(), DIRECTORY), maxMemoryBytes, maxDiskBytes,
+                Bitmap.CompressFormat.PNG, 100);
+    }
+
+    /**
+     * @param directory      directory for disk entries, used exclusively by this cache
+     * @param maxMemoryBytes in memory budget
+     * @param maxDiskBytes   on disk budget
+     * @param format         format of disk entries
+     * @param quality        quality of disk entries
+     */
+    public ImageCache(File directory, int maxMemoryBytes, long maxDiskBytes,
+                      Bitmap.CompressFormat format, int quality) {
+        this.memory = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.format = format;
+        this.quality = quality;
+    }
+
+    /**
+     * build a cache key from the identity of a source image and the transform applied to it
+     *
+     * @param source    identity of the source, including anything that changes when it is edited
+     * @param transform description of the transform applied to the source
+     * @return key usable as a file name
+     */
+    public String key(String source, String transform) {
+        String raw = source + "|" + transform + "|" + format + "|" + quality;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(raw.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param key cache key
+     * @return cached bitmap or null. Disk hits are decoded and promoted to memory
+     */
+    public Bitmap get(String key) {
+        Bitmap bitmap = memory.get(key);
+        if (bitmap != null) {
+            synchronized (this) {
+                memoryHitCount++;
+            }
+            return bitmap;
+        }
+        ensureDiskScanned();
+        File file = new File(directory, key);
+        if (file.isFile()) {
+            bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis()); // lru order
+                memory.put(key, bitmap);
+                synchronized (this) {
+                    diskHitCount++;
+                }
+                return bitmap;
+            }
+            // unreadable entry, drop it
+            delete(file);
+        }
+        synchronized (this) {
+            missCount++;
+        }
+        return null;
+    }
+
+    /**
+     * store a bitmap in memory and on disk. The disk write happens on the calling thread.
+     *
+     * @param key    cache key
+     * @param bitmap bitmap to cache. Must not be recycled or modified afterwards
+     */
+    public void put(String key, Bitmap bitmap) {
+        memory.put(key, bitmap);
+        writeToDisk(key, bitmap);
+    }
+
+    /**
+     * store a bitmap in memory right away and write it to disk on the executor, so the caller
+     * doesn't wait for the encode and sync. If the executor rejects the write the entry is only
+     * kept in memory.
+     *
+     * @param key      cache key
+     * @param bitmap   bitmap to cache. Must not be recycled or modified afterwards
+     * @param executor executor for the disk write
+     */
+    public void put(final String key, final Bitmap bitmap, Executor executor) {
+        memory.put(key, bitmap);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeToDisk(key, bitmap);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // a cache entry isn't worth blocking for, the next miss writes it
+        }
+    }
+
+    private void writeToDisk(String key, Bitmap bitmap) {
+        ensureDiskScanned();
+        File target = new File(directory, key);
+        File temp = null;
+        try {
+            temp = File.createTempFile(key, TEMP_SUFFIX, directory);
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                if (!bitmap.compress(format, quality, out)) throw new IOException("Compression failed");
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            long previous = target.length();
+            if (!temp.renameTo(target)) throw new IOException("Unable to move " + temp + " to " + target);
+            synchronized (this) {
+                diskBytes += target.length() - previous;
+            }
+            trimDisk();
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (temp != null) temp.delete();
+        }
+    }
+
+    /**
+     * remove all entries from memory and disk
+     */
+    public synchronized void clear() {
+        memory.evictAll();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        diskBytes = 0;
+    }
+
+    private synchronized void ensureDiskScanned() {
+        if (diskBytes >= 0) return;
+        directory.mkdirs();
+        long total = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(TEMP_SUFFIX)) {
+                    // left over from a write that never completed
+                    file.delete();
+                } else {
+                    total += file.length();
+                }
+            }
+        }
+        diskBytes = total;
+    }
+
+    private synchronized void trimDisk() {
+        if (diskBytes <= maxDiskBytes) return;
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (diskBytes <= maxDiskBytes) break;
+            if (file.getName().endsWith(TEMP_SUFFIX)) continue; // in flight write
+            delete(file);
+        }
+    }
+
+    private synchronized void delete(File file) {
+        long length = file.length();
+        if (file.delete()) diskBytes -= length;
+    }
+
+    public synchronized long getDiskBytes() {
+        return Math.max(diskBytes, 0);
+    }
+
+    public int getMemoryBytes() {
+        return memory.size();
+    }
+
+    public synchronized long getMemoryHitCount() {
+        return memoryHitCount;
+    }
+
+    public synchronized long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ImageCache[memory=" + memory.size() + "/" + memory.maxSize() + ", disk="
+                + getDiskBytes() + "/" + maxDiskBytes + ", memoryHits=" + memoryHitCount
+                + ", diskHits=" + diskHitCount + ", misses=" + missCount + "]";
+    }
+}
@@ -0,0 +1,96 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.graphics.Bitmap;
+
+import com.appstronautstudios.imagemanager.exif.ExifOutputStream;
+import com.appstronautstudios.imagemanager.exif.ExifWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses bitmaps according to {@link EncodeOptions}, including the size targeted mode and
+ * EXIF metadata for JPEG output
+ */
+public class ImageEncoder {
+
+    private ImageEncoder() {
+    }
+
+    /**
+     * @param bitmap  bitmap to encode
+     * @param options format, quality and optional size target
+     * @param out     destination, not closed
+     * @throws IOException if compression or writing fails
+     */
+    public static void encode(Bitmap bitmap, EncodeOptions options, OutputStream out) throws IOException {
+        byte[] segment = metadataSegment(options);
+        if (segment.length > 0) out = new ExifOutputStream(out, segment);
+        if (options.getTargetBytes() <= 0 || options.isLossless()) {
+            compress(bitmap, options.getFormat(), options.getQuality(), out);
+        } else {
+            encodeTargeted(bitmap, options, segment.length).writeTo(out);
+        }
+    }
+
+    /**
+     * @param bitmap  bitmap to encode
+     * @param options format, quality and optional size target
+     * @return encoded image
+     * @throws IOException if compression fails
+     */
+    public static byte[] encodeToBytes(Bitmap bitmap, EncodeOptions options) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(bitmap, options, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * binary search the highest quality whose output fits the size target. Output size grows
+     * monotonically with quality for the platform encoders so log2(range) encodes are enough.
+     * Metadata is added after the search so its size is taken off the target up front.
+     */
+    private static ByteArrayOutputStream encodeTargeted(Bitmap bitmap, EncodeOptions options, int overhead) throws IOException {
+        final long target = options.getTargetBytes() - overhead;
+        ByteArrayOutputStream attempt = new ByteArrayOutputStream();
+        compress(bitmap, options.getFormat(), options.getQuality(), attempt);
+        if (attempt.size() <= target) return attempt;
+
+        ByteArrayOutputStream best = null;
+        ByteArrayOutputStream spare = new ByteArrayOutputStream(attempt.size());
+        int low = options.getMinQuality();
+        int high = options.getQuality() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            spare.reset();
+            compress(bitmap, options.getFormat(), mid, spare);
+            if (spare.size() <= target) {
+                // keep this result and try higher qualities, reusing the previous best buffer
+                ByteArrayOutputStream previous = best;
+                best = spare;
+                spare = previous != null ? previous : new ByteArrayOutputStream(best.size());
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (best != null) return best;
+        // nothing fits, fall back to the smallest allowed output. The search always ends on the
+        // minimum quality, so spare already holds it, unless there was nothing below the first attempt
+        return options.getMinQuality() < options.getQuality() ? spare : attempt;
+    }
+
+    /**
+     * @return APP1 segment for the options' metadata, empty if there is none or the output isn't
+     * JPEG
+     */
+    private static byte[] metadataSegment(EncodeOptions options) {
+        if (options.getMetadata() == null || options.getFormat() != Bitmap.CompressFormat.JPEG) return new byte[0];
+        return ExifWriter.buildSegment(options.getMetadata());
+    }
+
+    private static void compress(Bitmap bitmap, Bitmap.CompressFormat format, int quality, OutputStream out) throws IOException {
+        if (!bitmap.compress(format, quality, out)) throw new IOException("Compression failed");
+    }
+}
@@ -0,0 +1,162 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.BaseColumns;
+import android.provider.MediaStore;
+
+import com.appstronautstudios.imagemanager.exif.ExifScanner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * MediaStore query results as {@link ExifScanner} sources. The query runs lazily when iteration
+ * starts and rows are read one at a time, so scanning starts before the whole cursor is walked.
+ * Iterators are {@link Closeable}; callers that stop early must close them to release the cursor.
+ */
+public class MediaStoreSources implements Iterable<ExifScanner.Source> {
+
+    private final ContentResolver resolver;
+    private final Uri collection;
+    private final String selection;
+    private final String[] selectionArgs;
+
+    /**
+     * @param resolver      content resolver
+     * @param collection    MediaStore collection, e.g. {@code MediaStore.Images.Media.EXTERNAL_CONTENT_URI}
+     * @param selection     optional where clause
+     * @param selectionArgs optional where arguments
+     */
+    public MediaStoreSources(ContentResolver resolver, Uri collection, String selection, String[] selectionArgs) {
+        this.resolver = resolver;
+        this.collection = collection;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+    }
+
+    @Override
+    public Iterator<ExifScanner.Source> iterator() {
+        String[] projection;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            projection = new String[]{BaseColumns._ID, MediaStore.MediaColumns.SIZE,
+                    MediaStore.MediaColumns.DATE_MODIFIED, MediaStore.MediaColumns.GENERATION_MODIFIED};
+        } else {
+            projection = new String[]{BaseColumns._ID, MediaStore.MediaColumns.SIZE,
+                    MediaStore.MediaColumns.DATE_MODIFIED};
+        }
+        final Cursor cursor = resolver.query(collection, projection, appendJpegFilter(selection),
+                selectionArgs, null);
+        return new CursorIterator(cursor);
+    }
+
+    /**
+     * Walks the cursor. Closed by {@link ExifScanner} when the scan ends, and by itself once
+     * exhausted, so the cursor is released even if a scan is cancelled part way.
+     */
+    private class CursorIterator implements Iterator<ExifScanner.Source>, Closeable {
+        private final Cursor cursor;
+        private boolean hasNext;
+
+        CursorIterator(Cursor cursor) {
+            this.cursor = cursor;
+            this.hasNext = cursor != null && cursor.moveToFirst();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!hasNext) close();
+            return hasNext;
+        }
+
+        @Override
+        public ExifScanner.Source next() {
+            if (!hasNext) throw new NoSuchElementException();
+            Uri uri = ContentUris.withAppendedId(collection, cursor.getLong(0));
+            long generation = cursor.getColumnCount() > 3 ? cursor.getLong(3) : 0;
+            UriSource source = new UriSource(resolver, uri, cursor.getLong(1), cursor.getLong(2), generation);
+            hasNext = cursor.moveToNext();
+            return source;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            hasNext = false;
+            if (cursor != null && !cursor.isClosed()) cursor.close();
+        }
+    }
+
+    private static String appendJpegFilter(String selection) {
+        String jpeg = MediaStore.MediaColumns.MIME_TYPE + " = 'image/jpeg'";
+        return selection == null ? jpeg : "(" + selection + ") AND " + jpeg;
+    }
+
+    /**
+     * content uri source with the MediaStore fields used to detect changes
+     */
+    public static class UriSource implements ExifScanner.Source {
+        private final ContentResolver resolver;
+        private final Uri uri;
+        private final long size;
+        private final long dateModified;
+        private final long generation;
+
+        public UriSource(ContentResolver resolver, Uri uri, long size, long dateModified, long generation) {
+            this.resolver = resolver;
+            this.uri = uri;
+            this.size = size;
+            this.dateModified = dateModified;
+            this.generation = generation;
+        }
+
+        public Uri getUri() {
+            return uri;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return MediaStore DATE_MODIFIED in seconds
+         */
+        public long getDateModified() {
+            return dateModified;
+        }
+
+        /**
+         * @return MediaStore GENERATION_MODIFIED, 0 before android 11
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        @Override
+        public String getName() {
+            return uri.toString();
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            InputStream in = resolver.openInputStream(uri);
+            if (in == null) throw new IOException("Unable to open " + uri);
+            return in;
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+    }
+}
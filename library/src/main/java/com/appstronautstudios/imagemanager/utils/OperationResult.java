@@ -0,0 +1,56 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import java.util.Locale;
+
+/**
+ * Result of an image operation with the time spent in each stage. For batches, stage times are
+ * summed over all items, so with parallel encoding they can add up to more than the total.
+ *
+ * @param <T> result type
+ */
+public class OperationResult<T> {
+
+    public enum Stage {
+        DECODE, SCALE, ENCODE, WRITE
+    }
+
+    private final T value;
+    private final long[] stageNanos;
+    private final long totalNanos;
+
+    public OperationResult(T value, long[] stageNanos, long totalNanos) {
+        if (stageNanos.length != Stage.values().length) throw new IllegalArgumentException("One time per stage expected");
+        this.value = value;
+        this.stageNanos = stageNanos.clone();
+        this.totalNanos = totalNanos;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @param stage stage
+     * @return time spent in the stage, 0 if the operation does not have it
+     */
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * @return wall clock time of the whole operation, including waiting for a worker
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            builder.append(stage.name().toLowerCase(Locale.US)).append('=')
+                    .append(String.format(Locale.US, "%.1fms ", stageNanos[stage.ordinal()] / 1e6));
+        }
+        return builder.append(String.format(Locale.US, "total=%.1fms", totalNanos / 1e6)).toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.appstronautstudios.imagemanager.utils;
+
+/**
+ * Snapshot of how far an operation has got
+ */
+public class Progress {
+
+    private final long bytesWritten;
+    private final long totalBytes;
+    private final int itemsDone;
+    private final int totalItems;
+
+    public Progress(long bytesWritten, long totalBytes, int itemsDone, int totalItems) {
+        this.bytesWritten = bytesWritten;
+        this.totalBytes = totalBytes;
+        this.itemsDone = itemsDone;
+        this.totalItems = totalItems;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return total bytes to write, -1 if not known up front
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getItemsDone() {
+        return itemsDone;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    /**
+     * @return completion from 0 to 1 by items, or by bytes for single item operations, -1 if
+     * unknown
+     */
+    public float getFraction() {
+        if (totalItems > 1) return (float) itemsDone / totalItems;
+        if (totalBytes > 0) return (float) bytesWritten / totalBytes;
+        return totalItems == 1 ? itemsDone : -1;
+    }
+
+    @Override
+    public String toString() {
+        return itemsDone + "/" + totalItems + " items, " + bytesWritten + "/" + totalBytes + " bytes";
+    }
+}
@@ -0,0 +1,44 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import com.appstronautstudios.imagemanager.managers.ImageManager;
+
+/**
+ * One output size of a rendition set, e.g. a 128px thumbnail next to a 2048px upload copy.
+ */
+public class Rendition {
+
+    private final int width;
+    private final int height;
+    private final ImageManager.ScalingLogic scalingLogic;
+    private final EncodeOptions options;
+
+    /**
+     * @param width        wanted width
+     * @param height       wanted height
+     * @param scalingLogic how to fit the image into width x height
+     * @param options      output format and quality
+     */
+    public Rendition(int width, int height, ImageManager.ScalingLogic scalingLogic, EncodeOptions options) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("width and height must be positive");
+        this.width = width;
+        this.height = height;
+        this.scalingLogic = scalingLogic;
+        this.options = options;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public ImageManager.ScalingLogic getScalingLogic() {
+        return scalingLogic;
+    }
+
+    public EncodeOptions getOptions() {
+        return options;
+    }
+}
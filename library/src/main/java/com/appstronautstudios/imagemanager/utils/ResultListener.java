@@ -0,0 +1,18 @@
+package com.appstronautstudios.imagemanager.utils;
+
+/**
+ * Typed outcome and progress of an image operation. All methods are called on the main thread.
+ *
+ * @param <T> result type
+ */
+public interface ResultListener<T> {
+    void onProgress(Progress progress);
+
+    void onSuccess(OperationResult<T> result);
+
+    /**
+     * @param e failure reason, a {@link java.util.concurrent.CancellationException} if the
+     *          operation was stopped through its {@link CancellationToken}
+     */
+    void onFailure(Exception e);
+}
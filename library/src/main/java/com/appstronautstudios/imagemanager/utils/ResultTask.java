@@ -0,0 +1,64 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cancellable task that reports its outcome to a {@link SuccessFailListener} on the main thread.
+ * Cancelled tasks do not call the listener.
+ *
+ * @param <T> result type
+ */
+public class ResultTask<T> extends FutureTask<T> {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private final SuccessFailListener listener;
+
+    public ResultTask(Callable<T> callable, SuccessFailListener listener) {
+        super(callable);
+        this.listener = listener;
+    }
+
+    /**
+     * complete the task with an error without running it
+     *
+     * @param e failure reason
+     */
+    public void fail(Exception e) {
+        setException(e);
+    }
+
+    @Override
+    protected void done() {
+        if (listener == null || isCancelled()) return;
+        Object result;
+        boolean success;
+        try {
+            result = get();
+            success = true;
+        } catch (ExecutionException e) {
+            result = e.getCause();
+            success = false;
+        } catch (Exception e) {
+            result = e;
+            success = false;
+        }
+        final Object outcome = result;
+        final boolean succeeded = success;
+        MAIN_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                if (succeeded) {
+                    listener.success(outcome);
+                } else {
+                    listener.failure(outcome);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Staging area for shared images. Every bitmap is written to a file named after a hash of its
+ * pixels and encoding, so concurrent shares never overwrite each other and sharing the same image
+ * again reuses the existing file. Files are written to a temp name and renamed into place so a
+ * receiving app never sees a partial image. Old files are removed once they exceed the age or
+ * size budget. Thread safe.
+ */
+public class ShareCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long CLEANUP_INTERVAL_MS = 60 * 60 * 1000L;
+
+    private final File directory;
+    private final long maxAgeMillis;
+    private final long maxBytes;
+    private long lastCleanup;
+
+    /**
+     * @param directory    staging directory, must be exposed through the share FileProvider
+     * @param maxAgeMillis files older than this are deleted. Keep it long enough for slow
+     *                     receiving apps to finish reading
+     * @param maxBytes     oldest files are deleted once the directory grows past this size
+     */
+    public ShareCache(File directory, long maxAgeMillis, long maxBytes) {
+        this.directory = directory;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * encode a bitmap into the staging area, or reuse the file from an earlier share of the same
+     * content. Does disk I/O, call from a background thread.
+     *
+     * @param bitmap  bitmap to stage
+     * @param options output format and quality
+     * @return staged file
+     * @throws IOException if the file can't be written
+     */
+    public File stage(Bitmap bitmap, EncodeOptions options) throws IOException {
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File target = new File(directory, contentHash(bitmap, options) + options.getExtension());
+        synchronized (this) {
+            if (target.isFile()) {
+                // same image shared before, refresh its age so cleanup keeps it
+                target.setLastModified(System.currentTimeMillis());
+                maybeCleanup(target);
+                return target;
+            }
+        }
+        File temp = File.createTempFile(target.getName(), TEMP_SUFFIX, directory);
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                ImageEncoder.encode(bitmap, options, out);
+            } finally {
+                out.close();
+            }
+            synchronized (this) {
+                if (!temp.renameTo(target)) throw new IOException("Unable to move " + temp + " to " + target);
+                maybeCleanup(target);
+            }
+            return target;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * delete staged files past the age budget, then the oldest files until the directory fits the
+     * size budget
+     */
+    public synchronized void cleanup() {
+        cleanup(null);
+    }
+
+    /**
+     * @param keep file about to be handed out, never deleted even if it alone exceeds the size
+     *             budget. Null to apply the budgets to every file
+     */
+    private void cleanup(File keep) {
+        lastCleanup = System.currentTimeMillis();
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(b.lastModified(), a.lastModified()); // newest first
+            }
+        });
+        long total = 0;
+        for (File file : files) {
+            long age = lastCleanup - file.lastModified();
+            if (file.getName().endsWith(TEMP_SUFFIX) && age < maxAgeMillis) continue; // in flight
+            total += file.length();
+            if (file.equals(keep)) continue;
+            if (age > maxAgeMillis || total > maxBytes) file.delete();
+        }
+    }
+
+    private void maybeCleanup(File keep) {
+        if (System.currentTimeMillis() - lastCleanup >= CLEANUP_INTERVAL_MS) cleanup(keep);
+    }
+
+    /**
+     * hash the pixels of a bitmap row by row without copying the whole bitmap. Hardware bitmaps
+     * can't be read directly and are copied to software memory first.
+     */
+    private static String contentHash(Bitmap bitmap, EncodeOptions options) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            Bitmap software = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+            if (software == null) throw new IllegalArgumentException("Unable to read hardware bitmap pixels");
+            try {
+                // hash the original config so hardware and software shares stay distinct
+                return hashPixels(software, bitmap.getConfig(), options);
+            } finally {
+                software.recycle();
+            }
+        }
+        return hashPixels(bitmap, bitmap.getConfig(), options);
+    }
+
+    private static String hashPixels(Bitmap bitmap, Bitmap.Config config, EncodeOptions options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            digest.update((width + "x" + height + ":" + config + ":" + options)
+                    .getBytes(StandardCharsets.UTF_8));
+            int[] row = new int[width];
+            ByteBuffer bytes = ByteBuffer.allocate(width * 4);
+            for (int y = 0; y < height; y++) {
+                bitmap.getPixels(row, 0, width, 0, y, width, 1);
+                bytes.clear();
+                bytes.asIntBuffer().put(row);
+                digest.update(bytes.array(), 0, width * 4);
+            }
+            byte[] hash = digest.digest();
+            StringBuilder builder = new StringBuilder(40);
+            // 160 bits are plenty to avoid collisions in a cache directory
+            for (int i = 0; i < 20; i++) {
+                builder.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Build;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes rectangular regions of a large image without decoding the rest of it. Useful for crops
+ * of huge images and for tiled deep zoom viewers. Safe to use from multiple threads, region
+ * decodes are serialized by the platform decoder. Call {@link #close()} when done.
+ */
+public class TileDecoder implements Closeable {
+
+    private final BitmapRegionDecoder decoder;
+
+    private TileDecoder(BitmapRegionDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * @param file JPEG, PNG, WEBP or HEIF file
+     * @return decoder for the file
+     * @throws IOException if the file can't be read or the format does not support region decoding
+     */
+    @SuppressWarnings("deprecation")
+    public static TileDecoder open(File file) throws IOException {
+        BitmapRegionDecoder decoder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            decoder = BitmapRegionDecoder.newInstance(file.getAbsolutePath());
+        } else {
+            decoder = BitmapRegionDecoder.newInstance(file.getAbsolutePath(), false);
+        }
+        if (decoder == null) throw new IOException("Unable to open " + file);
+        return new TileDecoder(decoder);
+    }
+
+    /**
+     * the compressed stream is read fully into memory, the pixels are not. The stream is not
+     * closed.
+     *
+     * @param inputStream JPEG, PNG, WEBP or HEIF stream
+     * @return decoder for the stream
+     * @throws IOException if the stream can't be read or the format does not support region decoding
+     */
+    @SuppressWarnings("deprecation")
+    public static TileDecoder open(InputStream inputStream) throws IOException {
+        BitmapRegionDecoder decoder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            decoder = BitmapRegionDecoder.newInstance(inputStream);
+        } else {
+            decoder = BitmapRegionDecoder.newInstance(inputStream, false);
+        }
+        if (decoder == null) throw new IOException("Unable to open stream");
+        return new TileDecoder(decoder);
+    }
+
+    public int getWidth() {
+        return decoder.getWidth();
+    }
+
+    public int getHeight() {
+        return decoder.getHeight();
+    }
+
+    /**
+     * @param tileSize tile edge length in source pixels
+     * @return number of tile columns covering the image
+     */
+    public int getColumnCount(int tileSize) {
+        return (getWidth() + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * @param tileSize tile edge length in source pixels
+     * @return number of tile rows covering the image
+     */
+    public int getRowCount(int tileSize) {
+        return (getHeight() + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * @param region     area of the source image to decode, clamped to the image bounds
+     * @param sampleSize sub-sampling factor, 1 for full resolution
+     * @return decoded region, width and height divided by the sample size
+     * @throws IOException if the region is empty or can't be decoded
+     */
+    public Bitmap decodeRegion(Rect region, int sampleSize) throws IOException {
+        Rect clamped = new Rect(region);
+        if (!clamped.intersect(0, 0, getWidth(), getHeight())) {
+            throw new IOException("Region " + region + " is outside the image");
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = Math.max(1, sampleSize);
+        Bitmap bitmap = decoder.decodeRegion(clamped, options);
+        if (bitmap == null) throw new IOException("Unable to decode region " + clamped);
+        return bitmap;
+    }
+
+    /**
+     * @param column     tile column, starting at 0
+     * @param row        tile row, starting at 0
+     * @param tileSize   tile edge length in source pixels. Edge tiles may be smaller
+     * @param sampleSize sub-sampling factor, 1 for full resolution
+     * @return decoded tile
+     * @throws IOException if the tile is outside the image or can't be decoded
+     */
+    public Bitmap decodeTile(int column, int row, int tileSize, int sampleSize) throws IOException {
+        int left = column * tileSize;
+        int top = row * tileSize;
+        return decodeRegion(new Rect(left, top, left + tileSize, top + tileSize), sampleSize);
+    }
+
+    @Override
+    public void close() {
+        decoder.recycle();
+    }
+}
@@ -0,0 +1,171 @@
+package com.appstronautstudios.imagemanager.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Renders a laid out view in horizontal bands of a fixed height, reusing one tile bitmap, so the
+ * full height of the view never has to fit in memory. Drawing happens on the main thread while the
+ * caller consumes tiles on a background thread. The next tile is drawn while the caller works on
+ * the pixels of the previous one.
+ */
+public class ViewTileRenderer {
+
+    private final View view;
+    private final int width;
+    private final int height;
+    private final int tileHeight;
+    private final boolean opaque;
+    private final Bitmap tile;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int nextTop;
+    private CountDownLatch pending;
+    private volatile RuntimeException drawError;
+
+    /**
+     * @param view       view to render, laid out at its full content height, e.g. the child of a
+     *                   ScrollView
+     * @param tileHeight rows per tile
+     */
+    public ViewTileRenderer(View view, int tileHeight) {
+        if (tileHeight <= 0) throw new IllegalArgumentException("tileHeight must be positive");
+        if (view.getWidth() <= 0 || view.getHeight() <= 0) throw new IllegalStateException("View is not laid out");
+        this.view = view;
+        this.width = view.getWidth();
+        this.height = view.getHeight();
+        this.tileHeight = Math.min(tileHeight, height);
+        Drawable background = view.getBackground();
+        this.opaque = background != null && background.getOpacity() == PixelFormat.OPAQUE;
+        this.tile = Bitmap.createBitmap(width, this.tileHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * @return true if the view's background covers every pixel, so the output needs no alpha
+     */
+    public boolean isOpaque() {
+        return opaque;
+    }
+
+    /**
+     * @return false once every row has been returned
+     */
+    public boolean hasNext() {
+        return nextTop < height || pending != null;
+    }
+
+    /**
+     * Copy the next tile's pixels. Must not be called on the main thread.
+     *
+     * @param pixels destination, at least width * tile height ints
+     * @return number of rows copied, the last tile can be shorter
+     * @throws InterruptedException if interrupted while waiting for the main thread
+     */
+    public int next(int[] pixels) throws InterruptedException {
+        int top = awaitTile();
+        int rows = Math.min(tileHeight, height - top);
+        tile.getPixels(pixels, 0, width, 0, 0, width, rows);
+        requestDraw();
+        return rows;
+    }
+
+    /**
+     * Wait for the next tile and pass its bitmap to the caller, which must be done with it before
+     * calling again. Must not be called on the main thread.
+     *
+     * @return the tile, shared and only valid until the next call. The last tile can have unused
+     * rows at the bottom, see {@link #getRows(int)}
+     * @throws InterruptedException if interrupted while waiting for the main thread
+     */
+    public Bitmap nextBitmap() throws InterruptedException {
+        awaitTile();
+        return tile;
+    }
+
+    /**
+     * @param index tile index
+     * @return rows of the view in the tile
+     */
+    public int getRows(int index) {
+        return Math.min(tileHeight, height - index * tileHeight);
+    }
+
+    /**
+     * @return number of tiles
+     */
+    public int getTileCount() {
+        return (height + tileHeight - 1) / tileHeight;
+    }
+
+    /**
+     * free the tile bitmap once no tile is being drawn. Doesn't wait: the recycle is queued on the
+     * main thread behind any draw still pending, so it is safe even from an interrupted thread.
+     */
+    public void release() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                tile.recycle();
+            }
+        });
+    }
+
+    /**
+     * @return top row of the tile now in the bitmap
+     */
+    private int awaitTile() throws InterruptedException {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("Tiles are drawn on the main thread, consume them on another");
+        }
+        if (pending == null) {
+            if (nextTop >= height) throw new IllegalStateException("No more tiles");
+            requestDraw();
+        }
+        pending.await();
+        pending = null;
+        if (drawError != null) throw drawError;
+        return nextTop - tileHeight;
+    }
+
+    private void requestDraw() {
+        if (nextTop >= height) return;
+        final int top = nextTop;
+        final CountDownLatch latch = new CountDownLatch(1);
+        pending = latch;
+        nextTop += tileHeight;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tile.eraseColor(Color.TRANSPARENT);
+                    Canvas canvas = new Canvas(tile);
+                    canvas.translate(0, -top);
+                    view.draw(canvas); // includes the background
+                } catch (RuntimeException e) {
+                    drawError = e;
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package com.appstronautstudios.imagemanager.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    /**
+     * largest recordable value, 2^36 - 1 microseconds
+     */
+    private static final long MAX_MICROS = (1L << 36) - 1;
+    private static final int LAST_BUCKET = 32 + 31 * 32 - 1;
+
+    @Test
+    public void bucketsAreExactBelow64() {
+        for (long micros = 0; micros < 64; micros++) {
+            assertEquals(micros, LatencyHistogram.bucketIndex(micros));
+            assertEquals(micros, LatencyHistogram.highestValue((int) micros));
+        }
+    }
+
+    @Test
+    public void bucketsDoubleInWidthEachPowerOfTwo() {
+        // 64-127 in buckets of two, 128-255 in buckets of four
+        assertEquals(64, LatencyHistogram.bucketIndex(64));
+        assertEquals(64, LatencyHistogram.bucketIndex(65));
+        assertEquals(65, LatencyHistogram.bucketIndex(66));
+        assertEquals(95, LatencyHistogram.bucketIndex(127));
+        assertEquals(96, LatencyHistogram.bucketIndex(128));
+        assertEquals(96, LatencyHistogram.bucketIndex(131));
+        assertEquals(97, LatencyHistogram.bucketIndex(132));
+        assertEquals(65, LatencyHistogram.highestValue(64));
+        assertEquals(127, LatencyHistogram.highestValue(95));
+        assertEquals(131, LatencyHistogram.highestValue(96));
+    }
+
+    @Test
+    public void highestValueBoundsEachBucket() {
+        for (long micros = 0; micros < 1 << 16; micros++) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            long highest = LatencyHistogram.highestValue(index);
+            assertTrue(micros + " in bucket ending " + highest, highest >= micros);
+            assertEquals(index, LatencyHistogram.bucketIndex(highest));
+            assertEquals(index + 1, LatencyHistogram.bucketIndex(highest + 1));
+            // 32 linear buckets per power of two keep values within about 3%
+            assertTrue(highest - micros <= micros / 32);
+        }
+    }
+
+    @Test
+    public void valuesAreClampedToRange() {
+        assertEquals(LAST_BUCKET, LatencyHistogram.bucketIndex(MAX_MICROS));
+        assertEquals(MAX_MICROS, LatencyHistogram.highestValue(LAST_BUCKET));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(MAX_MICROS * 1000, snapshot.getMaxNanos());
+        assertEquals(MAX_MICROS * 1000, snapshot.getPercentileNanos(100));
+        assertEquals(0, snapshot.getPercentileNanos(50));
+    }
+
+    @Test
+    public void percentilesUseNearestRank() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100; micros++) {
+            histogram.record(micros * 1000L + 999);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getPercentileNanos(0));
+        assertEquals(1000, snapshot.getPercentileNanos(1));
+        assertEquals(50000, snapshot.getPercentileNanos(50));
+        assertEquals(51000, snapshot.getPercentileNanos(50.5));
+        // 64 and up share buckets of two, reported at the bucket's upper end
+        assertEquals(95000, snapshot.getPercentileNanos(95));
+        assertEquals(99000, snapshot.getPercentileNanos(99));
+        // but never above the exact max
+        assertEquals(100000, snapshot.getPercentileNanos(100));
+        assertEquals(100000, snapshot.getPercentileNanos(150));
+        assertEquals(50500, snapshot.getMeanNanos());
+    }
+
+    @Test
+    public void emptyAndResetReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getPercentileNanos(50));
+        histogram.record(5000);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentileNanos(99));
+        assertEquals(0, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getMeanNanos());
+    }
+}
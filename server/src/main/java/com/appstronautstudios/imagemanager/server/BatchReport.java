@@ -0,0 +1,70 @@
+package com.appstronautstudios.imagemanager.server;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link BatchThumbnailer} run
+ */
+public class BatchReport {
+
+    private final int images;
+    private final int renditions;
+    private final Map<File, Exception> failures;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+
+    public BatchReport(int images, int renditions, Map<File, Exception> failures, long bytesWritten,
+                       long elapsedNanos) {
+        this.images = images;
+        this.renditions = renditions;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return source images processed successfully
+     */
+    public int getImages() {
+        return images;
+    }
+
+    /**
+     * @return rendition files written
+     */
+    public int getRenditions() {
+        return renditions;
+    }
+
+    /**
+     * @return source files that failed and why
+     */
+    public Map<File, Exception> getFailures() {
+        return failures;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return source images processed per second of wall time
+     */
+    public double getImagesPerSecond() {
+        return elapsedNanos > 0 ? images * 1e9 / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d images (%d renditions, %d failed) in %.2f s, %.1f images/sec, %.1f MB written",
+                images, renditions, failures.size(), elapsedNanos / 1e9, getImagesPerSecond(),
+                bytesWritten / (1024.0 * 1024.0));
+    }
+}
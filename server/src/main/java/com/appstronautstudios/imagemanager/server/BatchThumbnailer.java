@@ -0,0 +1,194 @@
+package com.appstronautstudios.imagemanager.server;
+
+import com.appstronautstudios.imagemanager.exif.ExifData;
+import com.appstronautstudios.imagemanager.exif.ExifReader;
+import com.appstronautstudios.imagemanager.exif.ExifTags;
+import com.appstronautstudios.imagemanager.exif.ScrubPolicy;
+import com.appstronautstudios.imagemanager.resample.ResampleMode;
+import com.appstronautstudios.imagemanager.utils.IoExecutor;
+import com.appstronautstudios.imagemanager.utils.TaskScope;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write a set of renditions for every image in a directory. Files are streamed from the directory
+ * rather than listed up front and run on an {@link IoExecutor}, which bounds how many images are
+ * decoded at once so memory stays bounded however large the input is. Each source is decoded once
+ * and all renditions are made from that decode.
+ */
+public class BatchThumbnailer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<Rendition> renditions;
+    private final ResampleMode resampleMode;
+    private final ScrubPolicy metadataPolicy;
+    private final int threads;
+
+    /**
+     * @param renditions     renditions to write for each image
+     * @param resampleMode   resampling algorithm
+     * @param metadataPolicy EXIF to remove from JPEG renditions, null or {@link ScrubPolicy#ALL} to write none
+     * @param threads        images processed in parallel, on virtual threads where the runtime has them
+     */
+    public BatchThumbnailer(List<Rendition> renditions, ResampleMode resampleMode, ScrubPolicy metadataPolicy,
+                            int threads) {
+        if (renditions.isEmpty()) throw new IllegalArgumentException("No renditions");
+        if (threads <= 0) throw new IllegalArgumentException("Threads must be positive");
+        this.renditions = Collections.unmodifiableList(new ArrayList<>(renditions));
+        this.resampleMode = resampleMode;
+        this.metadataPolicy = metadataPolicy;
+        this.threads = threads;
+    }
+
+    /**
+     * Process every image file in a directory, not recursing into subdirectories. Output is named
+     * {@code <source name>_<rendition name>.<extension>}. A failing image is recorded in the report
+     * and does not stop the batch.
+     *
+     * @param inputDirectory  directory of source images
+     * @param outputDirectory directory for renditions, created if missing
+     * @return counts, failures and throughput
+     * @throws IOException          if a directory can't be read or created
+     * @throws InterruptedException if interrupted while waiting for work to finish
+     */
+    public BatchReport run(File inputDirectory, final File outputDirectory) throws IOException, InterruptedException {
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + outputDirectory);
+        }
+        final AtomicInteger images = new AtomicInteger();
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+        final Map<File, Exception> failures = new ConcurrentHashMap<>();
+        IoExecutor executor = IoExecutor.create(threads, "BatchThumbnailer");
+        long start = System.nanoTime();
+        DirectoryStream<Path> files = Files.newDirectoryStream(inputDirectory.toPath(), new DirectoryStream.Filter<Path>() {
+            @Override
+            public boolean accept(Path path) {
+                return Files.isRegularFile(path) && isImage(path.getFileName().toString());
+            }
+        });
+        TaskScope<Void> scope = executor.openScope(false);
+        try {
+            for (final Path path : files) {
+                // waits for a free slot, so only a bounded number of decoded images is held at once
+                scope.fork(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        File source = path.toFile();
+                        try {
+                            bytes.addAndGet(process(source, outputDirectory));
+                            images.incrementAndGet();
+                            written.addAndGet(renditions.size());
+                        } catch (Exception e) {
+                            failures.put(source, e);
+                        }
+                        return null;
+                    }
+                });
+            }
+            scope.join();
+        } finally {
+            scope.close();
+            files.close();
+            executor.shutdown();
+        }
+        return new BatchReport(images.get(), written.get(), failures, bytes.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * decode one source and write all its renditions
+     *
+     * @return bytes written
+     */
+    private long process(File source, File outputDirectory) throws IOException {
+        BufferedImage image = ImageIOBackend.read(source);
+        int orientation = ImageIOBackend.readOrientation(source);
+        ExifData metadata = null;
+        if (metadataPolicy != null && !metadataPolicy.isRemoveExif()) {
+            try {
+                metadata = ImageIOBackend.renditionMetadata(ExifReader.read(source, ExifTags.ALL), metadataPolicy);
+            } catch (IOException e) {
+                // not a JPEG or no readable EXIF, nothing to carry over
+            }
+        }
+        String baseName = baseName(source.getName());
+        long bytes = 0;
+        for (Rendition rendition : renditions) {
+            BufferedImage scaled = ImageIOBackend.createScaledImage(image, rendition.getWidth(),
+                    rendition.getHeight(), rendition.getScalingLogic(), orientation, resampleMode);
+            File destination = new File(outputDirectory,
+                    baseName + "_" + rendition.getName() + rendition.getFormat().getExtension());
+            // write to a temporary file so a failed encode never leaves a partial rendition behind
+            File temp = File.createTempFile(destination.getName(), ".tmp", outputDirectory);
+            try {
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE);
+                try {
+                    ImageIOBackend.encode(scaled, rendition.getFormat(), rendition.getQuality(), metadata, out);
+                } finally {
+                    out.close();
+                }
+                Files.move(temp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                temp.delete();
+            }
+            bytes += destination.length();
+        }
+        return bytes;
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png")
+                || lower.endsWith(".bmp") || lower.endsWith(".gif");
+    }
+
+    private static String baseName(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * {@code BatchThumbnailer <input dir> <output dir> [CROP|FIT:<width>x<height> ...]}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchThumbnailer <input dir> <output dir> [CROP|FIT:<width>x<height> ...]");
+            System.exit(2);
+        }
+        List<Rendition> renditions = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            renditions.add(Rendition.parse(args[i]));
+        }
+        if (renditions.isEmpty()) {
+            renditions.add(Rendition.parse("CROP:256x256"));
+            renditions.add(Rendition.parse("FIT:1024x1024"));
+        }
+        BatchThumbnailer thumbnailer = new BatchThumbnailer(renditions, ResampleMode.AREA_AVERAGE, ScrubPolicy.ALL,
+                Runtime.getRuntime().availableProcessors());
+        BatchReport report = thumbnailer.run(new File(args[0]), new File(args[1]));
+        System.out.println(report);
+        for (Map.Entry<File, Exception> failure : report.getFailures().entrySet()) {
+            System.err.println(failure.getKey() + ": " + failure.getValue());
+        }
+        System.exit(report.getFailures().isEmpty() ? 0 : 1);
+    }
+}
@@ -0,0 +1,264 @@
+package com.appstronautstudios.imagemanager.server;
+
+import com.appstronautstudios.imagemanager.exif.ExifData;
+import com.appstronautstudios.imagemanager.exif.ExifOutputStream;
+import com.appstronautstudios.imagemanager.exif.ExifReader;
+import com.appstronautstudios.imagemanager.exif.ExifScrubber;
+import com.appstronautstudios.imagemanager.exif.ScrubPolicy;
+import com.appstronautstudios.imagemanager.geometry.Orientation;
+import com.appstronautstudios.imagemanager.geometry.ScalingLogic;
+import com.appstronautstudios.imagemanager.geometry.ScalingMath;
+import com.appstronautstudios.imagemanager.resample.ResampleMode;
+import com.appstronautstudios.imagemanager.resample.Resampler;
+import com.appstronautstudios.imagemanager.resample.RowSource;
+import com.appstronautstudios.imagemanager.utils.PngStreamWriter;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Scale, crop, orient and encode images on a plain JVM with the same rules as
+ * {@code ImageManager.createScaledBitmap}. Source and destination rectangles come from the shared
+ * {@link ScalingMath} and pixels go through the shared {@link Resampler}, so crops, output sizes and
+ * orientation handling match the device exactly. Pixels match exactly for AREA_AVERAGE and
+ * LANCZOS3. BILINEAR and PROGRESSIVE are drawn by Skia on the device and only match within
+ * filter rounding. Decoders differ too, so JPEG sources can differ by a few levels per channel.
+ */
+public final class ImageIOBackend {
+
+    private static final String ORIENTATION = "Orientation";
+    private static final Set<String> ORIENTATION_TAG = Collections.singleton(ORIENTATION);
+    /**
+     * tags describing the source pixels that are wrong for a scaled, upright rendition
+     */
+    private static final Set<String> STALE_TAGS = new HashSet<>(Arrays.asList(ORIENTATION, "ImageWidth",
+            "ImageLength", "PixelXDimension", "PixelYDimension"));
+
+    private ImageIOBackend() {
+    }
+
+    /**
+     * @param file image file in any format ImageIO reads
+     * @return decoded image, in stored orientation
+     * @throws IOException if the file can't be read or decoded
+     */
+    public static BufferedImage read(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) throw new IOException("Unable to decode " + file);
+        return image;
+    }
+
+    /**
+     * @return EXIF orientation of the file, normal if it has none or can't be read
+     */
+    public static int readOrientation(File file) {
+        try {
+            return ExifReader.read(file, ORIENTATION_TAG).getInt(ORIENTATION, Orientation.NORMAL);
+        } catch (IOException e) {
+            return Orientation.NORMAL;
+        }
+    }
+
+    /**
+     * Scale an image to the destination area, cropping or fitting according to the scaling logic
+     * and applying the EXIF orientation
+     *
+     * @param image        source image in stored orientation
+     * @param dstWidth     wanted width of the destination image
+     * @param dstHeight    wanted height of the destination image
+     * @param scalingLogic logic to use to avoid image stretching
+     * @param orientation  EXIF orientation of the source, see {@link Orientation}
+     * @param resampleMode resampling algorithm
+     * @return new scaled image, upright. Smaller than requested in one dimension for FIT
+     */
+    public static BufferedImage createScaledImage(final BufferedImage image, int dstWidth, int dstHeight,
+                                                  ScalingLogic scalingLogic, int orientation,
+                                                  ResampleMode resampleMode) {
+        final int srcWidth = image.getWidth();
+        final int srcHeight = image.getHeight();
+        int[] srcRect = new int[4];
+        int[] dstRect = new int[4];
+        ScalingMath.calculateSrcRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic, orientation, srcRect);
+        ScalingMath.calculateDstRect(srcWidth, srcHeight, dstWidth, dstHeight, scalingLogic, orientation, dstRect);
+        final int width = dstRect[2] - dstRect[0];
+        final int height = dstRect[3] - dstRect[1];
+        // destination size in stored orientation
+        final int targetWidth = Orientation.isTransposed(orientation) ? height : width;
+        final int targetHeight = Orientation.isTransposed(orientation) ? width : height;
+
+        final int regionWidth = srcRect[2] - srcRect[0];
+        final int regionHeight = srcRect[3] - srcRect[1];
+        final int left = srcRect[0];
+        final int top = srcRect[1];
+        // read the region a stripe at a time. Batches run images in parallel, so each resample
+        // stays on its calling thread
+        RowSource source = new RowSource() {
+            @Override
+            public void readRows(int y, int count, int[] dst, int offset) {
+                int[] rows = pixels(image, left, top + y, regionWidth, count);
+                System.arraycopy(rows, 0, dst, offset, rows.length);
+            }
+        };
+        int[] dst = new int[targetWidth * targetHeight];
+        Resampler.resample(source, regionWidth, regionHeight, dst, targetWidth, targetHeight, resampleMode, null);
+        return image(orient(dst, targetWidth, targetHeight, orientation), width, height,
+                image.getColorModel().hasAlpha());
+    }
+
+    /**
+     * rotate or flip pixels from stored to displayed orientation, pixel exact
+     *
+     * @return displayed pixels, width and height swapped for transposing orientations
+     */
+    static int[] orient(int[] pixels, int width, int height, int orientation) {
+        // the stored -> displayed transform of the last pixel index maps pixel centres exactly
+        float[] transform = Orientation.transform(orientation, width - 1, height - 1);
+        if (transform == null) return pixels;
+        final int a = (int) transform[0], b = (int) transform[1], c = (int) transform[2];
+        final int d = (int) transform[3], e = (int) transform[4], f = (int) transform[5];
+        final int orientedWidth = Orientation.orientedWidth(width, height, orientation);
+        int[] oriented = new int[pixels.length];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                oriented[(d * x + e * y + f) * orientedWidth + a * x + b * y + c] = pixels[row + x];
+            }
+        }
+        return oriented;
+    }
+
+    /**
+     * @return non-premultiplied ARGB pixels of a region, packed rows
+     */
+    static int[] pixels(BufferedImage image, int left, int top, int width, int height) {
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel
+                && image.getRaster().getParent() == null) {
+            // read the backing array directly instead of converting pixel by pixel
+            int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+            int[] region = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(data, (top + y) * stride + left, region, y * width, width);
+            }
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                for (int i = 0; i < region.length; i++) region[i] |= 0xFF000000;
+            }
+            return region;
+        }
+        // let Java2D convert any other layout in one native blit
+        BufferedImage converted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = converted.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(image, -left, -top, null);
+        g.dispose();
+        return ((DataBufferInt) converted.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * wrap packed pixels in an image without copying
+     */
+    static BufferedImage image(int[] pixels, int width, int height, boolean alpha) {
+        DirectColorModel model = alpha ? (DirectColorModel) ColorModel.getRGBdefault()
+                : new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+        WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, width * height), width, height,
+                width, model.getMasks(), null);
+        return new BufferedImage(model, raster, false, null);
+    }
+
+    /**
+     * @param image    image to encode
+     * @param format   output format
+     * @param quality  JPEG quality 0-100, ignored for PNG
+     * @param metadata EXIF block written into JPEG output, null for none
+     * @param out      destination, not closed
+     * @throws IOException if the stream can't be written
+     */
+    public static void encode(BufferedImage image, Rendition.Format format, int quality, ExifData metadata,
+                              OutputStream out) throws IOException {
+        if (format == Rendition.Format.PNG) {
+            boolean alpha = image.getColorModel().hasAlpha();
+            PngStreamWriter writer = new PngStreamWriter(out, image.getWidth(), image.getHeight(), alpha);
+            try {
+                writer.writeRows(pixels(image, 0, 0, image.getWidth(), image.getHeight()), 0, image.getWidth(),
+                        image.getHeight());
+                writer.finish();
+            } finally {
+                writer.release();
+            }
+            return;
+        }
+        if (image.getColorModel().hasAlpha()) {
+            // JPEG has no alpha, transparent areas turn black like Bitmap.compress
+            BufferedImage opaque = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = opaque.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            image = opaque;
+        }
+        if (metadata != null && metadata.size() > 0) out = new ExifOutputStream(out, metadata);
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) throw new IOException("No JPEG writer available");
+        ImageWriter writer = writers.next();
+        ImageOutputStream stream = ImageIO.createImageOutputStream(out);
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality / 100f);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            stream.close();
+        }
+        out.flush();
+    }
+
+    /**
+     * @param source EXIF of the source image
+     * @param policy tags to remove, null or a policy removing all EXIF to keep nothing
+     * @return tags to carry over to a rendition: what the policy keeps, minus orientation and size
+     * tags that no longer describe the scaled, upright pixels. Null if nothing is kept
+     */
+    public static ExifData renditionMetadata(ExifData source, ScrubPolicy policy) {
+        if (source == null || policy == null || policy.isRemoveExif()) return null;
+        Set<String> kept = new HashSet<>(source.getTags());
+        kept.removeAll(policy.getRemovedTags());
+        kept.removeAll(STALE_TAGS);
+        return kept.isEmpty() ? null : source.filter(kept);
+    }
+
+    /**
+     * remove metadata from a JPEG without re-encoding it. See {@link ExifScrubber}
+     *
+     * @param source      JPEG file
+     * @param destination output file
+     * @param policy      what to remove
+     * @throws IOException if the source can't be read or the destination written
+     */
+    public static void stripMetadata(File source, File destination, ScrubPolicy policy) throws IOException {
+        ExifScrubber.scrub(source, destination, policy);
+    }
+}
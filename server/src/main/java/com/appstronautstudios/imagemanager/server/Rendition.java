@@ -0,0 +1,93 @@
+package com.appstronautstudios.imagemanager.server;
+
+import com.appstronautstudios.imagemanager.geometry.ScalingLogic;
+
+import java.util.Locale;
+
+/**
+ * One output of {@link BatchThumbnailer}: size, scaling logic and encoding. Immutable.
+ */
+public class Rendition {
+
+    public enum Format {
+        JPEG(".jpg"), PNG(".png");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final String name;
+    private final int width;
+    private final int height;
+    private final ScalingLogic scalingLogic;
+    private final Format format;
+    private final int quality;
+
+    /**
+     * @param name         suffix of the output file name
+     * @param width        destination width
+     * @param height       destination height
+     * @param scalingLogic logic to use to avoid image stretching
+     * @param format       output format
+     * @param quality      JPEG quality 0-100, ignored for PNG
+     */
+    public Rendition(String name, int width, int height, ScalingLogic scalingLogic, Format format, int quality) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Size must be positive");
+        if (quality < 0 || quality > 100) throw new IllegalArgumentException("Quality must be 0-100");
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.scalingLogic = scalingLogic;
+        this.format = format;
+        this.quality = quality;
+    }
+
+    /**
+     * @param spec {@code CROP:256x256} or {@code FIT:1024x1024}, encoded as JPEG quality 85
+     */
+    public static Rendition parse(String spec) {
+        String[] parts = spec.split("[:x]");
+        if (parts.length != 3) throw new IllegalArgumentException("Expected LOGIC:WIDTHxHEIGHT, got " + spec);
+        ScalingLogic logic = ScalingLogic.valueOf(parts[0].toUpperCase(Locale.US));
+        int width = Integer.parseInt(parts[1]);
+        int height = Integer.parseInt(parts[2]);
+        return new Rendition(logic.name().toLowerCase(Locale.US) + width + "x" + height, width, height, logic,
+                Format.JPEG, 85);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public ScalingLogic getScalingLogic() {
+        return scalingLogic;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + width + "x" + height + ":" + scalingLogic + ":" + format + ":" + quality;
+    }
+}
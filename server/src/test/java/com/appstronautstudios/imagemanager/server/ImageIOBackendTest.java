@@ -0,0 +1,189 @@
+package com.appstronautstudios.imagemanager.server;
+
+import com.appstronautstudios.imagemanager.exif.ExifData;
+import com.appstronautstudios.imagemanager.exif.ExifReader;
+import com.appstronautstudios.imagemanager.exif.ExifTags;
+import com.appstronautstudios.imagemanager.exif.ScrubPolicy;
+import com.appstronautstudios.imagemanager.geometry.Orientation;
+import com.appstronautstudios.imagemanager.geometry.ScalingLogic;
+import com.appstronautstudios.imagemanager.geometry.ScalingMath;
+import com.appstronautstudios.imagemanager.resample.ResampleMode;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class ImageIOBackendTest {
+
+    private static final int[] SIZES = {1, 2, 3, 7, 16, 99, 100, 101};
+
+    @Test
+    public void orientMatchesStoredMappingForAllOrientations() {
+        int width = 5;
+        int height = 3;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) pixels[i] = i;
+        for (int orientation = Orientation.UNDEFINED; orientation <= Orientation.ROTATE_270; orientation++) {
+            int[] oriented = ImageIOBackend.orient(pixels, width, height, orientation);
+            int orientedWidth = Orientation.orientedWidth(width, height, orientation);
+            int orientedHeight = Orientation.orientedHeight(width, height, orientation);
+            assertEquals(pixels.length, oriented.length);
+            // every displayed pixel comes from the stored pixel toStored maps it back to
+            int[] rect = new int[4];
+            for (int y = 0; y < orientedHeight; y++) {
+                for (int x = 0; x < orientedWidth; x++) {
+                    rect[0] = x;
+                    rect[1] = y;
+                    rect[2] = x + 1;
+                    rect[3] = y + 1;
+                    Orientation.toStored(orientation, width, height, rect);
+                    assertEquals("orientation " + orientation + " at " + x + "," + y,
+                            pixels[rect[1] * width + rect[0]], oriented[y * orientedWidth + x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void orientRotatesClockwise() {
+        // 2x1 row a b, displayed as a column a over b for ROTATE_90 and b over a for ROTATE_270
+        int[] row = {1, 2};
+        assertArrayEquals(new int[]{1, 2}, ImageIOBackend.orient(row, 2, 1, Orientation.ROTATE_90));
+        assertArrayEquals(new int[]{2, 1}, ImageIOBackend.orient(row, 2, 1, Orientation.ROTATE_270));
+        assertArrayEquals(new int[]{2, 1}, ImageIOBackend.orient(row, 2, 1, Orientation.FLIP_HORIZONTAL));
+        assertSame(row, ImageIOBackend.orient(row, 2, 1, Orientation.NORMAL));
+    }
+
+    @Test
+    public void scaledSizesMatchScalingMath() {
+        int[] srcRect = new int[4];
+        int[] rect = new int[4];
+        int[] orientations = {Orientation.NORMAL, Orientation.ROTATE_90, Orientation.TRANSVERSE};
+        for (ScalingLogic logic : ScalingLogic.values()) {
+            for (int srcWidth : SIZES) {
+                for (int srcHeight : SIZES) {
+                    BufferedImage image = new BufferedImage(srcWidth, srcHeight, BufferedImage.TYPE_INT_RGB);
+                    for (int dstSize : new int[]{1, 16, 50}) {
+                        for (int orientation : orientations) {
+                            String label = logic + " " + srcWidth + "x" + srcHeight + " -> " + dstSize + "x"
+                                    + dstSize * 2 + " orientation " + orientation;
+                            ScalingMath.calculateSrcRect(srcWidth, srcHeight, dstSize, dstSize * 2, logic,
+                                    orientation, srcRect);
+                            ScalingMath.calculateDstRect(srcWidth, srcHeight, dstSize, dstSize * 2, logic,
+                                    orientation, rect);
+                            // very narrow sources can round to an empty crop or fit, which has no pixels
+                            if (srcRect[2] == srcRect[0] || srcRect[3] == srcRect[1]
+                                    || rect[2] == rect[0] || rect[3] == rect[1]) continue;
+                            BufferedImage scaled = ImageIOBackend.createScaledImage(image, dstSize, dstSize * 2,
+                                    logic, orientation, ResampleMode.AREA_AVERAGE);
+                            assertEquals(label, rect[2] - rect[0], scaled.getWidth());
+                            assertEquals(label, rect[3] - rect[1], scaled.getHeight());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unscaledImageIsOrientedPixelExact() {
+        // an aspect ratio exact in float, so the crop keeps every pixel
+        int width = 8;
+        int height = 4;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | i * 0x090503;
+            image.setRGB(i % width, i / width, pixels[i]);
+        }
+        for (int orientation = Orientation.NORMAL; orientation <= Orientation.ROTATE_270; orientation++) {
+            int displayedWidth = Orientation.orientedWidth(width, height, orientation);
+            int displayedHeight = Orientation.orientedHeight(width, height, orientation);
+            BufferedImage scaled = ImageIOBackend.createScaledImage(image, displayedWidth, displayedHeight,
+                    ScalingLogic.CROP, orientation, ResampleMode.AREA_AVERAGE);
+            assertArrayEquals("orientation " + orientation, ImageIOBackend.orient(pixels, width, height, orientation),
+                    scaled.getRGB(0, 0, displayedWidth, displayedHeight, null, 0, displayedWidth));
+        }
+    }
+
+    @Test
+    public void renditionMetadataDropsStaleTags() throws Exception {
+        ExifData source = ExifReader.read(new ByteArrayInputStream(jpeg(tiff())), ExifTags.ALL);
+        assertEquals(new HashSet<>(Arrays.asList("Make", "Orientation", "ImageWidth", "ImageLength",
+                "PixelXDimension", "PixelYDimension", "ColorSpace")), source.getTags());
+
+        ExifData kept = ImageIOBackend.renditionMetadata(source, new ScrubPolicy(Collections.<String>emptySet(), false));
+        assertEquals(new HashSet<>(Arrays.asList("Make", "ColorSpace")), kept.getTags());
+        assertEquals(1, kept.getInt("ColorSpace", 0));
+
+        ExifData sensitive = ImageIOBackend.renditionMetadata(source, ScrubPolicy.SENSITIVE);
+        assertEquals(Collections.singleton("ColorSpace"), sensitive.getTags());
+
+        // nothing left once the stale tags are gone
+        assertNull(ImageIOBackend.renditionMetadata(source.filter(ExifTags.LAYOUT), ScrubPolicy.SENSITIVE));
+        assertNull(ImageIOBackend.renditionMetadata(source, ScrubPolicy.ALL));
+        assertNull(ImageIOBackend.renditionMetadata(source, null));
+        assertNull(ImageIOBackend.renditionMetadata(null, ScrubPolicy.SENSITIVE));
+    }
+
+    /**
+     * @return big endian TIFF with size, orientation and camera tags in IFD0 and the Exif
+     * directory, all values inline
+     */
+    private static byte[] tiff() {
+        int exifOffset = 8 + 2 + 5 * 12 + 4;
+        ByteBuffer tiff = ByteBuffer.allocate(exifOffset + 2 + 3 * 12 + 4);
+        tiff.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8);
+        tiff.putShort((short) 5);
+        field(tiff, 0x0100, 4, 640);
+        field(tiff, 0x0101, 4, 480);
+        tiff.putShort((short) 0x010F).putShort((short) 2).putInt(4).put("HTC\0".getBytes(StandardCharsets.US_ASCII));
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) Orientation.ROTATE_90)
+                .putShort((short) 0);
+        field(tiff, 0x8769, 4, exifOffset);
+        tiff.putInt(0);
+        tiff.putShort((short) 3);
+        tiff.putShort((short) 0xA001).putShort((short) 3).putInt(1).putShort((short) 1).putShort((short) 0);
+        field(tiff, 0xA002, 4, 640);
+        field(tiff, 0xA003, 4, 480);
+        tiff.putInt(0);
+        return tiff.array();
+    }
+
+    private static void field(ByteBuffer tiff, int tag, int type, int value) {
+        tiff.putShort((short) tag).putShort((short) type).putInt(1).putInt(value);
+    }
+
+    /**
+     * @return small JPEG with the TIFF in an APP1 segment right after the start of image marker
+     */
+    private static byte[] jpeg(byte[] tiff) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "jpg", encoded));
+        byte[] plain = encoded.toByteArray();
+        byte[] header = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+        int length = 2 + header.length + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(plain, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length);
+        out.write(header);
+        out.write(tiff);
+        out.write(plain, 2, plain.length - 2);
+        return out.toByteArray();
+    }
+}